@@ -48,11 +48,12 @@ public class Application {
         log.info("Application started");
     }
 
-    /// Stops the application
+    /// Stops the application. Incoming requests are stopped and drained first, after which the WAL is shut down with
+    /// a final snapshot. This makes the next start a pure snapshot load.
     public void stop() {
         log.info("Shutting down application");
         javalin.stop();
-        wal.close();
+        wal.shutdown();
         log.info("Application shut down");
     }
 
@@ -61,7 +61,7 @@ public final class AdapterFactory {
     /// @return a new [Javalin]
     public static Javalin createJavalin(PrimaryPorts primaryPorts) {
         var javalin = createJavalin();
-        new StationAdminController(primaryPorts.forStationAdministration).registerRoutes(javalin);
+        new StationAdminController(primaryPorts.forStationAdministration, createObjectMapper()).registerRoutes(javalin);
         return javalin;
     }
 
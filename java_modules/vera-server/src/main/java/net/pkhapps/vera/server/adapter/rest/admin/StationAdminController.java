@@ -16,25 +16,57 @@
 
 package net.pkhapps.vera.server.adapter.rest.admin;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import net.pkhapps.vera.server.adapter.PrincipalUtil;
+import net.pkhapps.vera.server.domain.base.RepositoryException;
 import net.pkhapps.vera.server.domain.model.station.StationId;
 import net.pkhapps.vera.server.port.admin.CreateStationSpec;
 import net.pkhapps.vera.server.port.admin.ForStationAdministration;
+import net.pkhapps.vera.server.port.admin.StationPageDto;
+import net.pkhapps.vera.server.port.admin.StationSortOrder;
 import net.pkhapps.vera.server.port.admin.UpdateStationSpec;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+
 /// REST controller for the [ForStationAdministration] port.
+///
+/// `GET /admin/stations` accepts the following query parameters:
+///
+/// - `q`: a search term; if present, the best matches are returned on a single page
+/// - `sort`: the sort order when not searching, one of [StationSortOrder] (default [StationSortOrder#NAME_SV])
+/// - `continuationToken`: the continuation token returned with the previous page
+/// - `limit`: the maximum number of stations per page (default {@value #DEFAULT_LIMIT}, max {@value #MAX_LIMIT})
+///
+/// `POST /admin/stations/import` accepts a stream of [CreateStationSpec]s as newline-delimited JSON (NDJSON). The
+/// stream is parsed and imported in chunks of {@value #IMPORT_CHUNK_SIZE} stations, each chunk written to the WAL at
+/// once. The response is `201 Created` with the body `{"imported": n}`. If the stream contains an invalid station, or a
+/// chunk cannot be imported, the response is `400 Bad Request` with the body `{"imported": n, "error": "..."}`, where
+/// `n` is the number of stations in the chunks that were imported before the failure.
 public final class StationAdminController {
 
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
     private final ForStationAdministration forStationAdministration;
+    private final ObjectReader createStationSpecReader;
 
     /// Creates a new `StationAdminController`.
     ///
     /// @param forStationAdministration the port to adapt
-    public StationAdminController(ForStationAdministration forStationAdministration) {
+    /// @param objectMapper             the object mapper to use for parsing streamed request bodies
+    public StationAdminController(ForStationAdministration forStationAdministration, ObjectMapper objectMapper) {
         this.forStationAdministration = forStationAdministration;
+        this.createStationSpecReader = objectMapper.readerFor(CreateStationSpec.class);
     }
 
     /// Registers the routes with the given [Javalin] instance.
@@ -42,13 +74,47 @@ public final class StationAdminController {
         javalin
                 .get("/admin/stations", this::list)
                 .post("/admin/stations", this::create)
+                .post("/admin/stations/import", this::importStations)
                 .get("/admin/stations/{id}", this::get)
                 .put("/admin/stations/{id}", this::update)
                 .delete("/admin/stations/{id}", this::delete);
     }
 
     void list(Context context) {
-        throw new UnsupportedOperationException("Not implemented yet.");
+        var principal = PrincipalUtil.getPrincipal(context);
+        var limit = Math.clamp(context.queryParamAsClass("limit", Integer.class).getOrDefault(DEFAULT_LIMIT), 1, MAX_LIMIT);
+        var searchTerm = context.queryParam("q");
+        if (searchTerm != null && !searchTerm.isBlank()) {
+            context.json(new StationPageDto(forStationAdministration.search(searchTerm, limit, principal), null));
+        } else {
+            var sortParam = context.queryParam("sort");
+            var sortOrder = sortParam == null ? StationSortOrder.NAME_SV : StationSortOrder.valueOf(sortParam);
+            context.json(forStationAdministration.list(sortOrder, context.queryParam("continuationToken"), limit, principal));
+        }
+    }
+
+    void importStations(Context context) throws IOException {
+        var principal = PrincipalUtil.getPrincipal(context);
+        int imported = 0;
+        try (MappingIterator<CreateStationSpec> specs = createStationSpecReader.readValues(context.bodyInputStream())) {
+            var chunk = new ArrayList<CreateStationSpec>(IMPORT_CHUNK_SIZE);
+            while (specs.hasNextValue()) {
+                chunk.add(specs.nextValue());
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    imported += forStationAdministration.createAll(chunk, principal).size();
+                    chunk.clear();
+                }
+            }
+            imported += forStationAdministration.createAll(chunk, principal).size();
+        } catch (JsonProcessingException | IllegalArgumentException | RepositoryException ex) {
+            var error = ex instanceof JsonProcessingException jsonEx ? jsonEx.getOriginalMessage() : ex.getMessage();
+            context.status(HttpStatus.BAD_REQUEST).json(Map.of(
+                    "imported", imported,
+                    "error", Objects.requireNonNullElse(error, ex.getClass().getSimpleName())
+            ));
+            return;
+        }
+        context.status(HttpStatus.CREATED).json(Map.of("imported", imported));
     }
 
     void get(Context context) {
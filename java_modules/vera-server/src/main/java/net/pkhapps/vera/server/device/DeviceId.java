@@ -25,6 +25,10 @@ public final class DeviceId extends NanoIdentifier {
         super(id);
     }
 
+    private DeviceId(long high, long low) {
+        super(high, low);
+    }
+
     private DeviceId() {
     }
 
@@ -37,6 +41,18 @@ public final class DeviceId extends NanoIdentifier {
         return new DeviceId(id);
     }
 
+    /// Creates a new `DeviceId` from the binary representation of a Nano ID.
+    ///
+    /// @param high the high bits of the Nano ID
+    /// @param low  the low bits of the Nano ID
+    /// @return a new `DeviceId`
+    /// @throws IllegalArgumentException if the bits are not a valid Nano ID
+    /// @see #high()
+    /// @see #low()
+    public static DeviceId of(long high, long low) {
+        return new DeviceId(high, low);
+    }
+
     /// Creates a new `DeviceId` from a random Nano ID.
     ///
     /// @return a new `DeviceId`
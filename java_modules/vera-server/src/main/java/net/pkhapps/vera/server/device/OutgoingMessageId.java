@@ -27,6 +27,10 @@ public final class OutgoingMessageId extends NanoIdentifier {
         super(id);
     }
 
+    private OutgoingMessageId(long high, long low) {
+        super(high, low);
+    }
+
     private OutgoingMessageId() {
     }
 
@@ -39,6 +43,18 @@ public final class OutgoingMessageId extends NanoIdentifier {
         return new OutgoingMessageId(id);
     }
 
+    /// Creates a new `OutgoingMessageId` from the binary representation of a Nano ID.
+    ///
+    /// @param high the high bits of the Nano ID
+    /// @param low  the low bits of the Nano ID
+    /// @return a new `OutgoingMessageId`
+    /// @throws IllegalArgumentException if the bits are not a valid Nano ID
+    /// @see #high()
+    /// @see #low()
+    public static OutgoingMessageId of(long high, long low) {
+        return new OutgoingMessageId(high, low);
+    }
+
     /// Creates a new `OutgoingMessageId` from a random Nano ID.
     ///
     /// @return a new `OutgoingMessageId`
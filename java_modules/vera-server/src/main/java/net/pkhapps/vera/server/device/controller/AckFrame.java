@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import java.util.List;
+
+/// Frame acknowledging messages by their sequence numbers. Used in both directions.
+///
+/// A single frame acknowledges every message up to and including `cumulative`, and every message within the
+/// `selective` ranges. The selective ranges describe messages received after a gap.
+///
+/// @param cumulative the sequence number up to which every message has been received
+/// @param selective  ranges of messages received after `cumulative`, in ascending order
+record AckFrame(long cumulative, List<SequenceRange> selective) implements DeviceFrame {
+
+    /// The maximum number of selective ranges in a single frame.
+    static final int MAX_RANGES = 32;
+
+    AckFrame {
+        if (selective.size() > MAX_RANGES) {
+            throw new IllegalArgumentException("Too many selective ranges: " + selective.size());
+        }
+        selective = List.copyOf(selective);
+    }
+
+    /// Checks whether this frame acknowledges the message with the given sequence number.
+    ///
+    /// @param sequence the sequence number
+    /// @return true if the message is acknowledged
+    boolean acknowledges(long sequence) {
+        if (sequence <= cumulative) {
+            return true;
+        }
+        for (var range : selective) {
+            if (range.contains(sequence)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// An inclusive range of sequence numbers.
+    ///
+    /// @param first the first sequence number of the range
+    /// @param last  the last sequence number of the range
+    record SequenceRange(long first, long last) {
+
+        SequenceRange {
+            if (last < first) {
+                throw new IllegalArgumentException("last must not be less than first");
+            }
+        }
+
+        boolean contains(long sequence) {
+            return sequence >= first && sequence <= last;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.util.Deferred;
+import net.pkhapps.vera.server.util.serde.Input;
+import net.pkhapps.vera.server.util.serde.Output;
+import net.pkhapps.vera.server.util.serde.Serde;
+import net.pkhapps.vera.server.util.serde.UnknownInputException;
+
+import java.util.ArrayList;
+
+/// [Serde] for [AckFrame]. The selective ranges are written relative to the preceding sequence number, which keeps
+/// the frame small without variable-length encoding: the first range is relative to `cumulative`, and every
+/// following range to the end of the previous one.
+final class AckFrameSerde implements Serde<AckFrame> {
+
+    private static final Deferred<AckFrameSerde> INSTANCE = new Deferred<>(AckFrameSerde::new);
+
+    public static AckFrameSerde instance() {
+        return INSTANCE.get();
+    }
+
+    private AckFrameSerde() {
+    }
+
+    @Override
+    public void writeTo(AckFrame object, Output output) {
+        output.writeLong(object.cumulative());
+        output.writeByte((byte) object.selective().size());
+        var previous = object.cumulative();
+        for (var range : object.selective()) {
+            output.writeInteger(Math.toIntExact(range.first() - previous));
+            output.writeInteger(Math.toIntExact(range.last() - range.first()));
+            previous = range.last();
+        }
+    }
+
+    @Override
+    public AckFrame readFrom(Input input) {
+        var cumulative = input.readLong();
+        var count = input.readByte();
+        if (count < 0 || count > AckFrame.MAX_RANGES) {
+            throw new UnknownInputException("Invalid number of selective ranges: " + count);
+        }
+        var selective = new ArrayList<AckFrame.SequenceRange>(count);
+        var previous = cumulative;
+        for (int i = 0; i < count; i++) {
+            var first = previous + input.readInteger();
+            var last = first + input.readInteger();
+            selective.add(new AckFrame.SequenceRange(first, last));
+            previous = last;
+        }
+        return new AckFrame(cumulative, selective);
+    }
+}
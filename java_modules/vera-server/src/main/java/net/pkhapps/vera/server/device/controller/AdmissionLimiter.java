@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/// Token bucket limiting the rate at which new device connections are admitted.
+///
+/// The bucket holds at most `burst` tokens and is refilled at `permitsPerSecond`. Every admitted connection takes one
+/// token. Prioritized connections may take any token, whereas other connections must leave `reserved` tokens in the
+/// bucket. When the bucket runs low, prioritized connections are therefore still admitted while the others are turned
+/// away.
+///
+/// Rejected connections are given a retry hint: the time until the bucket would have a token for them, plus a random
+/// jitter so that the rejected devices do not all come back at the same moment.
+final class AdmissionLimiter {
+
+    private final Clock clock;
+    private final double permitsPerMilli;
+    private final int burst;
+    private final int reserved;
+    private final Duration maxJitter;
+    private final RandomGenerator random;
+    private double tokens;
+    private long lastRefillMillis;
+
+    /// Creates a new limiter with a full bucket.
+    ///
+    /// @param clock            the clock to measure the refill with
+    /// @param permitsPerSecond the number of connections to admit per second, on average
+    /// @param burst            the maximum number of connections to admit at once
+    /// @param reserved         the number of tokens reserved for prioritized connections
+    /// @param maxJitter        the maximum jitter to add to the retry hints of prioritized connections; twice this is
+    ///                         used for other connections
+    /// @param random           the random generator to compute the jitter with
+    AdmissionLimiter(Clock clock, double permitsPerSecond, int burst, int reserved, Duration maxJitter,
+                     RandomGenerator random) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1");
+        }
+        if (reserved < 0 || reserved >= burst) {
+            throw new IllegalArgumentException("reserved must be between 0 and burst - 1");
+        }
+        this.clock = clock;
+        this.permitsPerMilli = permitsPerSecond / 1000;
+        this.burst = burst;
+        this.reserved = reserved;
+        this.maxJitter = maxJitter;
+        this.random = random;
+        this.tokens = burst;
+        this.lastRefillMillis = clock.millis();
+    }
+
+    /// Tries to admit a connection.
+    ///
+    /// @param prioritized whether the connection may use the reserved tokens
+    /// @return true if the connection was admitted, false if it should be rejected
+    synchronized boolean tryAdmit(boolean prioritized) {
+        refill();
+        if (tokens < required(prioritized)) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /// Returns how long a rejected connection should wait before trying again, including jitter.
+    ///
+    /// @param prioritized whether the connection may use the reserved tokens
+    /// @return the retry hint
+    synchronized Duration retryAfter(boolean prioritized) {
+        refill();
+        var waitMillis = (long) Math.ceil(Math.max(0, required(prioritized) - tokens) / permitsPerMilli);
+        var jitterMillis = maxJitter.toMillis() * (prioritized ? 1 : 2);
+        return Duration.ofMillis(waitMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0));
+    }
+
+    private int required(boolean prioritized) {
+        return prioritized ? 1 : 1 + reserved;
+    }
+
+    private void refill() {
+        var now = clock.millis();
+        if (now > lastRefillMillis) {
+            tokens = Math.min(burst, tokens + (now - lastRefillMillis) * permitsPerMilli);
+            lastRefillMillis = now;
+        }
+    }
+}
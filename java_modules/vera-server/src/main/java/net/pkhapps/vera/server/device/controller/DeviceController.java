@@ -22,54 +22,125 @@ import net.pkhapps.vera.security.AuthenticationRequiredException;
 import net.pkhapps.vera.security.SecurityException;
 import net.pkhapps.vera.server.device.DeviceId;
 import net.pkhapps.vera.server.device.IncomingMessage;
+import net.pkhapps.vera.server.device.IncomingMessageId;
 import net.pkhapps.vera.server.device.OutgoingMessage;
 import net.pkhapps.vera.server.device.OutgoingMessageId;
 import net.pkhapps.vera.server.device.internal.DevicePrincipal;
 import net.pkhapps.vera.server.device.internal.ForAuthenticatingDevices;
 import net.pkhapps.vera.server.device.internal.ForReceivingFromDevices;
 import net.pkhapps.vera.server.device.internal.ForSendingToDevices;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
 import net.pkhapps.vera.server.util.serde.BufferInput;
 import net.pkhapps.vera.server.util.serde.BufferOutput;
-import net.pkhapps.vera.server.util.serde.Serde;
 import net.pkhapps.vera.server.util.serde.SizingOutput;
-import org.eclipse.jetty.websocket.api.Session;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /// Websocket controller for communicating with devices. Devices can:
+/// - connect, subject to admission control
 /// - authenticate themselves
 /// - receive messages from the server
 /// - send messages to the server
 /// - send and receive keep alive messages (ping-pong)
+/// - resume the stream of messages from the server after reconnecting
+///
+/// New connections are admitted by an [AdmissionLimiter] before the device is authenticated, so that a reconnect storm
+/// after a server restart does not starve the server. Connections that are not admitted are closed right away with
+/// [WsCloseStatus#TRY_AGAIN_LATER] and the reason `RETRY_AFTER <millis>`, a jittered hint of when to try again.
+/// Devices that are reconnecting after losing a session should send the [#RECONNECT_HEADER] header, which gives them
+/// priority over devices connecting for the first time.
+///
+/// Messages and acknowledgments are exchanged as binary [DeviceFrame]s. Every message carries a sequence number, and
+/// an [AckFrame] acknowledges all messages up to a sequence number plus selective ranges after it. The server
+/// coalesces its acknowledgments over [#ACK_DELAY], and devices are expected to do the same.
+///
+/// Incoming messages are handed over to an [IngestionPipeline] and acknowledged once they have been processed. If the
+/// pipeline is full, the message is not acknowledged and the device is told to back off. If processing fails, the
+/// message is not acknowledged either, and is processed again when the device resends it. Messages whose IDs have been
+/// processed from the same device within [#DUPLICATE_RETENTION] are acknowledged again but not processed, and their
+/// payloads are not even decoded. Copies of messages that are still being processed are acknowledged together with the
+/// original. The remembered IDs of a disconnected device are dropped once they have all expired, which is checked every
+/// [#DUPLICATE_RETENTION].
+///
+/// The text protocol consists of the following messages:
+/// - `ACK <messageId>` (device to server): acknowledges a single message. Superseded by [AckFrame].
+/// - `START <sequence>` (device to server): sent after connecting, with the sequence number of the first message the
+///   device will send in this session. Every message before it must have been acknowledged already. Messages sent
+///   before this are dropped without being acknowledged.
+/// - `RESUME <sequence>` (device to server): sent after connecting, with the sequence number up to which the device
+///   has received every message from the server. The server resends the messages after it.
+/// - `BACKOFF <millis>` (server to device): the server cannot take in more messages right now. The device should wait
+///   for the given time before sending unacknowledged messages again.
+/// - `RESUMED <sequence>` (server to device): the sequence number of the next message the device will receive. Any
+///   messages before it that the device is missing will not be resent.
+/// - `PING` (server to device): sent when nothing has been received from the device for [#KEEP_ALIVE_INTERVAL]. The
+///   device must reply with `PONG`.
+///
+/// Any message from the device counts as a sign of life. If nothing is received within [#KEEP_ALIVE_TIMEOUT] of a
+/// `PING`, the connection is considered dead and the session is closed, so that messages are no longer sent into a
+/// half-open connection. The keep-alive checks of all sessions are driven by a single [TimingWheel].
 final class DeviceController implements ForSendingToDevices {
 
     // TODO What happens with all the exceptions thrown by the handler methods?
-    // TODO Keep-alive ping-pongs
     private static final Logger log = LoggerFactory.getLogger(DeviceController.class);
+    /// The header devices send when they are reconnecting after losing a previous session, with any value.
+    static final String RECONNECT_HEADER = "X-Reconnect";
+    /// The maximum number of outgoing frames that can be queued per device session.
+    static final int OUTBOUND_QUEUE_CAPACITY = 64;
+    /// The maximum number of unacknowledged frames per device that can be resent when the device resumes.
+    static final int RESUME_BUFFER_CAPACITY = 256;
+    /// How long to wait for more incoming messages before acknowledging them in a single frame.
+    static final Duration ACK_DELAY = Duration.ofMillis(5);
+    /// The shortest time a device is asked to back off when the ingestion pipeline is full.
+    static final Duration MIN_BACKOFF = Duration.ofMillis(100);
+    /// The minimum time to remember the IDs of incoming messages, to drop duplicates.
+    static final Duration DUPLICATE_RETENTION = Duration.ofMinutes(5);
+    /// The maximum number of incoming message IDs to remember per device and [#DUPLICATE_RETENTION].
+    static final int MAX_REMEMBERED_IDS = 4096;
+    /// How long a device can stay silent before it is pinged.
+    static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(30);
+    /// How long a device has to respond to a ping before its session is closed.
+    static final Duration KEEP_ALIVE_TIMEOUT = Duration.ofSeconds(10);
 
     private final ForReceivingFromDevices forReceivingFromDevices;
     private final ForAuthenticatingDevices forAuthenticatingDevices;
     private final ConcurrentMap<DeviceId, DeviceSession> activeSessions = new ConcurrentHashMap<>();
-    private final Serde<OutgoingMessageEnvelope> outgoingMessageSerde;
-    private final Serde<IncomingMessageEnvelope> incomingMessageSerde;
+    private final ConcurrentMap<DeviceId, DeviceStream> streams = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DeviceId, RecentMessageIds> recentMessageIds = new ConcurrentHashMap<>();
+    private final DeviceFrameSerde frameSerde;
+    private final ScheduledExecutorService scheduler;
+    private final IngestionPipeline ingestionPipeline;
+    private final TimingWheel keepAliveWheel;
+    private final AdmissionLimiter admissionLimiter;
     private final Clock clock;
 
     DeviceController(ForReceivingFromDevices forReceivingFromDevices,
                      ForAuthenticatingDevices forAuthenticatingDevices,
-                     Serde<OutgoingMessageEnvelope> outgoingMessageSerde,
-                     Serde<IncomingMessageEnvelope> incomingMessageSerde,
+                     DeviceFrameSerde frameSerde,
+                     ScheduledExecutorService scheduler,
+                     IngestionPipeline ingestionPipeline,
+                     TimingWheel keepAliveWheel,
+                     AdmissionLimiter admissionLimiter,
                      Clock clock) {
         this.forReceivingFromDevices = forReceivingFromDevices;
         this.forAuthenticatingDevices = forAuthenticatingDevices;
-        this.outgoingMessageSerde = outgoingMessageSerde;
-        this.incomingMessageSerde = incomingMessageSerde;
+        this.frameSerde = frameSerde;
+        this.scheduler = scheduler;
+        this.ingestionPipeline = ingestionPipeline;
+        this.keepAliveWheel = keepAliveWheel;
+        this.admissionLimiter = admissionLimiter;
         this.clock = clock;
+        scheduler.scheduleWithFixedDelay(this::sweepRecentMessageIds, DUPLICATE_RETENTION.toMillis(),
+                DUPLICATE_RETENTION.toMillis(), TimeUnit.MILLISECONDS);
     }
 
     public void registerRoutes(Javalin javalin) {
@@ -83,11 +154,25 @@ final class DeviceController implements ForSendingToDevices {
                 });
     }
 
+    /// Stops taking in messages from devices, and waits for the messages that have already been queued to be processed.
+    /// Called when the server is stopping, so that the sessions are still open for the acknowledgments.
+    void close() {
+        ingestionPipeline.close();
+    }
+
     void onConnect(WsConnectContext context) {
         var deviceId = getDeviceId(context);
         var sessionId = context.sessionId();
         var remoteAddress = context.session.getRemoteAddress();
         log.debug("Connection from device {} (sessionId={}, remoteAddr={})", deviceId, sessionId, remoteAddress);
+        var prioritized = context.header(RECONNECT_HEADER) != null;
+        if (!admissionLimiter.tryAdmit(prioritized)) {
+            var retryAfter = admissionLimiter.retryAfter(prioritized);
+            log.debug("Rejecting connection from device {}, retry after {} (sessionId={}, remoteAddr={})", deviceId,
+                    retryAfter, sessionId, remoteAddress);
+            context.closeSession(WsCloseStatus.TRY_AGAIN_LATER, "RETRY_AFTER " + retryAfter.toMillis());
+            return;
+        }
         try {
             var principal = authenticate(context);
             addSession(principal, context);
@@ -99,16 +184,35 @@ final class DeviceController implements ForSendingToDevices {
     }
 
     void onCloseByClient(WsCloseContext context) {
-        removeSession(getDeviceId(context));
+        removeSession(getDeviceId(context), context.sessionId());
     }
 
     void onMessage(WsMessageContext context) {
         var message = context.message();
         var deviceId = getDeviceId(context);
-        if (message.startsWith("ACK ")) {
+        markActive(deviceId, context.sessionId());
+        if (message.equals("PONG")) {
+            log.trace("Received pong from {}", deviceId);
+        } else if (message.startsWith("ACK ")) {
             var acknowledgedMessageId = OutgoingMessageId.of(message.substring("ACK ".length()));
             log.debug("Received acknowledgment of outgoing message {} from {}", acknowledgedMessageId, deviceId);
+            var stream = streams.get(deviceId);
+            if (stream != null) {
+                stream.acknowledged(acknowledgedMessageId);
+            }
             forReceivingFromDevices.messageAckFromDevice(deviceId, acknowledgedMessageId);
+        } else if (message.startsWith("START ")) {
+            try {
+                startReceiving(deviceId, context.sessionId(), Long.parseLong(message.substring("START ".length())));
+            } catch (NumberFormatException e) {
+                log.warn("Received invalid start request from {}", deviceId);
+            }
+        } else if (message.startsWith("RESUME ")) {
+            try {
+                resume(deviceId, Long.parseLong(message.substring("RESUME ".length())));
+            } catch (NumberFormatException e) {
+                log.warn("Received invalid resume request from {}", deviceId);
+            }
         } else {
             log.warn("Received unknown message from {}", deviceId);
         }
@@ -117,17 +221,143 @@ final class DeviceController implements ForSendingToDevices {
     void onBinaryMessage(WsBinaryMessageContext context) {
         log.trace("onBinaryMessage: {}", context.sessionId());
         var input = BufferInput.wrap(context.data(), context.offset(), context.length());
-        var message = incomingMessageSerde.readFrom(input);
         var sender = getDeviceId(context);
+        markActive(sender, context.sessionId());
+        var session = activeSessions.get(sender);
+        var recent = getRecentMessageIds(sender);
+        var frame = frameSerde.readFrom(input, (sequence, messageId) -> {
+            if (recent.isDuplicate(messageId, () -> acknowledge(session, sequence))) {
+                onDuplicateMessage(sender, sequence, messageId);
+                return false;
+            }
+            return true;
+        });
+        switch (frame) {
+            case null -> {
+            }
+            case IncomingMessageEnvelope message -> onIncomingMessage(sender, session, recent, message);
+            case AckFrame ack -> onAck(sender, ack);
+            case OutgoingMessageEnvelope _ -> log.warn("Received outgoing message frame from {}", sender);
+        }
+    }
+
+    private void markActive(DeviceId deviceId, String sessionId) {
+        var session = activeSessions.get(deviceId);
+        if (session != null && session.sessionId().equals(sessionId)) {
+            session.markActive(clock.millis());
+        }
+    }
+
+    private void scheduleKeepAlive(DeviceSession session, Duration delay) {
+        session.keepAlive(keepAliveWheel.schedule(delay, () -> checkKeepAlive(session)));
+    }
 
-        log.debug("Received message {} from {}", message.messageId(), sender);
-        forReceivingFromDevices.messageFromDevice(new IncomingMessage(message.messageId(), sender,
-                message.priority(), message.timestamp(), clock.instant(), message.payload()));
+    private void checkKeepAlive(DeviceSession session) {
+        var idle = Duration.ofMillis(clock.millis() - session.lastActivityMillis());
+        var deadline = KEEP_ALIVE_INTERVAL.plus(KEEP_ALIVE_TIMEOUT);
+        if (idle.compareTo(deadline) >= 0) {
+            log.warn("Closing session of device {} after {} of silence (sessionId={})",
+                    session.principal().deviceId(), idle, session.sessionId());
+            session.close(WsCloseStatus.TRY_AGAIN_LATER, "Keep-alive timeout");
+        } else if (idle.compareTo(KEEP_ALIVE_INTERVAL) >= 0) {
+            log.trace("Pinging {}", session.principal().deviceId());
+            session.sendText("PING");
+            scheduleKeepAlive(session, deadline.minus(idle));
+        } else {
+            scheduleKeepAlive(session, KEEP_ALIVE_INTERVAL.minus(idle));
+        }
+    }
 
-        log.debug("Acknowledging incoming message {}", message.messageId());
-        context.send("ACK " + message.messageId().value());
+    private RecentMessageIds getRecentMessageIds(DeviceId deviceId) {
+        return recentMessageIds.computeIfAbsent(deviceId,
+                _ -> new RecentMessageIds(clock, DUPLICATE_RETENTION, MAX_REMEMBERED_IDS));
+    }
 
-        log.debug("Acknowledged incoming message {}", message.messageId());
+    private void sweepRecentMessageIds() {
+        // The IDs of connected devices are kept, as their messages may be on their way through the pipeline
+        recentMessageIds.entrySet().removeIf(entry -> !activeSessions.containsKey(entry.getKey())
+                                                      && entry.getValue().isExpired());
+    }
+
+    private void onDuplicateMessage(DeviceId sender, long sequence, IncomingMessageId messageId) {
+        // The device did not get our acknowledgment, so it is acknowledged again (or together with the original, if
+        // that is still being processed) without processing it again
+        log.debug("Dropping duplicate message {} (sequence {}) from {}", messageId, sequence, sender);
+    }
+
+    private void acknowledge(@Nullable DeviceSession session, long sequence) {
+        if (session != null && session.markReceived(sequence)) {
+            scheduler.schedule(() -> sendAck(session), ACK_DELAY.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void startReceiving(DeviceId deviceId, String sessionId, long firstSequence) {
+        var session = activeSessions.get(deviceId);
+        if (session == null || !session.sessionId().equals(sessionId)) {
+            return;
+        }
+        if (session.startReceiving(firstSequence)) {
+            log.debug("Receiving messages from {} starting from sequence {}", deviceId, firstSequence);
+        } else {
+            log.warn("Ignoring repeated start request from {}", deviceId);
+        }
+    }
+
+    private void onIncomingMessage(DeviceId sender, @Nullable DeviceSession session, RecentMessageIds recent,
+                                   IncomingMessageEnvelope message) {
+        log.debug("Received message {} (sequence {}) from {}", message.messageId(), message.sequence(), sender);
+        if (session == null || !session.isReceiving()) {
+            // Without the first sequence number, the message could not be acknowledged safely
+            log.warn("Dropping message {} from {} received before the start request", message.messageId(), sender);
+            return;
+        }
+        var messageId = message.messageId();
+        if (!recent.startProcessing(messageId, () -> acknowledge(session, message.sequence()))) {
+            // Another copy arrived while this one was being decoded
+            onDuplicateMessage(sender, message.sequence(), messageId);
+            return;
+        }
+        var queued = ingestionPipeline.offer(new IncomingMessage(messageId, sender, message.priority(),
+                        message.timestamp(), clock.instant(), message.payload()),
+                () -> recent.processed(messageId),
+                () -> recent.failed(messageId));
+        if (!queued) {
+            recent.failed(messageId);
+            // Leave the message unacknowledged; the device sends it again after backing off
+            var backoff = MIN_BACKOFF.multipliedBy(1 + message.priority().ordinal());
+            log.warn("Ingestion queue for {} messages is full, telling {} to back off for {}", message.priority(),
+                    sender, backoff);
+            session.sendText("BACKOFF " + backoff.toMillis());
+        }
+    }
+
+    private void sendAck(DeviceSession session) {
+        var ack = session.takeAckFrame();
+        if (ack != null) {
+            log.debug("Acknowledging incoming messages up to {} from {}", ack.cumulative(),
+                    session.principal().deviceId());
+            session.send(ByteBuffer.wrap(encode(ack)));
+        }
+    }
+
+    private void onAck(DeviceId sender, AckFrame ack) {
+        var stream = streams.get(sender);
+        if (stream == null) {
+            log.debug("Ignoring acknowledgment from {} without a stream", sender);
+            return;
+        }
+        for (var messageId : stream.acknowledged(ack)) {
+            log.debug("Received acknowledgment of outgoing message {} from {}", messageId, sender);
+            forReceivingFromDevices.messageAckFromDevice(sender, messageId);
+        }
+    }
+
+    private byte[] encode(DeviceFrame frame) {
+        var sizing = new SizingOutput();
+        frameSerde.writeTo(frame, sizing);
+        var buffer = BufferOutput.allocate(sizing.size());
+        frameSerde.writeTo(frame, buffer);
+        return buffer.array();
     }
 
     void onError(WsErrorContext context) {
@@ -172,8 +402,10 @@ final class DeviceController implements ForSendingToDevices {
         var deviceId = principal.deviceId();
         var sessionId = context.sessionId();
         var remoteAddress = context.session.getRemoteAddress();
-        var existingSession = activeSessions.put(deviceId, new DeviceSession(principal, sessionId, context.session,
-                () -> removeSession(deviceId)));
+        var session = new DeviceSession(principal, sessionId, context.session, OUTBOUND_QUEUE_CAPACITY,
+                () -> removeSession(deviceId, sessionId), () -> onWritable(deviceId, sessionId));
+        session.markActive(clock.millis());
+        var existingSession = activeSessions.put(deviceId, session);
         if (existingSession == null) {
             log.info("Added session for device {} (sessionId={}, remoteAddr={})",
                     deviceId, sessionId, remoteAddress);
@@ -184,59 +416,83 @@ final class DeviceController implements ForSendingToDevices {
         if (existingSession != null) {
             existingSession.close(WsCloseStatus.TRY_AGAIN_LATER, "Another client connected");
         }
+        scheduleKeepAlive(session, KEEP_ALIVE_INTERVAL);
+        forReceivingFromDevices.deviceConnected(deviceId);
     }
 
-    private void removeSession(DeviceId deviceId) {
-        var session = activeSessions.remove(deviceId);
-        if (session != null) {
-            log.info("Removed session for device {} (sessionId={}, remoteAddr={})", deviceId, session.sessionId,
-                    session.session.getRemoteAddress());
+    private void removeSession(DeviceId deviceId, String sessionId) {
+        // Only remove the session if it has not already been replaced by a newer one
+        var session = activeSessions.get(deviceId);
+        if (session != null && session.sessionId().equals(sessionId) && activeSessions.remove(deviceId, session)) {
+            session.markClosed();
+            log.info("Removed session for device {} (sessionId={}, remoteAddr={})", deviceId, session.sessionId(),
+                    session.session().getRemoteAddress());
+            forReceivingFromDevices.deviceDisconnected(deviceId);
         }
     }
 
-    @Override
-    public void sendToDevices(OutgoingMessage message) {
-        var envelope = new OutgoingMessageEnvelope(message.messageId(), message.priority(), message.queuedOn(),
-                message.payload());
-        var sizing = new SizingOutput();
-        outgoingMessageSerde.writeTo(envelope, sizing);
-        var buffer = BufferOutput.allocate(sizing.size());
-        outgoingMessageSerde.writeTo(envelope, buffer);
-
-        message.recipients().forEach(recipient -> Thread.ofVirtual().start(() -> {
-            var session = activeSessions.get(recipient);
-            if (session != null) {
-                log.debug("Sending message {} to {}", message.messageId(), recipient);
-                try {
-                    session.sendBytes(ByteBuffer.wrap(buffer.array()));
-                } catch (IOException e) {
-                    log.error("Error sending message {} to {}", message.messageId(), recipient, e);
-                    session.closeAndTryAgain();
+    private void onWritable(DeviceId deviceId, String sessionId) {
+        var session = activeSessions.get(deviceId);
+        var stream = streams.get(deviceId);
+        if (session != null && session.sessionId().equals(sessionId) && stream != null) {
+            synchronized (stream) {
+                if (stream.resend(session::send) != SendOutcome.QUEUED) {
+                    return;
                 }
             }
-        }));
+        }
+        forReceivingFromDevices.deviceWritable(deviceId);
     }
 
-    record DeviceSession(DevicePrincipal principal, String sessionId, Session session, Runnable onCloseCallback) {
+    private DeviceStream getStream(DeviceId deviceId) {
+        // Start from the current time in microseconds, so that sequence numbers keep increasing across restarts
+        return streams.computeIfAbsent(deviceId, _ -> new DeviceStream(clock.millis() * 1000, RESUME_BUFFER_CAPACITY));
+    }
 
-        void closeAndTryAgain() {
-            close(WsCloseStatus.TRY_AGAIN_LATER, WsCloseStatus.TRY_AGAIN_LATER.message());
+    private void resume(DeviceId deviceId, long lastReceivedSequence) {
+        var session = activeSessions.get(deviceId);
+        if (session == null) {
+            return;
+        }
+        var stream = getStream(deviceId);
+        DeviceStream.Resume resume;
+        synchronized (stream) {
+            resume = stream.resume(lastReceivedSequence);
+            log.debug("Resuming stream of {} from {} ({} received, {} missing)", deviceId, resume.resumeFrom(),
+                    resume.received().size(), resume.missing().size());
+            session.sendText("RESUMED " + resume.resumeFrom());
+            // Whatever does not fit in the outbound queue is resent when the session becomes writable again
+            stream.resend(session::send);
         }
+        for (var frame : resume.received()) {
+            forReceivingFromDevices.messageAckFromDevice(deviceId, frame.messageId());
+        }
+    }
 
-        void close(WsCloseStatus status, String reason) {
-            log.debug("Closing session for device {} (sessionId={}, status={}, reason=[{}])",
-                    principal.deviceId(), sessionId, status.getCode(), reason);
-            try {
-                synchronized (this) {
-                    session.close(status.getCode(), reason);
-                }
-            } finally {
-                onCloseCallback.run();
-            }
+    @Override
+    public SendOutcome sendToDevice(DeviceId recipient, OutgoingMessage message) {
+        var session = activeSessions.get(recipient);
+        if (session == null) {
+            return SendOutcome.NOT_CONNECTED;
         }
+        var stream = getStream(recipient);
+        synchronized (stream) {
+            // Frames missing after a resume go first, so that the device receives the frames in sequence order
+            var resent = stream.resend(session::send);
+            if (resent != SendOutcome.QUEUED) {
+                return resent;
+            }
+            var envelope = new OutgoingMessageEnvelope(stream.nextSequence(), message.messageId(), message.priority(),
+                    message.queuedOn(), message.payload());
+            var frame = encode(envelope);
 
-        synchronized void sendBytes(ByteBuffer buffer) throws IOException {
-            session.getRemote().sendBytes(buffer);
+            var outcome = session.send(ByteBuffer.wrap(frame));
+            log.debug("Sending message {} to {} with sequence {}: {}", message.messageId(), recipient,
+                    envelope.sequence(), outcome);
+            if (outcome == SendOutcome.QUEUED) {
+                stream.sent(message.messageId(), frame);
+            }
+            return outcome;
         }
     }
 }
@@ -22,9 +22,21 @@ import net.pkhapps.vera.server.device.internal.ForReceivingFromDevices;
 import net.pkhapps.vera.server.device.internal.ForSendingToDevices;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.random.RandomGenerator;
 
 public final class DeviceControllerFactory {
 
+    private static final int INGESTION_QUEUE_CAPACITY = 256;
+    private static final int INGESTION_SHARDS = 4;
+    private static final Duration KEEP_ALIVE_TICK = Duration.ofMillis(100);
+    private static final int KEEP_ALIVE_SLOTS = 512;
+    private static final double ADMISSIONS_PER_SECOND = 200;
+    private static final int ADMISSION_BURST = 400;
+    private static final int ADMISSIONS_RESERVED_FOR_RECONNECTS = 100;
+    private static final Duration ADMISSION_RETRY_JITTER = Duration.ofSeconds(5);
+
     private DeviceControllerFactory() {
     }
 
@@ -32,14 +44,26 @@ public final class DeviceControllerFactory {
                                                        ForReceivingFromDevices forReceivingFromDevices,
                                                        ForAuthenticatingDevices forAuthenticatingDevices,
                                                        Clock clock) {
+        var scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name(DeviceController.class.getSimpleName())
+                .daemon()
+                .factory());
+        var keepAliveWheel = new TimingWheel(KEEP_ALIVE_TICK, KEEP_ALIVE_SLOTS);
+        keepAliveWheel.start(scheduler);
         var controller = new DeviceController(
                 forReceivingFromDevices,
                 forAuthenticatingDevices,
-                OutgoingMessageEnvelopeSerde.instance(),
-                IncomingMessageEnvelopeSerde.instance(),
+                DeviceFrameSerde.instance(),
+                scheduler,
+                new IngestionPipeline(forReceivingFromDevices::messageFromDevice, INGESTION_QUEUE_CAPACITY,
+                        INGESTION_SHARDS),
+                keepAliveWheel,
+                new AdmissionLimiter(clock, ADMISSIONS_PER_SECOND, ADMISSION_BURST, ADMISSIONS_RESERVED_FOR_RECONNECTS,
+                        ADMISSION_RETRY_JITTER, RandomGenerator.getDefault()),
                 clock
         );
         controller.registerRoutes(javalin);
+        javalin.unsafeConfig().events(event -> event.serverStopping(controller::close));
         return controller;
     }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.util.Deferred;
+import net.pkhapps.vera.server.util.serde.Input;
+import net.pkhapps.vera.server.util.serde.Output;
+import net.pkhapps.vera.server.util.serde.Serde;
+import net.pkhapps.vera.server.util.serde.UnknownInputException;
+import org.jspecify.annotations.Nullable;
+
+/// [Serde] for [DeviceFrame]s. Every frame starts with a single byte identifying the frame type.
+final class DeviceFrameSerde implements Serde<DeviceFrame> {
+
+    private static final byte TYPE_OUTGOING_MESSAGE = 1;
+    private static final byte TYPE_INCOMING_MESSAGE = 2;
+    private static final byte TYPE_ACK = 3;
+    private static final Deferred<DeviceFrameSerde> INSTANCE = new Deferred<>(DeviceFrameSerde::new);
+
+    public static DeviceFrameSerde instance() {
+        return INSTANCE.get();
+    }
+
+    private DeviceFrameSerde() {
+    }
+
+    @Override
+    public void writeTo(DeviceFrame object, Output output) {
+        switch (object) {
+            case OutgoingMessageEnvelope envelope -> {
+                output.writeByte(TYPE_OUTGOING_MESSAGE);
+                OutgoingMessageEnvelopeSerde.instance().writeTo(envelope, output);
+            }
+            case IncomingMessageEnvelope envelope -> {
+                output.writeByte(TYPE_INCOMING_MESSAGE);
+                IncomingMessageEnvelopeSerde.instance().writeTo(envelope, output);
+            }
+            case AckFrame ack -> {
+                output.writeByte(TYPE_ACK);
+                AckFrameSerde.instance().writeTo(ack, output);
+            }
+        }
+    }
+
+    @Override
+    public DeviceFrame readFrom(Input input) {
+        var frame = readFrom(input, (_, _) -> true);
+        assert frame != null;
+        return frame;
+    }
+
+    /// Reads a frame, applying the given filter to incoming messages before decoding their payloads.
+    ///
+    /// @param input                 the input to read from
+    /// @param incomingMessageFilter the filter to apply to incoming messages
+    /// @return the frame, or `null` if it was an incoming message rejected by the filter
+    /// @see IncomingMessageEnvelopeSerde#readFrom(Input, IncomingMessageEnvelopeSerde.HeaderFilter)
+    @Nullable DeviceFrame readFrom(Input input, IncomingMessageEnvelopeSerde.HeaderFilter incomingMessageFilter) {
+        var type = input.readByte();
+        return switch (type) {
+            case TYPE_OUTGOING_MESSAGE -> OutgoingMessageEnvelopeSerde.instance().readFrom(input);
+            case TYPE_INCOMING_MESSAGE ->
+                    IncomingMessageEnvelopeSerde.instance().readFrom(input, incomingMessageFilter);
+            case TYPE_ACK -> AckFrameSerde.instance().readFrom(input);
+            default -> throw new UnknownInputException("Unknown frame type: " + type);
+        };
+    }
+}
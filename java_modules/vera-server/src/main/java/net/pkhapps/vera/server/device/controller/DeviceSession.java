@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import io.javalin.websocket.WsCloseStatus;
+import net.pkhapps.vera.server.device.internal.DevicePrincipal;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/// A websocket session of an authenticated device.
+///
+/// Outgoing frames are put on a bounded queue and written by a single writer, one frame at a time, using Jetty's
+/// asynchronous send. The next frame is written from the completion callback of the previous one, which means frames
+/// go out in the order they were queued and no thread is blocked by a slow device. When the queue is full, new frames
+/// are rejected until the queue has drained to half its capacity, at which point the `onWritable` callback is called.
+final class DeviceSession {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceSession.class);
+
+    private final DevicePrincipal principal;
+    private final String sessionId;
+    private final Session session;
+    private final int capacity;
+    private final Runnable onCloseCallback;
+    private final Runnable onWritableCallback;
+    private final ArrayDeque<Object> outbound;
+    private final WriteCallback writeCallback = new WriteCallback() {
+        @Override
+        public void writeSuccess() {
+            writeNext();
+        }
+
+        @Override
+        public void writeFailed(Throwable x) {
+            log.error("Error sending to device {} (sessionId={})", principal.deviceId(), sessionId, x);
+            closeAndTryAgain();
+        }
+    };
+    private @Nullable ReceivedSequences receivedSequences;
+    private boolean writing;
+    private boolean full;
+    private boolean closed;
+    private boolean ackScheduled;
+    private volatile long lastActivityMillis;
+    private TimingWheel.@Nullable Timeout keepAlive;
+
+    DeviceSession(DevicePrincipal principal, String sessionId, Session session, int capacity,
+                  Runnable onCloseCallback, Runnable onWritableCallback) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.principal = principal;
+        this.sessionId = sessionId;
+        this.session = session;
+        this.capacity = capacity;
+        this.onCloseCallback = onCloseCallback;
+        this.onWritableCallback = onWritableCallback;
+        this.outbound = new ArrayDeque<>(capacity);
+    }
+
+    DevicePrincipal principal() {
+        return principal;
+    }
+
+    String sessionId() {
+        return sessionId;
+    }
+
+    Session session() {
+        return session;
+    }
+
+    /// Records that something was received from the device.
+    ///
+    /// @param nowMillis the current time in milliseconds
+    void markActive(long nowMillis) {
+        lastActivityMillis = nowMillis;
+    }
+
+    /// Returns the time something was last received from the device, or the session was created.
+    ///
+    /// @return the time in milliseconds
+    long lastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    /// Replaces the keep-alive timeout of this session, cancelling the previous one. If the session is already closed,
+    /// the new timeout is cancelled instead.
+    ///
+    /// @param timeout the new timeout
+    void keepAlive(TimingWheel.Timeout timeout) {
+        TimingWheel.@Nullable Timeout cancelled;
+        synchronized (this) {
+            if (closed) {
+                cancelled = timeout;
+            } else {
+                cancelled = keepAlive;
+                keepAlive = timeout;
+            }
+        }
+        if (cancelled != null) {
+            cancelled.cancel();
+        }
+    }
+
+    /// Queues the given binary frame for sending. This method never blocks.
+    ///
+    /// @param frame the frame to send
+    /// @return the outcome; [SendOutcome#QUEUE_FULL] if the device is not keeping up
+    SendOutcome send(ByteBuffer frame) {
+        return enqueue(frame);
+    }
+
+    /// Queues the given text frame for sending, in order with the binary frames. This method never blocks.
+    ///
+    /// @param text the text to send
+    /// @return the outcome; [SendOutcome#QUEUE_FULL] if the device is not keeping up
+    SendOutcome sendText(String text) {
+        return enqueue(text);
+    }
+
+    private SendOutcome enqueue(Object frame) {
+        synchronized (this) {
+            if (closed) {
+                return SendOutcome.NOT_CONNECTED;
+            }
+            if (full) {
+                return SendOutcome.QUEUE_FULL;
+            }
+            outbound.add(frame);
+            if (outbound.size() >= capacity) {
+                log.debug("Outbound queue of device {} is full (sessionId={})", principal.deviceId(), sessionId);
+                full = true;
+            }
+            if (writing) {
+                return SendOutcome.QUEUED;
+            }
+            writing = true;
+        }
+        writeNext();
+        return SendOutcome.QUEUED;
+    }
+
+    /// Starts receiving messages from the device. Can only be done once per session.
+    ///
+    /// @param firstSequence the sequence number of the first message the device will send in this session
+    /// @return true if the session was started, false if it had already been started
+    synchronized boolean startReceiving(long firstSequence) {
+        if (receivedSequences != null) {
+            return false;
+        }
+        receivedSequences = new ReceivedSequences(firstSequence);
+        return true;
+    }
+
+    /// Checks whether the device has declared its first sequence number with [#startReceiving(long)].
+    ///
+    /// @return true if messages can be received from the device
+    synchronized boolean isReceiving() {
+        return receivedSequences != null;
+    }
+
+    /// Records that a message with the given sequence number has been received from the device. Acknowledgments are
+    /// coalesced: only the first message received after the previous acknowledgment requires scheduling a new one.
+    ///
+    /// @param sequence the sequence number of the message
+    /// @return true if the caller should schedule a call to [#takeAckFrame()]
+    synchronized boolean markReceived(long sequence) {
+        if (receivedSequences == null) {
+            return false;
+        }
+        receivedSequences.received(sequence);
+        if (ackScheduled) {
+            return false;
+        }
+        ackScheduled = true;
+        return true;
+    }
+
+    /// Returns an [AckFrame] acknowledging every message received from the device so far.
+    ///
+    /// @return the frame, or `null` if the device has not started sending
+    synchronized @Nullable AckFrame takeAckFrame() {
+        ackScheduled = false;
+        return receivedSequences == null ? null : receivedSequences.toAckFrame();
+    }
+
+    private void writeNext() {
+        @Nullable Object next;
+        boolean writable = false;
+        synchronized (this) {
+            next = closed ? null : outbound.poll();
+            if (next == null) {
+                writing = false;
+            }
+            if (full && outbound.size() <= capacity / 2) {
+                full = false;
+                writable = !closed;
+            }
+        }
+        if (writable) {
+            onWritableCallback.run();
+        }
+        if (next != null) {
+            write(next);
+        }
+    }
+
+    private void write(Object frame) {
+        try {
+            switch (frame) {
+                case ByteBuffer bytes -> session.getRemote().sendBytes(bytes, writeCallback);
+                case String text -> session.getRemote().sendString(text, writeCallback);
+                default -> throw new IllegalArgumentException("Unsupported frame: " + frame);
+            }
+        } catch (RuntimeException e) {
+            writeCallback.writeFailed(e);
+        }
+    }
+
+    void closeAndTryAgain() {
+        close(WsCloseStatus.TRY_AGAIN_LATER, WsCloseStatus.TRY_AGAIN_LATER.message());
+    }
+
+    void close(WsCloseStatus status, String reason) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            outbound.clear();
+        }
+        cancelKeepAlive();
+        log.debug("Closing session for device {} (sessionId={}, status={}, reason=[{}])",
+                principal.deviceId(), sessionId, status.getCode(), reason);
+        try {
+            session.close(status.getCode(), reason);
+        } finally {
+            onCloseCallback.run();
+        }
+    }
+
+    /// Marks the session as closed without closing the underlying websocket, which has already been closed by the
+    /// client.
+    void markClosed() {
+        synchronized (this) {
+            closed = true;
+            outbound.clear();
+        }
+        cancelKeepAlive();
+    }
+
+    private void cancelKeepAlive() {
+        TimingWheel.@Nullable Timeout cancelled;
+        synchronized (this) {
+            cancelled = keepAlive;
+            keepAlive = null;
+        }
+        if (cancelled != null) {
+            cancelled.cancel();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceSession[" + principal.deviceId() + ", " + sessionId + "]";
+    }
+}
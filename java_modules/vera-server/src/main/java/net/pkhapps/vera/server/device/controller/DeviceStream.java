@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.device.OutgoingMessageId;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Function;
+
+/// The stream of messages sent to a single device. Unlike a [DeviceSession], the stream survives reconnects.
+///
+/// Every message sent to the device gets the next sequence number of the stream. The stream starts at a sequence
+/// number derived from the time the stream was created, so sequence numbers keep increasing across server restarts.
+///
+/// The stream remembers the frames that have been sent but not acknowledged, up to a fixed capacity. When the device
+/// reconnects, it states the last sequence number up to which it has received every message. The frames up to that
+/// sequence number are considered received, and only the frames after it are sent again. Frames that have been
+/// forgotten are not sent again, so the server tells the device the sequence number it resumes from, and the device
+/// skips any gap before it. The missing frames are resent through [#resend(Function)], which picks up where it left off
+/// when the session could not take them all at once. No new frames should be sent before all missing frames have been
+/// resent, so that the device receives them in sequence order.
+///
+/// Once a message has been acknowledged, all frames containing it are forgotten, including the older frames of
+/// retried deliveries.
+final class DeviceStream {
+
+    private final int capacity;
+    private final LinkedHashMap<Long, UnacknowledgedFrame> unacknowledged = new LinkedHashMap<>();
+    private final ArrayDeque<Long> resending = new ArrayDeque<>();
+    private long nextSequence;
+
+    /// Creates a new stream.
+    ///
+    /// @param firstSequence the sequence number of the first message
+    /// @param capacity      the maximum number of unacknowledged frames to remember
+    DeviceStream(long firstSequence, int capacity) {
+        this.nextSequence = firstSequence;
+        this.capacity = capacity;
+    }
+
+    /// Returns the sequence number to use for the next message. The caller must hold the lock of the stream from
+    /// getting the sequence number until the frame has been sent and [#sent] called, to keep the frames in order.
+    ///
+    /// @return the next sequence number
+    long nextSequence() {
+        assert Thread.holdsLock(this);
+        return nextSequence;
+    }
+
+    /// Records that the frame with the sequence number returned by [#nextSequence()] has been sent. If the stream is
+    /// at capacity, the oldest frame is forgotten; it will not be sent again on resume.
+    ///
+    /// @param messageId the ID of the message in the frame
+    /// @param frame     the frame
+    void sent(OutgoingMessageId messageId, byte[] frame) {
+        assert Thread.holdsLock(this);
+        var sequence = nextSequence++;
+        unacknowledged.put(sequence, new UnacknowledgedFrame(sequence, messageId, frame));
+        if (unacknowledged.size() > capacity) {
+            unacknowledged.pollFirstEntry();
+        }
+    }
+
+    /// Forgets all frames containing the given message.
+    ///
+    /// @param messageId the ID of the acknowledged message
+    synchronized void acknowledged(OutgoingMessageId messageId) {
+        unacknowledged.values().removeIf(frame -> frame.messageId().equals(messageId));
+    }
+
+    /// Forgets all frames acknowledged by the given [AckFrame], and all other frames containing the same messages.
+    ///
+    /// @param ack the acknowledgment from the device
+    /// @return the IDs of the acknowledged messages, in sequence order
+    synchronized List<OutgoingMessageId> acknowledged(AckFrame ack) {
+        var acknowledged = new LinkedHashSet<OutgoingMessageId>();
+        for (var frame : unacknowledged.values()) {
+            if (ack.acknowledges(frame.sequence())) {
+                acknowledged.add(frame.messageId());
+            }
+        }
+        unacknowledged.values().removeIf(frame -> acknowledged.contains(frame.messageId()));
+        return List.copyOf(acknowledged);
+    }
+
+    /// Resumes the stream after a reconnect. The missing frames are resent by the next call to [#resend(Function)].
+    ///
+    /// @param lastReceivedSequence the sequence number up to which the device has received every message
+    /// @return the frames the device has received, which are forgotten, and the frames it has not, in sequence order
+    Resume resume(long lastReceivedSequence) {
+        assert Thread.holdsLock(this);
+        var received = new ArrayList<UnacknowledgedFrame>();
+        var missing = new ArrayList<UnacknowledgedFrame>();
+        for (var it = unacknowledged.values().iterator(); it.hasNext(); ) {
+            var frame = it.next();
+            if (frame.sequence() <= lastReceivedSequence) {
+                received.add(frame);
+                it.remove();
+            } else {
+                missing.add(frame);
+            }
+        }
+        resending.clear();
+        missing.forEach(frame -> resending.add(frame.sequence()));
+        var resumeFrom = missing.isEmpty() ? nextSequence : missing.getFirst().sequence();
+        return new Resume(resumeFrom, received, missing);
+    }
+
+    /// Resends the missing frames of the latest [#resume(long)], in sequence order, until all have been sent or the
+    /// session does not take any more. Frames that have been acknowledged in the meantime are skipped.
+    ///
+    /// @param send the function that sends a frame to the current session of the device
+    /// @return [SendOutcome#QUEUED] if there are no more frames to resend, otherwise the outcome of the frame that
+    ///         could not be sent
+    SendOutcome resend(Function<ByteBuffer, SendOutcome> send) {
+        assert Thread.holdsLock(this);
+        while (!resending.isEmpty()) {
+            var frame = unacknowledged.get(resending.peekFirst());
+            if (frame != null) {
+                var outcome = send.apply(ByteBuffer.wrap(frame.frame()));
+                if (outcome != SendOutcome.QUEUED) {
+                    return outcome;
+                }
+            }
+            resending.pollFirst();
+        }
+        return SendOutcome.QUEUED;
+    }
+
+    /// A frame that has been sent to the device but not acknowledged.
+    ///
+    /// @param sequence  the sequence number of the frame
+    /// @param messageId the ID of the message in the frame
+    /// @param frame     the serialized [OutgoingMessageEnvelope]
+    record UnacknowledgedFrame(long sequence, OutgoingMessageId messageId, byte[] frame) {
+    }
+
+    /// Result of [#resume(long)].
+    ///
+    /// @param resumeFrom the sequence number of the next frame the device will receive
+    /// @param received   the frames the device has already received
+    /// @param missing    the frames the device has not received, in sequence order
+    record Resume(long resumeFrom, List<UnacknowledgedFrame> received, List<UnacknowledgedFrame> missing) {
+    }
+}
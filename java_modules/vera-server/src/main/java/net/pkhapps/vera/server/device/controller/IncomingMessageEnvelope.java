@@ -22,10 +22,18 @@ import net.pkhapps.vera.server.device.MessagePriority;
 
 import java.time.Instant;
 
+/// Envelope of a message sent by a device.
+///
+/// @param sequence  the sequence number of the message within the stream of messages from the device
+/// @param messageId the ID of the message, generated by the device
+/// @param priority  the priority of the message
+/// @param timestamp the instant at which the device sent the message
+/// @param payload   the payload of the message
 record IncomingMessageEnvelope(
+        long sequence,
         IncomingMessageId messageId,
         MessagePriority priority,
         Instant timestamp,
         MessagePayload payload
-) {
+) implements DeviceFrame {
 }
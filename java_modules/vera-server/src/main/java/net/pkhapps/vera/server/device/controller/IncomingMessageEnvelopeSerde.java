@@ -24,6 +24,8 @@ import net.pkhapps.vera.server.util.serde.Input;
 import net.pkhapps.vera.server.util.serde.Output;
 import net.pkhapps.vera.server.util.serde.Serde;
 
+import org.jspecify.annotations.Nullable;
+
 import java.time.Instant;
 
 /// [Serde] for [IncomingMessageEnvelope].
@@ -40,6 +42,7 @@ final class IncomingMessageEnvelopeSerde implements Serde<IncomingMessageEnvelop
 
     @Override
     public void writeTo(IncomingMessageEnvelope object, Output output) {
+        output.writeLong(object.sequence());
         output.writeString(object.messageId().value());
         output.writeInteger(object.priority().ordinal());
         output.writeLong(object.timestamp().toEpochMilli());
@@ -48,10 +51,38 @@ final class IncomingMessageEnvelopeSerde implements Serde<IncomingMessageEnvelop
 
     @Override
     public IncomingMessageEnvelope readFrom(Input input) {
+        var envelope = readFrom(input, (_, _) -> true);
+        assert envelope != null;
+        return envelope;
+    }
+
+    /// Reads an envelope, but stops after the sequence number and message ID if the filter rejects them. This avoids
+    /// decoding the payload of e.g. duplicate messages.
+    ///
+    /// @param input  the input to read from
+    /// @param filter the filter to apply to the sequence number and message ID
+    /// @return the envelope, or `null` if the filter rejected it
+    @Nullable IncomingMessageEnvelope readFrom(Input input, HeaderFilter filter) {
+        var sequence = input.readLong();
         var messageId = new IncomingMessageId(input.readString());
+        if (!filter.accept(sequence, messageId)) {
+            return null;
+        }
         var priority = MessagePriority.values()[input.readInteger()];
         var timestamp = Instant.ofEpochMilli(input.readLong());
         var payload = MessagePayloadSerde.instance().readFrom(input);
-        return new IncomingMessageEnvelope(messageId, priority, timestamp, payload);
+        return new IncomingMessageEnvelope(sequence, messageId, priority, timestamp, payload);
+    }
+
+    /// Filter applied to the header of an incoming message before the rest of the message is decoded.
+    @FunctionalInterface
+    interface HeaderFilter {
+
+        /// Decides whether to decode the rest of the message.
+        ///
+        /// @param sequence  the sequence number of the message
+        /// @param messageId the ID of the message
+        /// @return true to decode the message, false to skip it
+        boolean accept(long sequence, IncomingMessageId messageId);
     }
 }
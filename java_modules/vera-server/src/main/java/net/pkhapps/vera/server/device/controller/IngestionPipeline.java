@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.device.IncomingMessage;
+import net.pkhapps.vera.server.device.MessagePriority;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/// Pipeline that decouples receiving messages from devices from processing them.
+///
+/// The websocket threads only decode messages and [#offer(IncomingMessage, Runnable, Runnable)] them to the pipeline,
+/// which never blocks. The pipeline is split into shards, each with a single worker thread. All messages from the same
+/// device go to the same shard, so that they are processed in the order they were received, unless a message of a
+/// higher priority overtakes them. Within a shard, every [MessagePriority] has its own bounded queue, and the worker
+/// takes messages from the queues highest priority first and passes them on to the consumer. A slow consumer therefore
+/// fills the queues instead of stalling the websocket threads, and a full queue is reported back to the caller so that
+/// it can tell the device to back off.
+///
+/// Queued messages only live in memory, so they must not be acknowledged to the devices before they have been
+/// processed. The callers are told when that has happened through the callbacks passed to [#offer(IncomingMessage,
+/// Runnable, Runnable)].
+final class IngestionPipeline implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private final Consumer<IncomingMessage> consumer;
+    private final int capacityPerPriority;
+    private final List<Shard> shards;
+
+    /// Creates a new pipeline and starts its workers.
+    ///
+    /// @param consumer            the consumer to pass the messages on to
+    /// @param capacityPerPriority the maximum number of queued messages per priority and shard
+    /// @param shardCount          the number of shards, and thereby worker threads
+    IngestionPipeline(Consumer<IncomingMessage> consumer, int capacityPerPriority, int shardCount) {
+        if (capacityPerPriority < 1 || shardCount < 1) {
+            throw new IllegalArgumentException("capacityPerPriority and shardCount must be at least 1");
+        }
+        this.consumer = consumer;
+        this.capacityPerPriority = capacityPerPriority;
+        this.shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard(getClass().getSimpleName() + "-" + i));
+        }
+    }
+
+    /// Adds the given message to the queue of its priority in the shard of its sender. This method never blocks.
+    ///
+    /// Exactly one of the callbacks is called by the worker thread once the message has been passed on to the consumer:
+    /// `onProcessed` if the consumer returned normally, and `onFailed` if it threw an exception. Neither is called if
+    /// the message is not queued.
+    ///
+    /// @param message     the message to add
+    /// @param onProcessed the callback to call after the message has been processed
+    /// @param onFailed    the callback to call if the message could not be processed
+    /// @return true if the message was queued, false if the queue is full or the pipeline has been closed
+    boolean offer(IncomingMessage message, Runnable onProcessed, Runnable onFailed) {
+        var shard = shards.get(Math.floorMod(message.sender().hashCode(), shards.size()));
+        return shard.offer(new QueuedMessage(message, onProcessed, onFailed));
+    }
+
+    /// Stops accepting new messages and waits for the workers to process the messages that have already been queued.
+    @Override
+    public void close() {
+        for (var shard : shards) {
+            shard.close();
+        }
+        try {
+            for (var shard : shards) {
+                shard.worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record QueuedMessage(IncomingMessage message, Runnable onProcessed, Runnable onFailed) {
+    }
+
+    private final class Shard {
+
+        private final List<ArrayDeque<QueuedMessage>> queues;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Thread worker;
+        private boolean closed;
+
+        Shard(String name) {
+            var priorities = MessagePriority.values();
+            this.queues = new ArrayList<>(priorities.length);
+            for (var _ : priorities) {
+                queues.add(new ArrayDeque<>());
+            }
+            this.worker = Thread.ofVirtual().name(name).start(this::run);
+        }
+
+        boolean offer(QueuedMessage queued) {
+            lock.lock();
+            try {
+                var queue = queues.get(queued.message().priority().ordinal());
+                if (closed || queue.size() >= capacityPerPriority) {
+                    return false;
+                }
+                queue.add(queued);
+                notEmpty.signal();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private @Nullable QueuedMessage take() throws InterruptedException {
+            lock.lock();
+            try {
+                while (true) {
+                    for (var queue : queues) {
+                        var queued = queue.poll();
+                        if (queued != null) {
+                            return queued;
+                        }
+                    }
+                    if (closed) {
+                        return null;
+                    }
+                    notEmpty.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void run() {
+            try {
+                QueuedMessage queued;
+                while ((queued = take()) != null) {
+                    process(queued);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(QueuedMessage queued) {
+            var message = queued.message();
+            try {
+                consumer.accept(message);
+            } catch (RuntimeException e) {
+                log.error("Error processing message {} from {}", message.messageId(), message.sender(), e);
+                queued.onFailed().run();
+                return;
+            }
+            queued.onProcessed().run();
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
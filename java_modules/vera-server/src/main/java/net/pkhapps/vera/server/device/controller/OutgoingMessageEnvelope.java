@@ -22,10 +22,18 @@ import net.pkhapps.vera.server.device.OutgoingMessageId;
 
 import java.time.Instant;
 
+/// Envelope of a message sent to a device.
+///
+/// @param sequence  the sequence number of the message within the stream of messages to the device; see [DeviceStream]
+/// @param messageId the ID of the message
+/// @param priority  the priority of the message
+/// @param timestamp the instant at which the message was queued
+/// @param payload   the payload of the message
 record OutgoingMessageEnvelope(
+        long sequence,
         OutgoingMessageId messageId,
         MessagePriority priority,
         Instant timestamp,
         MessagePayload payload
-) {
+) implements DeviceFrame {
 }
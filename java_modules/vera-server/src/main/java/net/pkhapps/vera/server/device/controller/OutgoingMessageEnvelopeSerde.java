@@ -37,6 +37,7 @@ final class OutgoingMessageEnvelopeSerde implements Serde<OutgoingMessageEnvelop
 
     @Override
     public void writeTo(OutgoingMessageEnvelope object, Output output) {
+        output.writeLong(object.sequence());
         output.writeString(object.messageId().toString());
         output.writeInteger(object.priority().ordinal());
         output.writeLong(object.timestamp().toEpochMilli());
@@ -45,10 +46,11 @@ final class OutgoingMessageEnvelopeSerde implements Serde<OutgoingMessageEnvelop
 
     @Override
     public OutgoingMessageEnvelope readFrom(Input input) {
+        var sequence = input.readLong();
         var messageId = OutgoingMessageId.of(input.readString());
         var priority = MessagePriority.values()[input.readInteger()];
         var timestamp = Instant.ofEpochMilli(input.readLong());
         var payload = MessagePayloadSerde.instance().readFrom(input);
-        return new OutgoingMessageEnvelope(messageId, priority, timestamp, payload);
+        return new OutgoingMessageEnvelope(sequence, messageId, priority, timestamp, payload);
     }
 }
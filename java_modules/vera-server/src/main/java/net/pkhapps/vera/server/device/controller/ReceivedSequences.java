@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/// Keeps track of the sequence numbers of the messages received from a device during a session, in order to build
+/// [AckFrame]s. The device declares the sequence number of its first message when the session starts, and the
+/// cumulative acknowledgment only ever advances over sequence numbers that have actually been received. An
+/// [AckFrame] built from this class therefore never acknowledges a message that has not been received.
+///
+/// Instances of this class are not thread safe.
+final class ReceivedSequences {
+
+    /// The maximum number of sequence numbers to remember after a gap. Messages beyond this are not recorded, and
+    /// therefore not acknowledged, until the gap has been filled.
+    static final int MAX_OUT_OF_ORDER = 1024;
+    /// The maximum distance of a sequence number from the cumulative acknowledgment. Messages further ahead are not
+    /// recorded, which also keeps the offsets of the selective ranges of an [AckFrame] within an `int`.
+    static final int MAX_AHEAD = 65536;
+
+    private long cumulative;
+    private final TreeSet<Long> outOfOrder = new TreeSet<>();
+
+    /// Creates a new instance.
+    ///
+    /// @param firstSequence the sequence number of the first message the device will send
+    ReceivedSequences(long firstSequence) {
+        this.cumulative = firstSequence - 1;
+    }
+
+    /// Records that the message with the given sequence number has been received.
+    ///
+    /// @param sequence the sequence number
+    /// @return true if the message was recorded, false if it had already been received, was too far ahead or did not
+    ///         fit
+    boolean received(long sequence) {
+        if (sequence <= cumulative || outOfOrder.contains(sequence)) {
+            return false;
+        }
+        var ahead = sequence - cumulative;
+        if (ahead < 0 || ahead > MAX_AHEAD) {
+            // A negative distance means that the subtraction overflowed
+            return false;
+        }
+        if (sequence == cumulative + 1) {
+            cumulative = sequence;
+            while (!outOfOrder.isEmpty() && outOfOrder.first() == cumulative + 1) {
+                cumulative = outOfOrder.pollFirst();
+            }
+            return true;
+        }
+        if (outOfOrder.size() >= MAX_OUT_OF_ORDER) {
+            // Never skip the gap, as that would acknowledge messages that have not been received
+            return false;
+        }
+        outOfOrder.add(sequence);
+        return true;
+    }
+
+    /// Creates an [AckFrame] acknowledging every message received so far. If the messages after the gap do not fit in
+    /// [AckFrame#MAX_RANGES] ranges, the highest ones are left out, to be acknowledged by a later frame.
+    ///
+    /// @return a new [AckFrame]
+    AckFrame toAckFrame() {
+        var ranges = new ArrayList<AckFrame.SequenceRange>();
+        AckFrame.@Nullable SequenceRange current = null;
+        for (var sequence : outOfOrder) {
+            if (current != null && sequence == current.last() + 1) {
+                current = new AckFrame.SequenceRange(current.first(), sequence);
+                continue;
+            }
+            if (current != null) {
+                ranges.add(current);
+                if (ranges.size() == AckFrame.MAX_RANGES) {
+                    current = null;
+                    break;
+                }
+            }
+            current = new AckFrame.SequenceRange(sequence, sequence);
+        }
+        if (current != null) {
+            ranges.add(current);
+        }
+        return new AckFrame(cumulative, ranges);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.device.IncomingMessageId;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/// Time-bounded set of the IDs of messages recently processed from a single device, used to drop duplicates. The set
+/// also tracks the messages that are being processed, so that a copy that arrives before the original has been
+/// processed is neither processed again nor acknowledged before the original.
+///
+/// The IDs are kept in two generations. New IDs go into the current generation, and lookups check both. When the
+/// current generation is older than the retention time, or holds more than the maximum number of IDs, it becomes the
+/// previous generation and the old previous generation is dropped. An ID is therefore remembered for at least the
+/// retention time (unless the device sends more than `maxIdsPerGeneration` messages within it), and at most twice
+/// that.
+final class RecentMessageIds {
+
+    private final Clock clock;
+    private final long retentionMillis;
+    private final int maxIdsPerGeneration;
+    private Set<IncomingMessageId> current = new HashSet<>();
+    private Set<IncomingMessageId> previous = new HashSet<>();
+    private final Map<IncomingMessageId, List<Runnable>> inProgress = new HashMap<>();
+    private long currentStartedAt;
+
+    /// Creates a new set.
+    ///
+    /// @param clock               the clock to measure the retention time with
+    /// @param retention           the minimum time to remember an ID
+    /// @param maxIdsPerGeneration the maximum number of IDs per generation
+    RecentMessageIds(Clock clock, Duration retention, int maxIdsPerGeneration) {
+        this.clock = clock;
+        this.retentionMillis = retention.toMillis();
+        this.maxIdsPerGeneration = maxIdsPerGeneration;
+        this.currentStartedAt = clock.millis();
+    }
+
+    /// Checks whether the message with the given ID has been processed recently or is being processed. If it has been
+    /// processed, `onProcessed` is run right away. If it is being processed, `onProcessed` is run once it has been
+    /// processed successfully.
+    ///
+    /// @param messageId   the ID of the message
+    /// @param onProcessed the task to run once the message has been processed
+    /// @return true if the message is a duplicate
+    synchronized boolean isDuplicate(IncomingMessageId messageId, Runnable onProcessed) {
+        rotateIfNeeded();
+        if (current.contains(messageId) || previous.contains(messageId)) {
+            onProcessed.run();
+            return true;
+        }
+        var waiting = inProgress.get(messageId);
+        if (waiting != null) {
+            waiting.add(onProcessed);
+            return true;
+        }
+        return false;
+    }
+
+    /// Marks the message with the given ID as being processed, unless it is a duplicate.
+    ///
+    /// @param messageId   the ID of the message
+    /// @param onProcessed the task to run once the message has been processed
+    /// @return true if the caller should process the message, false if it is a duplicate
+    /// @see #isDuplicate(IncomingMessageId, Runnable)
+    synchronized boolean startProcessing(IncomingMessageId messageId, Runnable onProcessed) {
+        if (isDuplicate(messageId, onProcessed)) {
+            return false;
+        }
+        var waiting = new ArrayList<Runnable>();
+        waiting.add(onProcessed);
+        inProgress.put(messageId, waiting);
+        return true;
+    }
+
+    /// Remembers the ID of a message that has been processed successfully, and runs the tasks waiting for it.
+    ///
+    /// @param messageId the ID of the message
+    void processed(IncomingMessageId messageId) {
+        List<Runnable> waiting;
+        synchronized (this) {
+            rotateIfNeeded();
+            current.add(messageId);
+            waiting = inProgress.remove(messageId);
+        }
+        if (waiting != null) {
+            waiting.forEach(Runnable::run);
+        }
+    }
+
+    /// Forgets a message that could not be processed, so that it is processed again when the device resends it. The
+    /// tasks waiting for it are dropped.
+    ///
+    /// @param messageId the ID of the message
+    synchronized void failed(IncomingMessageId messageId) {
+        inProgress.remove(messageId);
+    }
+
+    /// Checks whether this set has nothing left to remember, because every ID in it has expired and no message is being
+    /// processed.
+    ///
+    /// @return true if the set can be dropped
+    synchronized boolean isExpired() {
+        rotateIfNeeded();
+        return current.isEmpty() && previous.isEmpty() && inProgress.isEmpty();
+    }
+
+    private void rotateIfNeeded() {
+        var now = clock.millis();
+        var age = now - currentStartedAt;
+        if (age >= 2 * retentionMillis) {
+            // Both generations have expired
+            previous = new HashSet<>();
+            current = new HashSet<>();
+            currentStartedAt = now;
+        } else if (age >= retentionMillis || current.size() >= maxIdsPerGeneration) {
+            previous = current;
+            current = new HashSet<>();
+            currentStartedAt = now;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/// Hashed timing wheel for large numbers of coarse-grained timeouts, such as per-session keep-alives.
+///
+/// The wheel is an array of slots, each holding a doubly linked list of timeouts, and is advanced one slot per tick by
+/// a single periodic task. Scheduling and cancelling a timeout are O(1). A timeout further away than one revolution
+/// is put in the slot it will eventually expire in, and counts down the remaining revolutions every time the wheel
+/// passes it. Timeouts never fire early, but can fire up to two ticks late, which is fine for timeouts measured in
+/// seconds.
+///
+/// Expired tasks are run by the thread that calls [#tick()], outside the lock of the wheel, and must not block.
+final class TimingWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickNanos;
+    private final Timeout[] slots;
+    private final int mask;
+    private long currentTick;
+
+    /// Creates a new timing wheel.
+    ///
+    /// @param tickDuration the time between two ticks, i.e. the resolution of the wheel
+    /// @param slotCount    the number of slots; rounded up to the nearest power of two
+    TimingWheel(Duration tickDuration, int slotCount) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        if (slotCount < 1 || slotCount > 1 << 20) {
+            throw new IllegalArgumentException("slotCount must be between 1 and 2^20");
+        }
+        this.tickNanos = tickDuration.toNanos();
+        var size = Integer.highestOneBit(slotCount) == slotCount ? slotCount : Integer.highestOneBit(slotCount) << 1;
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+    }
+
+    /// Starts advancing the wheel once per tick using the given scheduler.
+    ///
+    /// @param scheduler the scheduler to run the ticks and the expired tasks in
+    /// @return the future of the periodic task, for stopping the wheel
+    ScheduledFuture<?> start(ScheduledExecutorService scheduler) {
+        return scheduler.scheduleAtFixedRate(this::tick, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /// Schedules the given task to run after the given delay.
+    ///
+    /// @param delay the delay
+    /// @param task  the task to run
+    /// @return the timeout, for cancelling the task
+    Timeout schedule(Duration delay, Runnable task) {
+        // Round up to whole ticks, plus one since part of the current tick may already have passed
+        var ticks = Math.max(0, (delay.toNanos() + tickNanos - 1) / tickNanos) + 1;
+        synchronized (this) {
+            var timeout = new Timeout(task, (int) ((currentTick + ticks) & mask), (ticks - 1) / slots.length);
+            var head = slots[timeout.slot];
+            if (head != null) {
+                head.prev = timeout;
+                timeout.next = head;
+            }
+            slots[timeout.slot] = timeout;
+            return timeout;
+        }
+    }
+
+    /// Advances the wheel by one tick and runs the tasks that expired.
+    void tick() {
+        var expired = new ArrayList<Timeout>();
+        synchronized (this) {
+            currentTick++;
+            var timeout = slots[(int) (currentTick & mask)];
+            while (timeout != null) {
+                var next = timeout.next;
+                if (timeout.remainingRounds == 0) {
+                    unlink(timeout);
+                    expired.add(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+        for (var timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                log.error("Error running timeout task", e);
+            }
+        }
+    }
+
+    /// Returns the number of scheduled timeouts. This is O(n) and only intended for tests.
+    ///
+    /// @return the number of timeouts
+    synchronized int size() {
+        var size = 0;
+        for (var head : slots) {
+            for (var timeout = head; timeout != null; timeout = timeout.next) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.done = true;
+    }
+
+    /// A scheduled task in a [TimingWheel].
+    final class Timeout {
+
+        private final Runnable task;
+        private final int slot;
+        private long remainingRounds;
+        private @Nullable Timeout prev;
+        private @Nullable Timeout next;
+        private boolean done;
+
+        private Timeout(Runnable task, int slot, long remainingRounds) {
+            this.task = task;
+            this.slot = slot;
+            this.remainingRounds = remainingRounds;
+        }
+
+        /// Cancels the task, unless it has already expired. Cancelling twice has no effect.
+        void cancel() {
+            synchronized (TimingWheel.this) {
+                if (!done) {
+                    unlink(this);
+                }
+            }
+        }
+    }
+}
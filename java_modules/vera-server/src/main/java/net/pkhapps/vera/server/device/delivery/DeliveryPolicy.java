@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.delivery;
+
+import java.time.Duration;
+
+/// Policy controlling how [MessageDeliveryEngine] delivers messages to devices.
+///
+/// @param ackTimeout           how long to wait for an acknowledgment before considering a send attempt lost
+/// @param maxAttempts          the maximum number of send attempts per recipient
+/// @param initialBackoff       the delay before the first retry; the delay doubles for every subsequent retry
+/// @param maxBackoff           the upper bound of the retry delay
+/// @param timeToLive           how long a message may remain undelivered before it is given up on, regardless of the
+///                             number of attempts
+/// @param maxInFlightPerDevice the maximum number of unacknowledged messages per device
+public record DeliveryPolicy(
+        Duration ackTimeout,
+        int maxAttempts,
+        Duration initialBackoff,
+        Duration maxBackoff,
+        Duration timeToLive,
+        int maxInFlightPerDevice
+) {
+
+    /// The default delivery policy.
+    public static final DeliveryPolicy DEFAULT = new DeliveryPolicy(
+            Duration.ofSeconds(10),
+            5,
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(30),
+            Duration.ofMinutes(5),
+            16
+    );
+
+    public DeliveryPolicy {
+        if (ackTimeout.isNegative() || ackTimeout.isZero()) {
+            throw new IllegalArgumentException("ackTimeout must be positive");
+        }
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("Invalid backoff");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+        if (maxInFlightPerDevice < 1) {
+            throw new IllegalArgumentException("maxInFlightPerDevice must be at least 1");
+        }
+    }
+
+    /// Returns the delay to wait before the next attempt, after the given number of failed attempts.
+    ///
+    /// @param failedAttempts the number of failed attempts so far (at least 1)
+    /// @return the retry delay
+    Duration backoff(int failedAttempts) {
+        var shift = Math.min(failedAttempts - 1, 20);
+        var delay = initialBackoff.multipliedBy(1L << shift);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
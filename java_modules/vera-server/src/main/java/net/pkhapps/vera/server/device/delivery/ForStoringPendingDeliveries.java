@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.delivery;
+
+import net.pkhapps.vera.server.device.DeviceId;
+import net.pkhapps.vera.server.device.OutgoingMessage;
+import net.pkhapps.vera.server.device.OutgoingMessageId;
+
+import java.util.List;
+import java.util.Set;
+
+/// Durable outbox used by [MessageDeliveryEngine] to keep messages that have not yet been delivered to all their
+/// recipients across restarts.
+public interface ForStoringPendingDeliveries {
+
+    /// Stores the given message. The message must be durable when this method returns.
+    ///
+    /// @param message the message to store
+    void add(OutgoingMessage message);
+
+    /// Records that the delivery of the given message to the given recipient has completed, either successfully or
+    /// not. The message is removed once the delivery has completed for all its recipients.
+    ///
+    /// @param messageId the ID of the message
+    /// @param recipient the recipient
+    void complete(OutgoingMessageId messageId, DeviceId recipient);
+
+    /// Returns the stored messages, in the order in which they were queued.
+    ///
+    /// @return an unmodifiable list of [PendingMessage]s
+    List<PendingMessage> pending();
+
+    /// A stored message and the recipients whose delivery has not completed yet.
+    ///
+    /// @param message             the message
+    /// @param remainingRecipients the recipients whose delivery has not completed yet
+    record PendingMessage(OutgoingMessage message, Set<DeviceId> remainingRecipients) {
+
+        public PendingMessage {
+            remainingRecipients = Set.copyOf(remainingRecipients);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.delivery;
+
+import net.pkhapps.vera.server.device.*;
+import net.pkhapps.vera.server.device.internal.ForReceivingFromDevices;
+import net.pkhapps.vera.server.device.internal.ForSendingToDevices;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
+import net.pkhapps.vera.server.util.Registration;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/// Engine that delivers [OutgoingMessage]s to devices and dispatches [IncomingMessage]s from devices to listeners.
+///
+/// Every recipient of a message gets its own delivery, which is placed on a per-device queue ordered by
+/// [MessagePriority] and then by the order in which the messages were sent. At most
+/// [DeliveryPolicy#maxInFlightPerDevice()] deliveries per device are unacknowledged at any time, which means that a
+/// [MessagePriority#HIGH] message never has to wait behind more than that many lower priority messages.
+///
+/// A delivery that is not acknowledged within [DeliveryPolicy#ackTimeout()] is retried with exponential backoff until
+/// [DeliveryPolicy#maxAttempts()] is reached or [DeliveryPolicy#timeToLive()] has passed. Deliveries to devices that
+/// are not connected, or that are not keeping up, stay on the queue and are sent as soon as the device connects or
+/// becomes writable again. Every delivery ends with exactly one [OutgoingMessageEvent].
+///
+/// If the engine is given a [ForStoringPendingDeliveries] outbox, every message is stored there before [#sendMessage] returns
+/// and removed once all its deliveries have ended. When the engine is [started][#start()], it resumes delivering the
+/// messages in the outbox, which means it should be started after the WAL has been replayed and after the listeners
+/// have been registered, so that they are told about the pending messages that have already expired.
+public final class MessageDeliveryEngine implements ForSendingMessages, ForReceivingMessages, ForReceivingFromDevices,
+        AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageDeliveryEngine.class);
+
+    private final DeliveryPolicy policy;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<DeviceId, DeviceQueue> queues = new ConcurrentHashMap<>();
+    private final List<Consumer<OutgoingMessageEvent>> outgoingMessageListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<IncomingMessage>> incomingMessageListeners = new CopyOnWriteArrayList<>();
+    private final ForSendingToDevices forSendingToDevices;
+    private final @Nullable ForStoringPendingDeliveries outbox;
+    private long nextSequence;
+    private boolean started;
+
+    private MessageDeliveryEngine(Function<ForReceivingFromDevices, ForSendingToDevices> transportFactory,
+                                  @Nullable ForStoringPendingDeliveries outbox,
+                                  DeliveryPolicy policy,
+                                  Clock clock) {
+        this.policy = policy;
+        this.clock = clock;
+        this.outbox = outbox;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name(getClass().getSimpleName())
+                .daemon()
+                .factory());
+        this.forSendingToDevices = transportFactory.apply(this);
+    }
+
+    /// Creates a new delivery engine.
+    ///
+    /// @param transportFactory a function that creates the transport to send messages through, given the engine that
+    ///                         should receive acknowledgments and messages from the devices
+    /// @param policy           the delivery policy
+    /// @param clock            the clock to use for timestamps
+    /// @return the new engine
+    public static MessageDeliveryEngine create(Function<ForReceivingFromDevices, ForSendingToDevices> transportFactory,
+                                               DeliveryPolicy policy,
+                                               Clock clock) {
+        return new MessageDeliveryEngine(transportFactory, null, policy, clock);
+    }
+
+    /// Creates a new delivery engine that stores undelivered messages in the given outbox. The messages that are
+    /// already in it are delivered once the engine is [started][#start()].
+    ///
+    /// @param transportFactory a function that creates the transport to send messages through, given the engine that
+    ///                         should receive acknowledgments and messages from the devices
+    /// @param outbox           the outbox to store undelivered messages in
+    /// @param policy           the delivery policy
+    /// @param clock            the clock to use for timestamps
+    /// @return the new engine
+    public static MessageDeliveryEngine create(Function<ForReceivingFromDevices, ForSendingToDevices> transportFactory,
+                                               ForStoringPendingDeliveries outbox,
+                                               DeliveryPolicy policy,
+                                               Clock clock) {
+        return new MessageDeliveryEngine(transportFactory, outbox, policy, clock);
+    }
+
+    @Override
+    public OutgoingMessage sendMessage(Set<DeviceId> recipients, MessagePriority priority, MessagePayload payload) {
+        if (recipients.isEmpty()) {
+            throw new IllegalArgumentException("At least one recipient is required");
+        }
+        var message = new OutgoingMessage(OutgoingMessageId.random(), Set.copyOf(recipients), priority,
+                clock.instant(), payload);
+        log.debug("Queueing message {} with priority {} for {} recipient(s)", message.messageId(), priority,
+                recipients.size());
+        if (outbox != null) {
+            outbox.add(message);
+        }
+        message.recipients().forEach(recipient -> enqueue(message, recipient));
+        return message;
+    }
+
+    /// Resumes delivering the messages in the outbox, if the engine has one. Call this after registering the outgoing
+    /// message listeners. Calling this more than once has no effect.
+    public void start() {
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+        }
+        if (outbox != null) {
+            resume(outbox);
+        }
+    }
+
+    private void resume(ForStoringPendingDeliveries outbox) {
+        var pendingMessages = outbox.pending();
+        log.info("Resuming delivery of {} pending message(s)", pendingMessages.size());
+        for (var pendingMessage : pendingMessages) {
+            pendingMessage.remainingRecipients().forEach(recipient -> enqueue(pendingMessage.message(), recipient));
+        }
+    }
+
+    private void enqueue(OutgoingMessage message, DeviceId recipient) {
+        var queue = queues.computeIfAbsent(recipient, DeviceQueue::new);
+        var delivery = new Delivery(message, recipient, nextSequence());
+        var expiresIn = Duration.between(clock.instant(), message.queuedOn().plus(policy.timeToLive()));
+        synchronized (queue) {
+            delivery.expiry = scheduler.schedule(() -> expire(queue, delivery),
+                    Math.max(0, expiresIn.toNanos()), TimeUnit.NANOSECONDS);
+            queue.pending.add(delivery);
+            queue.pump();
+        }
+    }
+
+    @Override
+    public Registration registerOutgoingMessageListener(Consumer<OutgoingMessageEvent> listener) {
+        outgoingMessageListeners.add(listener);
+        return () -> outgoingMessageListeners.remove(listener);
+    }
+
+    @Override
+    public Registration registerIncomingMessageListener(Consumer<IncomingMessage> listener) {
+        incomingMessageListeners.add(listener);
+        return () -> incomingMessageListeners.remove(listener);
+    }
+
+    @Override
+    public void messageAckFromDevice(DeviceId deviceId, OutgoingMessageId acknowledgedMessageId) {
+        var queue = queues.get(deviceId);
+        if (queue == null) {
+            log.debug("Ignoring acknowledgment of message {} from unknown device {}", acknowledgedMessageId, deviceId);
+            return;
+        }
+        OutgoingMessageEvent event;
+        synchronized (queue) {
+            var delivery = queue.inFlight.remove(acknowledgedMessageId);
+            if (delivery == null) {
+                log.debug("Ignoring acknowledgment of message {} from {} that is not in flight",
+                        acknowledgedMessageId, deviceId);
+                return;
+            }
+            delivery.complete();
+            event = new OutgoingMessageEvent.DeliverySucceeded(delivery.message, deviceId,
+                    delivery.sentOn(), clock.instant());
+            queue.pump();
+        }
+        completed(acknowledgedMessageId, deviceId);
+        publish(event);
+    }
+
+    @Override
+    public void messageFromDevice(IncomingMessage message) {
+        for (var listener : incomingMessageListeners) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                log.error("Error in incoming message listener", e);
+            }
+        }
+    }
+
+    @Override
+    public void deviceConnected(DeviceId deviceId) {
+        var queue = queues.get(deviceId);
+        if (queue != null) {
+            synchronized (queue) {
+                queue.pump();
+            }
+        }
+    }
+
+    @Override
+    public void deviceWritable(DeviceId deviceId) {
+        deviceConnected(deviceId);
+    }
+
+    @Override
+    public void deviceDisconnected(DeviceId deviceId) {
+        // Messages in flight stay in flight: the transport resends them when the device resumes after reconnecting,
+        // and if they are not acknowledged in time, they are retried like any other message.
+        log.debug("Device {} disconnected", deviceId);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private synchronized long nextSequence() {
+        return nextSequence++;
+    }
+
+    private void ackTimedOut(DeviceQueue queue, Delivery delivery) {
+        synchronized (queue) {
+            if (!queue.inFlight.remove(delivery.message.messageId(), delivery)) {
+                return;
+            }
+            log.debug("Message {} to {} was not acknowledged in time (attempt {})", delivery.message.messageId(),
+                    queue.deviceId, delivery.attempts);
+            if (delivery.attempts < policy.maxAttempts()) {
+                var backoff = policy.backoff(delivery.attempts);
+                scheduler.schedule(() -> retry(queue, delivery), backoff.toNanos(), TimeUnit.NANOSECONDS);
+                queue.pump();
+                return;
+            }
+            queue.pump();
+        }
+        giveUp(queue, delivery);
+    }
+
+    private void retry(DeviceQueue queue, Delivery delivery) {
+        synchronized (queue) {
+            if (!delivery.completed) {
+                queue.pending.add(delivery);
+                queue.pump();
+            }
+        }
+    }
+
+    private void expire(DeviceQueue queue, Delivery delivery) {
+        synchronized (queue) {
+            if (delivery.completed) {
+                return;
+            }
+            log.debug("Message {} to {} expired", delivery.message.messageId(), queue.deviceId);
+            queue.pending.remove(delivery);
+            queue.inFlight.remove(delivery.message.messageId(), delivery);
+            queue.pump();
+        }
+        giveUp(queue, delivery);
+    }
+
+    private void giveUp(DeviceQueue queue, Delivery delivery) {
+        synchronized (queue) {
+            if (delivery.completed) {
+                return;
+            }
+            delivery.complete();
+        }
+        log.warn("Giving up on delivering message {} to {} after {} attempt(s)", delivery.message.messageId(),
+                queue.deviceId, delivery.attempts);
+        completed(delivery.message.messageId(), queue.deviceId);
+        publish(new OutgoingMessageEvent.DeliveryFailed(delivery.message, queue.deviceId, delivery.sentOn(),
+                clock.instant()));
+    }
+
+    private void completed(OutgoingMessageId messageId, DeviceId recipient) {
+        if (outbox != null) {
+            try {
+                outbox.complete(messageId, recipient);
+            } catch (RuntimeException e) {
+                // The message is sent again after a restart, which is harmless
+                log.error("Error removing message {} to {} from the outbox", messageId, recipient, e);
+            }
+        }
+    }
+
+    private void publish(OutgoingMessageEvent event) {
+        for (var listener : outgoingMessageListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("Error in outgoing message listener", e);
+            }
+        }
+    }
+
+    /// Queue of deliveries to a single device. All access must be synchronized on the queue itself.
+    private final class DeviceQueue {
+        private final DeviceId deviceId;
+        private final PriorityQueue<Delivery> pending = new PriorityQueue<>(Delivery.ORDER);
+        private final Map<OutgoingMessageId, Delivery> inFlight = new HashMap<>();
+
+        private DeviceQueue(DeviceId deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        /// Sends pending deliveries in priority order until the in-flight window is full or the device cannot be
+        /// reached.
+        private void pump() {
+            while (inFlight.size() < policy.maxInFlightPerDevice() && !pending.isEmpty()) {
+                var delivery = pending.peek();
+                var outcome = forSendingToDevices.sendToDevice(deviceId, delivery.message);
+                if (outcome != SendOutcome.QUEUED) {
+                    log.trace("Device {} cannot accept messages ({}), {} message(s) pending", deviceId, outcome,
+                            pending.size());
+                    return;
+                }
+                pending.poll();
+                delivery.attempts++;
+                if (delivery.firstSentOn == null) {
+                    delivery.firstSentOn = clock.instant();
+                }
+                inFlight.put(delivery.message.messageId(), delivery);
+                delivery.timeout = scheduler.schedule(() -> ackTimedOut(this, delivery),
+                        policy.ackTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /// The delivery of a message to a single recipient. All access must be synchronized on the owning [DeviceQueue].
+    private static final class Delivery {
+        static final Comparator<Delivery> ORDER = Comparator
+                .<Delivery>comparingInt(d -> d.message.priority().ordinal())
+                .thenComparingLong(d -> d.sequence);
+
+        private final OutgoingMessage message;
+        private final DeviceId recipient;
+        private final long sequence;
+        private int attempts;
+        private @Nullable Instant firstSentOn;
+        private @Nullable ScheduledFuture<?> timeout;
+        private @Nullable ScheduledFuture<?> expiry;
+        private boolean completed;
+
+        private Delivery(OutgoingMessage message, DeviceId recipient, long sequence) {
+            this.message = message;
+            this.recipient = recipient;
+            this.sequence = sequence;
+        }
+
+        /// Returns the instant of the first send attempt, or the instant the message was queued if it was never sent.
+        private Instant sentOn() {
+            return firstSentOn == null ? message.queuedOn() : firstSentOn;
+        }
+
+        private void cancelTimeout() {
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+        }
+
+        private void complete() {
+            completed = true;
+            cancelTimeout();
+            if (expiry != null) {
+                expiry.cancel(false);
+                expiry = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Delivery[" + message.messageId() + " -> " + recipient + "]";
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.internal;
+
+import net.pkhapps.vera.security.AccessDeniedException;
+import net.pkhapps.vera.security.AuthenticationRequiredException;
+import net.pkhapps.vera.security.SecurityException;
+import net.pkhapps.vera.server.device.DeviceId;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/// Decorator of [ForAuthenticatingDevices] that caches the outcome of verifying a token, so that devices that keep
+/// reconnecting do not hit the expensive verification every time.
+///
+/// The cache is keyed by the device ID and a SHA-256 hash of the token; the tokens themselves are never stored.
+/// Successful authentications are cached for `successTtl` and failed ones for `failureTtl`, which should be shorter
+/// so that a device that has just been provisioned is not locked out for long. When the cache is full, the least
+/// recently used entry is evicted. A cached failure is thrown again as a new exception of the same kind and with the
+/// same message as the original ([AuthenticationRequiredException], [AccessDeniedException] or plain
+/// [SecurityException]).
+///
+/// When a token is revoked or a device is removed, [#revoke(DeviceId)] must be called so that the old token stops
+/// working immediately instead of when its cache entry expires.
+public final class CachingForAuthenticatingDevices implements ForAuthenticatingDevices {
+
+    private static final String FAILURE = "Authentication failed";
+
+    private final ForAuthenticatingDevices delegate;
+    private final Clock clock;
+    private final long successTtlMillis;
+    private final long failureTtlMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long revocations;
+
+    /// Creates a new cache.
+    ///
+    /// @param delegate   the authenticator to verify the tokens that are not in the cache
+    /// @param clock      the clock to measure the expiry with
+    /// @param successTtl the time to cache a successful authentication
+    /// @param failureTtl the time to cache a failed authentication
+    /// @param maxEntries the maximum number of entries in the cache
+    public CachingForAuthenticatingDevices(ForAuthenticatingDevices delegate, Clock clock, Duration successTtl,
+                                           Duration failureTtl, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.delegate = delegate;
+        this.clock = clock;
+        this.successTtlMillis = successTtl.toMillis();
+        this.failureTtlMillis = failureTtl.toMillis();
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public DevicePrincipal authenticate(DeviceId deviceId, String authorizationToken) throws SecurityException {
+        var key = new Key(deviceId, hash(authorizationToken));
+        long revocationsBefore;
+        synchronized (this) {
+            var entry = cache.get(key);
+            if (entry != null && entry.expiresAtMillis > clock.millis()) {
+                if (entry.principal != null) {
+                    return entry.principal;
+                }
+                throw Objects.requireNonNull(entry.failure).get();
+            } else if (entry != null) {
+                cache.remove(key);
+            }
+            revocationsBefore = revocations;
+        }
+        try {
+            var principal = delegate.authenticate(deviceId, authorizationToken);
+            put(key, new Entry(principal, null, clock.millis() + successTtlMillis), revocationsBefore);
+            return principal;
+        } catch (SecurityException e) {
+            put(key, new Entry(null, failureOf(e), clock.millis() + failureTtlMillis), revocationsBefore);
+            throw e;
+        }
+    }
+
+    /// Removes all cached authentications of the given device, successful and failed. Call this whenever the token
+    /// of the device is revoked or replaced, or the device is removed or added.
+    ///
+    /// @param deviceId the ID of the device
+    public synchronized void revoke(DeviceId deviceId) {
+        revocations++;
+        cache.keySet().removeIf(key -> key.deviceId.equals(deviceId));
+    }
+
+    /// Removes all cached authentications of all devices, for example when the signing keys of the tokens change.
+    public synchronized void revokeAll() {
+        revocations++;
+        cache.clear();
+    }
+
+    private synchronized void put(Key key, Entry entry, long revocationsBefore) {
+        // If anything was revoked while the token was being verified, the outcome may already be stale
+        if (revocations != revocationsBefore) {
+            return;
+        }
+        cache.put(key, entry);
+        if (cache.size() > maxEntries) {
+            cache.pollFirstEntry();
+        }
+    }
+
+    private static Supplier<SecurityException> failureOf(SecurityException e) {
+        var message = Objects.requireNonNullElse(e.getMessage(), FAILURE);
+        return switch (e) {
+            case AuthenticationRequiredException _ -> () -> new AuthenticationRequiredException(message);
+            case AccessDeniedException _ -> () -> new AccessDeniedException(message);
+            default -> () -> new SecurityException(message);
+        };
+    }
+
+    private static String hash(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Key(DeviceId deviceId, String tokenHash) {
+    }
+
+    private record Entry(@Nullable DevicePrincipal principal, @Nullable Supplier<SecurityException> failure,
+                         long expiresAtMillis) {
+    }
+}
@@ -27,4 +27,21 @@ public interface ForReceivingFromDevices {
     void messageAckFromDevice(DeviceId deviceId, OutgoingMessageId acknowledgedMessageId);
 
     void messageFromDevice(IncomingMessage message);
+
+    /// Called when a device has connected and can receive messages.
+    ///
+    /// @param deviceId the ID of the device
+    void deviceConnected(DeviceId deviceId);
+
+    /// Called when a device has disconnected. Messages that have been sent to the device but not yet acknowledged may
+    /// have been lost.
+    ///
+    /// @param deviceId the ID of the device
+    void deviceDisconnected(DeviceId deviceId);
+
+    /// Called when the outbound queue of a device that previously reported [SendOutcome#QUEUE_FULL] has drained and
+    /// can accept more messages.
+    ///
+    /// @param deviceId the ID of the device
+    void deviceWritable(DeviceId deviceId);
 }
@@ -16,11 +16,18 @@
 
 package net.pkhapps.vera.server.device.internal;
 
+import net.pkhapps.vera.server.device.DeviceId;
 import net.pkhapps.vera.server.device.OutgoingMessage;
 import net.pkhapps.vera.server.util.SPI;
 
 @SPI
 public interface ForSendingToDevices {
 
-    void sendToDevices(OutgoingMessage message);
+    /// Sends the given message to a single recipient. This method must not block; the message is sent
+    /// asynchronously and the recipient acknowledges it through [ForReceivingFromDevices#messageAckFromDevice].
+    ///
+    /// @param recipient the device to send the message to
+    /// @param message   the message to send
+    /// @return the outcome of handing over the message to the device session
+    SendOutcome sendToDevice(DeviceId recipient, OutgoingMessage message);
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.internal;
+
+/// Outcome of handing over a message to [ForSendingToDevices].
+public enum SendOutcome {
+    /// The message has been queued for sending to the device.
+    QUEUED,
+    /// The device is not connected.
+    NOT_CONNECTED,
+    /// The outbound queue of the device is full. The sender should hold back until
+    /// [ForReceivingFromDevices#deviceWritable(net.pkhapps.vera.server.device.DeviceId)] is called.
+    QUEUE_FULL
+}
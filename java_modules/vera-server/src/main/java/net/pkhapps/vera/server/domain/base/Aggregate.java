@@ -18,6 +18,9 @@ package net.pkhapps.vera.server.domain.base;
 
 import net.pkhapps.vera.server.util.wal.Durability;
 import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+import org.jspecify.annotations.Nullable;
+
+import java.util.function.Consumer;
 
 /// Base class for aggregates.
 ///
@@ -31,6 +34,7 @@ public abstract class Aggregate<ID extends Identifier, S extends Record, E> {
 
     private final WriteAheadLog wal;
     private final ID id;
+    private volatile @Nullable Consumer<? super Aggregate<ID, S, E>> changeListener;
 
     /// Creates a new aggregate. This method is typically called by a [Repository].
     ///
@@ -51,27 +55,66 @@ public abstract class Aggregate<ID extends Identifier, S extends Record, E> {
     /// Writes the given events to the WAL. The aggregate should *never change its in-memory state in the same method
     /// that calls this method*. Instead, in-memory state changes should be implemented in [#applyEvent(Object)].
     ///
+    /// If called inside a [UnitOfWork], the events are written and applied when the unit of work is committed.
+    ///
     /// @param events the events to write to the WAL
     /// @param durability the durability of the write operation
     /// @throws net.pkhapps.vera.server.util.wal.WriteAheadLogException if the events could not be written to the WAL
     /// @see #appendToWal(Object, Durability)
     protected synchronized final void appendToWal(Iterable<E> events, Durability durability) {
-        var walEvent = AggregateWalEvent.of(this, events);
-        wal.append(walEvent, durability);
-        events.forEach(this::applyEvent);
+        append(AggregateWalEvent.of(this, events), durability);
     }
 
     /// Writes the given event to the WAL. The aggregate should *never change its in-memory state in the same method
     /// that calls this method*. Instead, in-memory state changes should be implemented in [#applyEvent(Object)].
     ///
+    /// If called inside a [UnitOfWork], the event is written and applied when the unit of work is committed.
+    ///
     /// @param event the event to write to the WAL
     /// @param durability the durability of the write operation
     /// @throws net.pkhapps.vera.server.util.wal.WriteAheadLogException if the event could not be written to the WAL
     /// @see #appendToWal(Iterable, Durability)
     protected synchronized final void appendToWal(E event, Durability durability) {
-        var walEvent = AggregateWalEvent.of(this, event);
-        wal.append(walEvent, durability);
-        applyEvent(event);
+        append(AggregateWalEvent.of(this, event), durability);
+    }
+
+    private void append(AggregateWalEvent<?, ID, S, E> walEvent, Durability durability) {
+        var unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null) {
+            unitOfWork.enlist(wal, walEvent, durability, this, () -> apply(walEvent), () -> {
+            });
+        } else {
+            wal.append(walEvent, durability, () -> apply(walEvent));
+        }
+    }
+
+    private synchronized void apply(AggregateWalEvent<?, ID, S, E> walEvent) {
+        applyEvents(walEvent);
+        notifyChangeListener();
+    }
+
+    /// Applies all events of the given WAL event. Used both when writing and when replaying. The default
+    /// implementation calls [#applyEvent(Object)] for each event.
+    ///
+    /// @param walEvent the WAL event whose events to apply
+    void applyEvents(AggregateWalEvent<?, ID, S, E> walEvent) {
+        walEvent.forEach(this::applyEvent);
+    }
+
+    /// Sets the listener that is notified whenever this aggregate has applied events written by itself. This is used
+    /// by the [Repository] that owns the aggregate to keep track of changes. Events applied during replay do not
+    /// trigger the listener, as the repository is already aware of them.
+    ///
+    /// @param changeListener the listener to notify
+    final void setChangeListener(Consumer<? super Aggregate<ID, S, E>> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void notifyChangeListener() {
+        var listener = changeListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
     }
 
     /// Creates a representation of the aggregate's *current state*. This is used by a [Repository] to create snapshots
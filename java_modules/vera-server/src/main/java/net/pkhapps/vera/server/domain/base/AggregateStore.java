@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/// Strategy used by a [Repository] to keep its aggregates in memory.
+///
+/// Implementations must be thread-safe. The repository takes care of the WAL, capacity checks and duplicate ID checks;
+/// the store is only responsible for holding the aggregates.
+///
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+/// @param <S>  the type of the aggregate state
+interface AggregateStore<T extends Aggregate<ID, S, ?>, ID extends Identifier, S extends Record> {
+
+    /// Returns the aggregate with the given ID.
+    ///
+    /// @param id the ID of the aggregate
+    /// @return the aggregate, or `null` if not found
+    @Nullable
+    T get(ID id);
+
+    /// Checks if the store contains an aggregate with the given ID.
+    ///
+    /// @param id the ID to check
+    /// @return true if the aggregate exists, false otherwise
+    boolean contains(ID id);
+
+    /// Adds the given aggregate to the store, unless an aggregate with the same ID already exists.
+    ///
+    /// @param aggregate the aggregate to add
+    /// @return the existing aggregate with the same ID, or `null` if the aggregate was added
+    @Nullable
+    T putIfAbsent(T aggregate);
+
+    /// Removes the aggregate with the given ID from the store.
+    ///
+    /// @param id the ID of the aggregate to remove
+    /// @return true if an aggregate was removed, false if it did not exist
+    boolean remove(ID id);
+
+    /// Notifies the store that the state of the given aggregate has changed.
+    ///
+    /// @param aggregate the changed aggregate
+    void aggregateChanged(T aggregate);
+
+    /// Returns the number of aggregates in the store.
+    ///
+    /// @return the number of aggregates
+    int size();
+
+    /// Returns a stream of all aggregates in the store.
+    ///
+    /// @return a stream of aggregates
+    Stream<T> stream();
+
+    /// Returns a stream of all aggregates in the store that may be processed in parallel. The default implementation
+    /// returns [#stream()] made parallel.
+    ///
+    /// @return a parallel stream of aggregates
+    default Stream<T> parallelStream() {
+        return stream().parallel();
+    }
+
+    /// Applies the given search function to the aggregates in the store until it returns a non-null result, and
+    /// returns that result. The search stops as soon as a result is found, although other threads may still be running
+    /// the function when this method returns. The default implementation searches sequentially.
+    ///
+    /// @param parallel       whether the search may be split across several threads
+    /// @param searchFunction the function to apply, returning `null` to continue the search
+    /// @return the first non-null result, or `null` if the function returned `null` for every aggregate
+    default <U> @Nullable U search(boolean parallel, Function<? super T, ? extends @Nullable U> searchFunction) {
+        return stream().map(searchFunction).filter(Objects::nonNull).findFirst().orElse(null);
+    }
+
+    /// Returns the current states of all aggregates in the store. This is used when taking snapshots.
+    ///
+    /// @return an effectively immutable map of aggregate IDs and states
+    Map<ID, S> states();
+
+    /// Removes all aggregates from the store.
+    void clear();
+}
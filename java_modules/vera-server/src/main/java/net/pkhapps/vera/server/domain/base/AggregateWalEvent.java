@@ -77,6 +77,13 @@ final class AggregateWalEvent<T extends Aggregate<ID, S, E>, ID extends Identifi
         events.forEach(action);
     }
 
+    /// Returns the aggregate events in this WAL event. The list must not be modified.
+    ///
+    /// @return the list of aggregate events
+    List<E> events() {
+        return events;
+    }
+
     /// Returns the number of aggregate events in this WAL event.
     ///
     /// @return the number of aggregate events
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/// [AggregateStore] that keeps aggregates as serialized states in an [OffHeapStateStore] and only materializes them
+/// on demand. Heap use scales with the working set rather than with the total number of aggregates.
+///
+/// ### How It Works
+///
+/// - Every aggregate in the store has a serialized state in the off-heap store. This is the source of truth for
+///   which aggregates exist.
+/// - Recently used aggregates are kept materialized in a bounded LRU ("hot" aggregates). Aggregates that have changed
+///   since they were last serialized are *dirty*. Dirty aggregates are evicted like any other; their state is written
+///   back to the off-heap store when they leave the LRU.
+/// - Every materialized aggregate is also tracked through a weak reference. As long as a caller holds on to an
+///   aggregate, the store keeps returning the same instance for the same ID, even if the aggregate has been evicted
+///   from the LRU in the meantime. There is therefore never more than one live instance of an aggregate.
+///
+/// All operations are guarded by the monitor of the store.
+final class ColdAggregateStore<T extends Aggregate<ID, S, ?>, ID extends Identifier, S extends Record> implements AggregateStore<T, ID, S> {
+
+    private final OffHeapStateStore<ID, S> coldStates;
+    private final BiFunction<ID, S, T> factory;
+    private final Set<ID> dirty = new HashSet<>();
+    private final Map<ID, AggregateReference<ID, T>> materialized = new HashMap<>();
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+    private final LinkedHashMap<ID, T> hot;
+
+    /// Creates a new `ColdAggregateStore`.
+    ///
+    /// @param coldStorage the cold storage configuration
+    /// @param factory     a factory for materializing an aggregate from its ID and state
+    ColdAggregateStore(ColdStorage<S> coldStorage, BiFunction<ID, S, T> factory) {
+        this.coldStates = new OffHeapStateStore<>(coldStorage.stateSerde());
+        this.factory = factory;
+        var hotCapacity = coldStorage.hotCapacity();
+        this.hot = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ID, T> eldest) {
+                if (size() > hotCapacity) {
+                    if (dirty.remove(eldest.getKey())) {
+                        coldStates.put(eldest.getKey(), eldest.getValue().toState());
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized @Nullable T get(ID id) {
+        var aggregate = peek(id);
+        if (aggregate != null) {
+            hot.put(id, aggregate);
+        }
+        return aggregate;
+    }
+
+    @Override
+    public synchronized boolean contains(ID id) {
+        return coldStates.contains(id);
+    }
+
+    @Override
+    public synchronized @Nullable T putIfAbsent(T aggregate) {
+        var id = aggregate.id();
+        if (coldStates.contains(id)) {
+            return peek(id);
+        }
+        coldStates.put(id, aggregate.toState());
+        track(aggregate);
+        hot.put(id, aggregate);
+        return null;
+    }
+
+    @Override
+    public synchronized boolean remove(ID id) {
+        hot.remove(id);
+        dirty.remove(id);
+        materialized.remove(id);
+        return coldStates.remove(id);
+    }
+
+    @Override
+    public synchronized void aggregateChanged(T aggregate) {
+        var id = aggregate.id();
+        if (coldStates.contains(id)) {
+            dirty.add(id);
+            hot.put(id, aggregate);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return coldStates.size();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        // Streaming materializes aggregates without admitting them to the LRU, so that a full scan does not evict
+        // the working set.
+        List<ID> ids;
+        synchronized (this) {
+            ids = coldStates.ids();
+        }
+        return ids.stream().map(this::peekSynchronized).filter(Objects::nonNull);
+    }
+
+    @Override
+    public Stream<T> parallelStream() {
+        // Materializing synchronizes on the store, so there is nothing to gain from several threads
+        return stream();
+    }
+
+    @Override
+    public synchronized Map<ID, S> states() {
+        var states = new HashMap<ID, S>(coldStates.size());
+        for (var id : coldStates.ids()) {
+            var aggregate = dirty.contains(id) ? hot.get(id) : null;
+            states.put(id, aggregate == null ? coldStates.get(id) : aggregate.toState());
+        }
+        return states;
+    }
+
+    @Override
+    public synchronized void clear() {
+        hot.clear();
+        dirty.clear();
+        materialized.clear();
+        coldStates.clear();
+    }
+
+    private synchronized @Nullable T peekSynchronized(ID id) {
+        return peek(id);
+    }
+
+    private @Nullable T peek(ID id) {
+        expungeCollected();
+        var aggregate = hot.get(id);
+        if (aggregate != null) {
+            return aggregate;
+        }
+        var reference = materialized.get(id);
+        if (reference != null) {
+            aggregate = reference.get();
+            if (aggregate != null) {
+                return aggregate;
+            }
+        }
+        var state = coldStates.get(id);
+        if (state == null) {
+            return null;
+        }
+        aggregate = factory.apply(id, state);
+        track(aggregate);
+        return aggregate;
+    }
+
+    private void track(T aggregate) {
+        materialized.put(aggregate.id(), new AggregateReference<>(aggregate, collected));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        AggregateReference<ID, T> reference;
+        while ((reference = (AggregateReference<ID, T>) collected.poll()) != null) {
+            materialized.remove(reference.id, reference);
+        }
+    }
+
+    private static final class AggregateReference<ID extends Identifier, T extends Aggregate<ID, ?, ?>> extends WeakReference<T> {
+
+        private final ID id;
+
+        AggregateReference(T aggregate, ReferenceQueue<T> queue) {
+            super(aggregate, queue);
+            this.id = aggregate.id();
+        }
+    }
+}
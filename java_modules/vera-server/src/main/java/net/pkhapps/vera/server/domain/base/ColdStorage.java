@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.serde.Serde;
+
+/// Configuration for a [Repository] that keeps its aggregates as compact serialized states outside the Java heap,
+/// materializing them on demand.
+///
+/// This is intended for repositories of high-volume aggregates, where only a small working set is accessed
+/// frequently (such as closed incidents or message history). Heap use then scales with the working set rather than
+/// with the total number of aggregates. The tradeoff is that accessing a cold aggregate requires deserializing its
+/// state.
+///
+/// @param stateSerde  the [Serde] to use for serializing and deserializing aggregate states (typically the same as
+///                    the one registered with the WAL)
+/// @param hotCapacity the maximum number of recently used aggregates to keep materialized, must be at least 1
+public record ColdStorage<S extends Record>(Serde<S> stateSerde, int hotCapacity) {
+
+    public ColdStorage {
+        if (hotCapacity < 1) {
+            throw new IllegalArgumentException("Hot capacity must be at least 1");
+        }
+    }
+}
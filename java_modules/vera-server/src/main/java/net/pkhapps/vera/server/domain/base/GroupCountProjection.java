@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/// [Projection] that counts the aggregates of a [Repository] per group, such as stations per municipality or resources
+/// per status. The view is an immutable map from group key to count; groups without aggregates are not included.
+///
+/// ```
+/// private final GroupCountProjection<Resource, ResourceId, ResourceState, ResourceStatus> countByStatus =
+///         registerIndex(new GroupCountProjection<>(ResourceState::status));
+///```
+///
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+/// @param <S>  the type of the aggregate state
+/// @param <K>  the type of the group key
+public final class GroupCountProjection<T extends Aggregate<ID, S, ?>, ID extends Identifier, S extends Record, K>
+        extends Projection<T, ID, S, Map<K, Long>> {
+
+    private final Function<? super S, ? extends @Nullable K> classifier;
+    private final Map<K, Long> counts = new HashMap<>();
+
+    /// Creates a new `GroupCountProjection`.
+    ///
+    /// @param classifier a function that returns the group key of an aggregate state, or `null` to not count the
+    ///                   aggregate at all
+    public GroupCountProjection(Function<? super S, ? extends @Nullable K> classifier) {
+        super(Map.of());
+        this.classifier = classifier;
+    }
+
+    @Override
+    protected void apply(ID id, @Nullable S previous, @Nullable S current) {
+        var previousKey = previous == null ? null : classifier.apply(previous);
+        var currentKey = current == null ? null : classifier.apply(current);
+        if (Objects.equals(previousKey, currentKey)) {
+            return;
+        }
+        if (previousKey != null) {
+            counts.computeIfPresent(previousKey, (_, count) -> count == 1 ? null : count - 1);
+        }
+        if (currentKey != null) {
+            counts.merge(currentKey, 1L, Long::sum);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        counts.clear();
+    }
+
+    @Override
+    protected Map<K, Long> createView() {
+        return Map.copyOf(counts);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/// [RepositoryIndex] that supports `O(1)` lookups of aggregates by key.
+///
+/// Example of use inside a repository:
+///
+/// ```
+/// private final HashIndex<String, MyAggregate, MyAggregateId> byCode = registerIndex(HashIndex.of(MyAggregate::code));
+///
+/// public Optional<MyAggregate> findByCode(String code) {
+///     return byCode.find(code).findFirst();
+/// }
+///```
+///
+/// @param <K>  the type of the key
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+public final class HashIndex<K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> extends KeyedIndex<K, T, ID> {
+
+    private final Map<K, Set<ID>> idsByKey = new HashMap<>();
+
+    private HashIndex(Function<? super T, ? extends Collection<? extends K>> keyExtractor) {
+        super(keyExtractor);
+    }
+
+    /// Creates a new `HashIndex` where every aggregate has at most one key. Aggregates whose key is `null` are not
+    /// indexed.
+    ///
+    /// @param keyExtractor a function that extracts the key from an aggregate
+    /// @return a new `HashIndex`
+    public static <K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> HashIndex<K, T, ID> of(Function<? super T, ? extends @Nullable K> keyExtractor) {
+        return new HashIndex<>(singleKey(keyExtractor));
+    }
+
+    /// Creates a new `HashIndex` where every aggregate can have any number of keys.
+    ///
+    /// @param keyExtractor a function that extracts the keys from an aggregate
+    /// @return a new `HashIndex`
+    public static <K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> HashIndex<K, T, ID> ofMany(Function<? super T, ? extends Collection<? extends K>> keyExtractor) {
+        return new HashIndex<>(keyExtractor);
+    }
+
+    static <K, T> Function<T, Collection<K>> singleKey(Function<? super T, ? extends @Nullable K> keyExtractor) {
+        return aggregate -> {
+            K key = keyExtractor.apply(aggregate);
+            return key == null ? List.of() : List.of(key);
+        };
+    }
+
+    @Override
+    Map<K, Set<ID>> idsByKey() {
+        return idsByKey;
+    }
+
+    /// Returns a stream of all aggregates that have the given key.
+    ///
+    /// @param key the key to look up
+    /// @return a stream of aggregates, may be empty
+    public Stream<T> find(K key) {
+        return resolve(findIds(key));
+    }
+
+    /// Checks whether at least one aggregate has the given key.
+    ///
+    /// @param key the key to look up
+    /// @return true if the key exists in the index, false otherwise
+    public boolean containsKey(K key) {
+        return count(key) > 0;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/// [AggregateStore] that keeps every aggregate as a live object on the heap. This is the default store of a
+/// [Repository]. Lookups are very fast, but every aggregate must fit in RAM.
+final class HeapAggregateStore<T extends Aggregate<ID, S, ?>, ID extends Identifier, S extends Record> implements AggregateStore<T, ID, S> {
+
+    /// The number of aggregates below which bulk operations are not split across threads.
+    private static final long PARALLELISM_THRESHOLD = 1024;
+
+    private final ConcurrentHashMap<ID, T> aggregates = new ConcurrentHashMap<>();
+
+    @Override
+    public @Nullable T get(ID id) {
+        return aggregates.get(id);
+    }
+
+    @Override
+    public boolean contains(ID id) {
+        return aggregates.containsKey(id);
+    }
+
+    @Override
+    public @Nullable T putIfAbsent(T aggregate) {
+        return aggregates.putIfAbsent(aggregate.id(), aggregate);
+    }
+
+    @Override
+    public boolean remove(ID id) {
+        return aggregates.remove(id) != null;
+    }
+
+    @Override
+    public void aggregateChanged(T aggregate) {
+        // NOP, the live object is the only copy of the state
+    }
+
+    @Override
+    public int size() {
+        return aggregates.size();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return aggregates.values().stream();
+    }
+
+    @Override
+    public Stream<T> parallelStream() {
+        return aggregates.values().parallelStream();
+    }
+
+    @Override
+    public <U> @Nullable U search(boolean parallel, Function<? super T, ? extends @Nullable U> searchFunction) {
+        return aggregates.searchValues(parallel ? PARALLELISM_THRESHOLD : Long.MAX_VALUE, searchFunction);
+    }
+
+    @Override
+    public Map<ID, S> states() {
+        return aggregates.values().stream().collect(Collectors.toMap(
+                aggregate -> aggregate.id(),
+                aggregate -> aggregate.toState()
+        ));
+    }
+
+    @Override
+    public void clear() {
+        aggregates.clear();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+
+/// Base class for aggregates whose entire state is a single immutable record.
+///
+/// The state is held in one volatile reference and replaced copy-on-write whenever events are applied. Reading the
+/// state is therefore a single lock-free load that always returns a consistent state: readers never see some fields
+/// updated and others not, nor a state in the middle of a batch of events written together.
+///
+/// Subclasses implement [#apply(Record, Object)] as a pure function that returns a new state, and read their fields
+/// from [#state()]. Methods that read several fields should call [#state()] once and read the fields from the returned
+/// record.
+///
+/// @param <ID> the identifier type of the aggregate
+/// @param <S>  the record that constitutes the aggregate state
+/// @param <E>  the super type of events that this aggregate will write to the WAL
+public abstract class ImmutableStateAggregate<ID extends Identifier, S extends Record, E> extends Aggregate<ID, S, E> {
+
+    private volatile S state;
+
+    /// Creates a new aggregate. This method is typically called by a [Repository].
+    ///
+    /// @param wal          the WAL to write changes to
+    /// @param id           the ID of the aggregate
+    /// @param initialState the initial state of the aggregate
+    protected ImmutableStateAggregate(WriteAheadLog wal, ID id, S initialState) {
+        super(wal, id);
+        this.state = initialState;
+    }
+
+    /// Returns the current state of the aggregate. This never blocks.
+    ///
+    /// @return the current state
+    public final S state() {
+        return state;
+    }
+
+    @Override
+    protected final S toState() {
+        return state;
+    }
+
+    @Override
+    protected final void applyEvent(E event) {
+        state = apply(state, event);
+    }
+
+    @Override
+    void applyEvents(AggregateWalEvent<?, ID, S, E> walEvent) {
+        var newState = state;
+        for (var event : walEvent.events()) {
+            newState = apply(newState, event);
+        }
+        state = newState;
+    }
+
+    /// Returns the state that results from applying the given event to the given state. This method must not have
+    /// any side effects.
+    ///
+    /// This method must be fast. If it throws an exception, it aborts the WAL replay.
+    ///
+    /// @param state the state to apply the event to
+    /// @param event the event to apply
+    /// @return the new state
+    protected abstract S apply(S state, E event);
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/// Base class for [RepositoryIndex]es that map keys extracted from aggregates to aggregate IDs. An aggregate may have
+/// any number of keys (including none), and many aggregates may share the same key.
+///
+/// The index is guarded by a [ReadWriteLock], so queries can run in parallel with each other but not with updates.
+///
+/// @param <K>  the type of the key
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+abstract sealed class KeyedIndex<K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> extends RepositoryIndex<T, ID>
+        permits HashIndex, SortedIndex {
+
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Function<? super T, ? extends Collection<? extends K>> keyExtractor;
+    private final Map<ID, Set<K>> keysById = new HashMap<>();
+
+    KeyedIndex(Function<? super T, ? extends Collection<? extends K>> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    /// Returns the map of keys to aggregate IDs. Callers must hold the appropriate lock.
+    ///
+    /// @return the map of keys to IDs
+    abstract Map<K, Set<ID>> idsByKey();
+
+    @Override
+    protected final void add(T aggregate) {
+        var keys = extractKeys(aggregate);
+        lock.writeLock().lock();
+        try {
+            var previousKeys = keysById.put(aggregate.id(), keys);
+            if (previousKeys != null) {
+                unlink(aggregate.id(), previousKeys);
+            }
+            link(aggregate.id(), keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected final void update(T aggregate) {
+        var keys = extractKeys(aggregate);
+        lock.writeLock().lock();
+        try {
+            var previousKeys = keysById.get(aggregate.id());
+            if (previousKeys == null || previousKeys.equals(keys)) {
+                return;
+            }
+            keysById.put(aggregate.id(), keys);
+            unlink(aggregate.id(), previousKeys);
+            link(aggregate.id(), keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected final void remove(ID id) {
+        lock.writeLock().lock();
+        try {
+            var previousKeys = keysById.remove(id);
+            if (previousKeys != null) {
+                unlink(id, previousKeys);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected final void clear() {
+        lock.writeLock().lock();
+        try {
+            keysById.clear();
+            idsByKey().clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /// Returns the number of distinct keys in the index.
+    ///
+    /// @return the number of keys
+    public final int keyCount() {
+        lock.readLock().lock();
+        try {
+            return idsByKey().size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /// Returns the number of aggregates that have the given key.
+    ///
+    /// @param key the key to look up
+    /// @return the number of aggregates
+    public final int count(K key) {
+        lock.readLock().lock();
+        try {
+            var ids = idsByKey().get(key);
+            return ids == null ? 0 : ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /// Returns a copy of the IDs of the aggregates that have the given key.
+    ///
+    /// @param key the key to look up
+    /// @return an unmodifiable list of IDs, may be empty
+    public final List<ID> findIds(K key) {
+        lock.readLock().lock();
+        try {
+            var ids = idsByKey().get(key);
+            return ids == null ? List.of() : List.copyOf(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<K> extractKeys(T aggregate) {
+        var keys = keyExtractor.apply(aggregate);
+        if (keys.isEmpty()) {
+            return Set.of();
+        }
+        var result = new HashSet<K>(keys.size());
+        for (var key : keys) {
+            if (key != null) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    private void link(ID id, Set<K> keys) {
+        var idsByKey = idsByKey();
+        for (var key : keys) {
+            idsByKey.computeIfAbsent(key, _ -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void unlink(ID id, Set<K> keys) {
+        var idsByKey = idsByKey();
+        for (var key : keys) {
+            var ids = idsByKey.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                idsByKey.remove(key);
+            }
+        }
+    }
+}
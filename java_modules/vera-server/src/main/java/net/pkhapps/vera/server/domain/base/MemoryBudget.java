@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.serde.Serde;
+
+import java.util.function.Supplier;
+
+/// Configuration for limiting the memory used by the aggregates of a [Repository].
+///
+/// A count-based capacity does not say much about memory use, as the size of an aggregate varies a lot between
+/// aggregate types (and between aggregates of the same type). A memory budget instead limits the *estimated* memory
+/// use of the repository, in bytes. The estimate is derived from the serialized size of the aggregate states, which are
+/// sampled as aggregates are inserted and changed. It is not exact, but good enough to refuse new aggregates well before
+/// the VM runs out of memory.
+///
+/// @param stateSerde       the [Serde] to use for sizing aggregate states (typically the same as the one registered
+///                         with the WAL)
+/// @param maxBytes         a function that returns the maximum estimated memory use in bytes, making it possible to
+///                         fine-tune the budget during runtime
+/// @param warningThreshold the fraction of `maxBytes` above which the repository logs a warning, between 0 and 1
+/// @see Repository#setMemoryBudget(MemoryBudget)
+public record MemoryBudget<S extends Record>(Serde<S> stateSerde, Supplier<Long> maxBytes, double warningThreshold) {
+
+    /// The default warning threshold (80% of the budget).
+    public static final double DEFAULT_WARNING_THRESHOLD = 0.8;
+
+    public MemoryBudget {
+        if (!(warningThreshold > 0 && warningThreshold <= 1)) {
+            throw new IllegalArgumentException("Warning threshold must be greater than 0 and at most 1");
+        }
+    }
+
+    /// Creates a new `MemoryBudget` with the [default warning threshold][#DEFAULT_WARNING_THRESHOLD].
+    ///
+    /// @param stateSerde the [Serde] to use for sizing aggregate states
+    /// @param maxBytes   a function that returns the maximum estimated memory use in bytes
+    public MemoryBudget(Serde<S> stateSerde, Supplier<Long> maxBytes) {
+        this(stateSerde, maxBytes, DEFAULT_WARNING_THRESHOLD);
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+/// Exception thrown by a [Repository] when an attempt is made to insert new aggregates that would push the estimated
+/// memory use of the repository past its [MemoryBudget].
+public class MemoryBudgetExceededException extends RepositoryAtCapacityException {
+
+    public MemoryBudgetExceededException(long maxBytes) {
+        super("The repository would exceed its memory budget of " + maxBytes + " bytes");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.serde.SizingOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// Helper class used by [Repository] to estimate the memory used by its aggregates and enforce a [MemoryBudget].
+///
+/// The memory use of an aggregate is estimated as its serialized size multiplied by [#HEAP_FACTOR], plus
+/// [#OVERHEAD_PER_AGGREGATE]. The memory use of the repository is the average estimate of the sampled aggregates times
+/// the number of aggregates. New aggregates are always sampled once they have been admitted; existing aggregates are
+/// sampled every [#SAMPLE_INTERVAL]th time they are loaded or changed. Older samples are gradually phased out so that
+/// the estimate follows the aggregates currently in the repository.
+final class MemoryEstimator<S extends Record> {
+
+    /// Rough ratio between the heap size of a state and its serialized size, accounting for object headers, references,
+    /// padding and the like.
+    static final int HEAP_FACTOR = 3;
+    /// Rough heap size of the aggregate object itself, its ID, and its entries in the store and in the indexes.
+    static final int OVERHEAD_PER_AGGREGATE = 128;
+    private static final int SAMPLE_INTERVAL = 16;
+    private static final int MAX_SAMPLES = 1024;
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryEstimator.class);
+
+    private final MemoryBudget<S> budget;
+    private final Class<?> aggregateType;
+    private final AtomicInteger sampleCounter = new AtomicInteger();
+    private final AtomicBoolean warned = new AtomicBoolean(false);
+    private long sampledBytes;
+    private int samples;
+
+    MemoryEstimator(MemoryBudget<S> budget, Class<?> aggregateType) {
+        this.budget = budget;
+        this.aggregateType = aggregateType;
+    }
+
+    /// Samples the given state every [#SAMPLE_INTERVAL]th call.
+    ///
+    /// @param state the state of an aggregate that has been loaded or changed
+    void sampleOccasionally(S state) {
+        if (sampleCounter.incrementAndGet() % SAMPLE_INTERVAL == 0) {
+            sample(state);
+        }
+    }
+
+    private void sample(S state) {
+        record(sizeOf(state));
+    }
+
+    private long sizeOf(S state) {
+        var output = new SizingOutput();
+        budget.stateSerde().writeTo(state, output);
+        return (long) output.size() * HEAP_FACTOR + OVERHEAD_PER_AGGREGATE;
+    }
+
+    private void record(long estimate) {
+        synchronized (this) {
+            if (samples == MAX_SAMPLES) {
+                sampledBytes /= 2;
+                samples /= 2;
+            }
+            sampledBytes += estimate;
+            samples++;
+        }
+    }
+
+    /// Returns the estimated memory use of the given number of aggregates.
+    ///
+    /// @param count the number of aggregates
+    /// @return the estimated memory use in bytes
+    long estimate(int count) {
+        long average;
+        synchronized (this) {
+            average = samples == 0 ? OVERHEAD_PER_AGGREGATE : sampledBytes / samples;
+        }
+        return average * count;
+    }
+
+    /// Checks that the given new states fit into the budget, next to the given number of existing aggregates. Logs a
+    /// warning when the estimated memory use first crosses the warning threshold. The new states are sampled only if
+    /// they are admitted, so that rejected states do not skew the estimate.
+    ///
+    /// @param existingCount the number of aggregates already in (or being inserted into) the repository
+    /// @param newStates     the states of the aggregates about to be inserted
+    /// @throws MemoryBudgetExceededException if the new states do not fit into the budget
+    void admit(int existingCount, List<S> newStates) {
+        var sizes = new long[newStates.size()];
+        long newBytes = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = sizeOf(newStates.get(i));
+            newBytes += sizes[i];
+        }
+        long projected = estimate(existingCount) + newBytes;
+        long max = budget.maxBytes().get();
+        if (projected > max) {
+            log.warn("Rejecting {} new {} aggregate(s): estimated memory use {} bytes would exceed the budget of {} bytes",
+                    newStates.size(), aggregateType.getSimpleName(), projected, max);
+            throw new MemoryBudgetExceededException(max);
+        }
+        if (projected > max * budget.warningThreshold()) {
+            if (warned.compareAndSet(false, true)) {
+                log.warn("Estimated memory use of {} aggregates is {} bytes, approaching the budget of {} bytes",
+                        aggregateType.getSimpleName(), projected, max);
+            }
+        } else {
+            warned.set(false);
+        }
+        for (var size : sizes) {
+            record(size);
+        }
+    }
+}
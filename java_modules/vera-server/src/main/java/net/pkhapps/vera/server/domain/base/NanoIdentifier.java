@@ -17,60 +17,132 @@
 package net.pkhapps.vera.server.domain.base;
 
 import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
+import org.jspecify.annotations.Nullable;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Objects;
-import java.util.Set;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /// Implementation of [Identifier] that uses a Nano ID.
+///
+/// A Nano ID consists of 21 characters from a 64-character alphabet, i.e. 126 bits. Instead of storing the string,
+/// this class packs the bits into two `long`s, which makes comparisons, hashing and serialization cheap. The string
+/// representation is only created when needed (for JSON and logs), and then cached.
 public abstract class NanoIdentifier implements Identifier {
 
-    private static final Set<Integer> VALID_CHARS;
+    /// The length of the string representation of a Nano ID.
+    public static final int LENGTH = NanoIdUtils.DEFAULT_SIZE;
 
-    private final String id;
+    /// Comparator that orders Nano IDs by their binary representation. This is cheaper than comparing the string
+    /// representations, but gives a different (although equally consistent) order.
+    public static final Comparator<NanoIdentifier> BINARY_ORDER = Comparator
+            .comparingLong(NanoIdentifier::high)
+            .thenComparingLong(NanoIdentifier::low);
+
+    private static final int BITS_PER_CHAR = 6;
+    private static final int CHAR_MASK = (1 << BITS_PER_CHAR) - 1;
+    /// The number of bits of [#LENGTH] characters that do not fit into the low `long`.
+    private static final int HIGH_BITS = LENGTH * BITS_PER_CHAR - Long.SIZE;
+    private static final char[] ALPHABET = NanoIdUtils.DEFAULT_ALPHABET;
+    private static final byte[] CHAR_VALUES = new byte[128];
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     static {
-        var chars = new HashSet<Integer>();
-        for (var ch : NanoIdUtils.DEFAULT_ALPHABET) {
-            chars.add((int) ch);
+        Arrays.fill(CHAR_VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            CHAR_VALUES[ALPHABET[i]] = (byte) i;
         }
-        VALID_CHARS = Collections.unmodifiableSet(chars);
     }
 
+    private final long high;
+    private final long low;
+    private @Nullable String string;
+
     /// Creates a new `NanoIdentifier` with the given Nano ID.
     ///
     /// @param id the Nano ID
     /// @throws IllegalArgumentException if the given Nano ID is invalid
     protected NanoIdentifier(String id) {
-        if (id.length() != NanoIdUtils.DEFAULT_SIZE) {
+        if (id.length() != LENGTH) {
             throw new IllegalArgumentException("ID has invalid length");
         }
-        if (id.chars().anyMatch(ch -> !VALID_CHARS.contains(ch))) {
-            throw new IllegalArgumentException("Invalid character in ID");
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            var ch = id.charAt(i);
+            var value = ch < CHAR_VALUES.length ? CHAR_VALUES[ch] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid character in ID");
+            }
+            high = (high << BITS_PER_CHAR) | (low >>> (Long.SIZE - BITS_PER_CHAR));
+            low = (low << BITS_PER_CHAR) | value;
         }
-        this.id = id;
+        this.high = high;
+        this.low = low;
+        this.string = id;
+    }
+
+    /// Creates a new `NanoIdentifier` from its binary representation.
+    ///
+    /// @param high the high bits of the Nano ID, as returned by [#high()]
+    /// @param low  the low bits of the Nano ID, as returned by [#low()]
+    /// @throws IllegalArgumentException if `high` has more bits than a Nano ID
+    protected NanoIdentifier(long high, long low) {
+        if ((high >>> HIGH_BITS) != 0) {
+            throw new IllegalArgumentException("ID has invalid high bits");
+        }
+        this.high = high;
+        this.low = low;
     }
 
     /// Creates a new `NanoIdentifier` with a random Nano ID.
     protected NanoIdentifier() {
-        this.id = NanoIdUtils.randomNanoId();
+        this.high = RANDOM.nextLong() >>> (Long.SIZE - HIGH_BITS);
+        this.low = RANDOM.nextLong();
+    }
+
+    /// Returns the high bits of the binary representation of this Nano ID. Only the lowest 62 bits are used.
+    ///
+    /// @return the high bits
+    public final long high() {
+        return high;
+    }
+
+    /// Returns the low bits of the binary representation of this Nano ID.
+    ///
+    /// @return the low bits
+    public final long low() {
+        return low;
     }
 
     @Override
     public String toString() {
-        return id;
+        // Racy but harmless, like String.hashCode()
+        var s = string;
+        if (s == null) {
+            var chars = new char[LENGTH];
+            long high = this.high;
+            long low = this.low;
+            for (int i = LENGTH - 1; i >= 0; i--) {
+                chars[i] = ALPHABET[(int) (low & CHAR_MASK)];
+                low = (low >>> BITS_PER_CHAR) | (high << (Long.SIZE - BITS_PER_CHAR));
+                high >>>= BITS_PER_CHAR;
+            }
+            s = new String(chars);
+            string = s;
+        }
+        return s;
     }
 
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         NanoIdentifier that = (NanoIdentifier) o;
-        return Objects.equals(id, that.id);
+        return high == that.high && low == that.low;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(id);
+        return Long.hashCode(high * 31 + low);
     }
 }
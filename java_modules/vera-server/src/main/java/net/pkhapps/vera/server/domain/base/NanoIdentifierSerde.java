@@ -20,35 +20,53 @@ import net.pkhapps.vera.server.util.serde.Input;
 import net.pkhapps.vera.server.util.serde.Output;
 import net.pkhapps.vera.server.util.serde.Serde;
 
-import java.util.function.Function;
-
-/// [Serde] for [NanoIdentifier]s that can be used either as-is (using [#of(Function)]) or subclassed.
+/// [Serde] for [NanoIdentifier]s that can be used either as-is (using [#of(Constructor)]) or subclassed.
+///
+/// The identifiers are written in their binary form, as two `long`s (16 bytes).
 ///
 /// @param <ID> the subtype of [NanoIdentifier]
 public class NanoIdentifierSerde<ID extends NanoIdentifier> implements Serde<ID> {
 
-    private final Function<String, ID> constructor;
+    private final Constructor<ID> constructor;
 
-    protected NanoIdentifierSerde(Function<String, ID> constructor) {
+    protected NanoIdentifierSerde(Constructor<ID> constructor) {
         this.constructor = constructor;
     }
 
     /// Creates a new [Serde] for `<ID>`.
     ///
     /// @param <ID>        the subtype of [NanoIdentifier]
-    /// @param constructor a constructor for turning a string into an `<ID>`
+    /// @param constructor a constructor for turning the binary representation into an `<ID>`
     /// @return a new [Serde]
-    public static <ID extends NanoIdentifier> Serde<ID> of(Function<String, ID> constructor) {
+    public static <ID extends NanoIdentifier> Serde<ID> of(Constructor<ID> constructor) {
         return new NanoIdentifierSerde<>(constructor);
     }
 
     @Override
     public void writeTo(ID object, Output output) {
-        output.writeString(object.toString());
+        output.writeLong(object.high());
+        output.writeLong(object.low());
     }
 
     @Override
     public ID readFrom(Input input) {
-        return constructor.apply(input.readString());
+        var high = input.readLong();
+        var low = input.readLong();
+        return constructor.create(high, low);
+    }
+
+    /// Functional interface for creating a [NanoIdentifier] from its binary representation.
+    ///
+    /// @param <ID> the subtype of [NanoIdentifier]
+    @FunctionalInterface
+    public interface Constructor<ID extends NanoIdentifier> {
+
+        /// Creates a new `<ID>`.
+        ///
+        /// @param high the high bits of the Nano ID
+        /// @param low  the low bits of the Nano ID
+        /// @return a new `<ID>`
+        /// @throws IllegalArgumentException if the bits are not a valid Nano ID
+        ID create(long high, long low);
     }
 }
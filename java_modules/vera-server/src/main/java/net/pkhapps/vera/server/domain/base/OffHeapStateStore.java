@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.serde.BufferInput;
+import net.pkhapps.vera.server.util.serde.BufferOutput;
+import net.pkhapps.vera.server.util.serde.Serde;
+import net.pkhapps.vera.server.util.serde.SizingOutput;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/// Stores serialized aggregate states in direct (off-heap) memory segments.
+///
+/// ### Record Format
+///
+/// Every state is stored as a single record inside a segment (name, size in bytes):
+///
+/// `[length:4][state:n]`
+///
+/// Records are only ever appended. Updating or removing a state leaves the old record behind as garbage. When more than
+/// half of the written bytes are garbage, the live records are copied into fresh segments and the old segments are
+/// left for the garbage collector to release.
+///
+/// ### Thread Safety
+///
+/// **This class does not perform any thread-locking at all.** Callers are expected to make sure the proper locks are
+/// in order.
+///
+/// @param <ID> the type of the aggregate ID
+/// @param <S>  the type of the aggregate state
+final class OffHeapStateStore<ID, S> {
+
+    /// The default size of a segment in bytes.
+    static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    private final Serde<S> stateSerde;
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final Map<ID, Long> locations = new HashMap<>();
+    private int writePosition;
+    private long writtenBytes;
+    private long liveBytes;
+
+    /// Creates a new `OffHeapStateStore` with the [#DEFAULT_SEGMENT_SIZE].
+    ///
+    /// @param stateSerde the [Serde] to use for serializing and deserializing states
+    OffHeapStateStore(Serde<S> stateSerde) {
+        this(stateSerde, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /// Creates a new `OffHeapStateStore`.
+    ///
+    /// @param stateSerde  the [Serde] to use for serializing and deserializing states
+    /// @param segmentSize the size of a segment in bytes (records larger than this get a segment of their own)
+    OffHeapStateStore(Serde<S> stateSerde, int segmentSize) {
+        this.stateSerde = stateSerde;
+        this.segmentSize = segmentSize;
+    }
+
+    /// Serializes the given `state` and stores it under the given `id`, replacing any previous state.
+    ///
+    /// @param id    the ID of the aggregate
+    /// @param state the state of the aggregate
+    void put(ID id, S state) {
+        var sizing = new SizingOutput();
+        stateSerde.writeTo(state, sizing);
+        var length = sizing.size();
+        var location = allocate(Integer.BYTES + length);
+        var segment = segments.get(segmentOf(location));
+        var offset = offsetOf(location);
+        segment.putInt(offset, length);
+        stateSerde.writeTo(state, BufferOutput.wrap(segment.slice(offset + Integer.BYTES, length)));
+
+        var previous = locations.put(id, location);
+        if (previous != null) {
+            liveBytes -= recordSize(previous);
+        }
+        liveBytes += Integer.BYTES + length;
+        compactIfNeeded();
+    }
+
+    /// Deserializes and returns the state stored under the given `id`.
+    ///
+    /// @param id the ID of the aggregate
+    /// @return the state, or `null` if not found
+    @Nullable
+    S get(ID id) {
+        var location = locations.get(id);
+        if (location == null) {
+            return null;
+        }
+        var segment = segments.get(segmentOf(location));
+        var offset = offsetOf(location);
+        var length = segment.getInt(offset);
+        return stateSerde.readFrom(BufferInput.wrap(segment.slice(offset + Integer.BYTES, length)));
+    }
+
+    /// Checks if a state is stored under the given `id`.
+    ///
+    /// @param id the ID of the aggregate
+    /// @return true if a state exists, false otherwise
+    boolean contains(ID id) {
+        return locations.containsKey(id);
+    }
+
+    /// Removes the state stored under the given `id`.
+    ///
+    /// @param id the ID of the aggregate
+    /// @return true if a state was removed, false if it did not exist
+    boolean remove(ID id) {
+        var location = locations.remove(id);
+        if (location == null) {
+            return false;
+        }
+        liveBytes -= recordSize(location);
+        compactIfNeeded();
+        return true;
+    }
+
+    /// Returns the number of stored states.
+    ///
+    /// @return the number of states
+    int size() {
+        return locations.size();
+    }
+
+    /// Returns an unmodifiable copy of the IDs of all stored states.
+    ///
+    /// @return a list of IDs
+    List<ID> ids() {
+        return List.copyOf(locations.keySet());
+    }
+
+    /// Removes all states and releases all segments.
+    void clear() {
+        segments.clear();
+        locations.clear();
+        writePosition = 0;
+        writtenBytes = 0;
+        liveBytes = 0;
+    }
+
+    private long allocate(int recordSize) {
+        if (segments.isEmpty() || segments.getLast().capacity() - writePosition < recordSize) {
+            segments.add(ByteBuffer.allocateDirect(Math.max(segmentSize, recordSize)));
+            writePosition = 0;
+        }
+        var location = locationOf(segments.size() - 1, writePosition);
+        writePosition += recordSize;
+        writtenBytes += recordSize;
+        return location;
+    }
+
+    private int recordSize(long location) {
+        return Integer.BYTES + segments.get(segmentOf(location)).getInt(offsetOf(location));
+    }
+
+    private void compactIfNeeded() {
+        if (writtenBytes > segmentSize && writtenBytes > 2 * liveBytes) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        var oldSegments = List.copyOf(segments);
+        segments.clear();
+        writePosition = 0;
+        writtenBytes = 0;
+        for (var entry : locations.entrySet()) {
+            long oldLocation = entry.getValue();
+            var oldSegment = oldSegments.get(segmentOf(oldLocation));
+            var oldOffset = offsetOf(oldLocation);
+            var recordSize = Integer.BYTES + oldSegment.getInt(oldOffset);
+            var newLocation = allocate(recordSize);
+            segments.get(segmentOf(newLocation)).put(offsetOf(newLocation), oldSegment, oldOffset, recordSize);
+            entry.setValue(newLocation);
+        }
+    }
+
+    private static long locationOf(int segment, int offset) {
+        return (long) segment << 32 | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/// Base class for read models that are maintained asynchronously from the aggregates of a [Repository].
+///
+/// A projection is a special [RepositoryIndex], registered through [Repository#registerIndex(RepositoryIndex)]. Instead
+/// of updating itself in the callbacks (which run on the write path, while holding aggregate locks), it only queues the
+/// new state of the changed aggregate. A separate virtual thread applies the queued changes to the read model in
+/// batches through [#apply(Identifier, Record, Record)], and then publishes an immutable view of the read model
+/// created by [#createView()]. Readers get the latest published view through [#view()], which never blocks.
+///
+/// The read model is only ever touched by the projection thread, so it does not have to be thread-safe. It is also
+/// always consistent with the aggregates at some point in the past: the view lags behind the repository by the changes
+/// that are still in the queue. Use [#awaitCurrent(Duration)] when a caller needs to see its own writes.
+///
+/// If [#apply(Identifier, Record, Record)], [#reset()] or [#createView()] throws an exception, the projection fails:
+/// the last published view stays in place, new changes are no longer queued, and [#awaitCurrent(Duration)] throws.
+///
+/// Projections do not write anything to the WAL. As the read model is a function of the aggregate states, it is
+/// rebuilt from the snapshot and events of the repository when the WAL is replayed.
+///
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+/// @param <S>  the type of the aggregate state
+/// @param <V>  the type of the view, which must be immutable
+public abstract class Projection<T extends Aggregate<ID, S, ?>, ID extends Identifier, S extends Record, V> extends RepositoryIndex<T, ID> {
+
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final BlockingQueue<Change<ID, S>> queue = new LinkedBlockingQueue<>();
+    private final Map<ID, S> states = new HashMap<>();
+    private final Object positionLock = new Object();
+    private long enqueued;
+    private long position;
+    private volatile V view;
+    private volatile @Nullable Thread worker;
+    private volatile boolean closed;
+    private volatile @Nullable RuntimeException failure;
+
+    /// Creates a new projection.
+    ///
+    /// @param initialView the view to publish until the first changes have been applied (typically an empty view)
+    protected Projection(V initialView) {
+        this.view = initialView;
+    }
+
+    /// Returns the latest published view. This never blocks.
+    ///
+    /// @return the view
+    public final V view() {
+        return view;
+    }
+
+    /// Returns the number of changes that have been applied to the published view.
+    ///
+    /// @return the position of the view
+    public final long position() {
+        synchronized (positionLock) {
+            return position;
+        }
+    }
+
+    /// Waits until all changes queued before this call have been applied and published.
+    ///
+    /// @param timeout the maximum time to wait
+    /// @return true if the view is current, false if the timeout elapsed first
+    /// @throws InterruptedException if the thread was interrupted while waiting
+    /// @throws IllegalStateException if the projection has failed
+    public final boolean awaitCurrent(Duration timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (positionLock) {
+            var target = enqueued;
+            while (position < target) {
+                var failure = this.failure;
+                if (failure != null) {
+                    throw new IllegalStateException("The projection has failed", failure);
+                }
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                positionLock.wait(Math.max(1, remaining / 1_000_000));
+            }
+            return true;
+        }
+    }
+
+    @Override
+    protected final void add(T aggregate) {
+        enqueue(aggregate.id(), aggregate.toState());
+    }
+
+    @Override
+    protected final void update(T aggregate) {
+        enqueue(aggregate.id(), aggregate.toState());
+    }
+
+    @Override
+    protected final void remove(ID id) {
+        enqueue(id, null);
+    }
+
+    @Override
+    protected final void clear() {
+        enqueue(null, null);
+    }
+
+    @Override
+    void detach() {
+        closed = true;
+        var worker = this.worker;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void enqueue(@Nullable ID id, @Nullable S state) {
+        if (closed) {
+            return;
+        }
+        synchronized (positionLock) {
+            if (closed) {
+                return;
+            }
+            // Sequence numbers are handed out in queue order, so that position() always means "all changes up to here"
+            queue.add(new Change<>(++enqueued, id, state));
+            if (worker == null) {
+                worker = Thread.ofVirtual().name(getClass().getSimpleName()).start(this::run);
+            }
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<Change<ID, S>>();
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (var change : batch) {
+                    applyChange(change);
+                }
+                view = createView();
+                synchronized (positionLock) {
+                    position = batch.getLast().sequence();
+                    positionLock.notifyAll();
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.error("Projection failed, the view will no longer be updated", ex);
+            synchronized (positionLock) {
+                failure = ex;
+                closed = true;
+                queue.clear();
+                positionLock.notifyAll();
+            }
+        }
+    }
+
+    private void applyChange(Change<ID, S> change) {
+        var id = change.id();
+        if (id == null) {
+            states.clear();
+            reset();
+            return;
+        }
+        var state = change.state();
+        var previous = state == null ? states.remove(id) : states.put(id, state);
+        if (previous != state) {
+            apply(id, previous, state);
+        }
+    }
+
+    /// Applies a change of an aggregate to the read model. Called by the projection thread only.
+    ///
+    /// @param id       the ID of the changed aggregate
+    /// @param previous the previous state of the aggregate, or `null` if the aggregate was inserted
+    /// @param current  the current state of the aggregate, or `null` if the aggregate was removed
+    protected abstract void apply(ID id, @Nullable S previous, @Nullable S current);
+
+    /// Clears the read model. Called by the projection thread only, before a snapshot is replayed.
+    protected abstract void reset();
+
+    /// Creates an immutable view of the read model. Called by the projection thread only, after each batch of changes.
+    ///
+    /// @return the view to publish
+    protected abstract V createView();
+
+    private record Change<ID, S>(long sequence, @Nullable ID id, @Nullable S state) {
+    }
+}
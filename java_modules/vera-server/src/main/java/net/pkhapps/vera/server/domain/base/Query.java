@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/// Query over all the aggregates of a [Repository], intended for ad-hoc and analytics-style queries that cannot be
+/// answered by a [RepositoryIndex].
+///
+/// Unlike [Repository#stream()], a query never materializes or sorts more aggregates than it returns:
+///
+/// - [#list(int)] stops scanning as soon as `limit` matches have been found.
+/// - [#top(int, Comparator)] keeps the best `k` matches in a bounded heap instead of sorting all matches.
+///
+/// Queries are sequential by default. A [parallel][#parallel()] query splits the scan across the common fork-join pool,
+/// which pays off for large repositories and expensive filters. Queries are immutable and can be reused:
+///
+/// ```
+/// var query = repository.query().where(station -> station.note().isEmpty()).parallel();
+/// var firstTen = query.list(10);
+///```
+///
+/// Like [Repository#stream()], a query sees the aggregates as they are while it runs. It is not a consistent snapshot
+/// of the repository.
+///
+/// @param <T> the type of the aggregates
+public final class Query<T extends Aggregate<?, ?, ?>> {
+
+    private final AggregateStore<T, ?, ?> aggregates;
+    private final Predicate<? super T> filter;
+    private final boolean parallel;
+
+    Query(AggregateStore<T, ?, ?> aggregates) {
+        this(aggregates, _ -> true, false);
+    }
+
+    private Query(AggregateStore<T, ?, ?> aggregates, Predicate<? super T> filter, boolean parallel) {
+        this.aggregates = aggregates;
+        this.filter = filter;
+        this.parallel = parallel;
+    }
+
+    /// Returns a query that only matches the aggregates that match both this query and the given filter. The filter
+    /// may be called concurrently by several threads, and must not have any side effects.
+    ///
+    /// @param filter the filter to apply
+    /// @return a new query
+    public Query<T> where(Predicate<? super T> filter) {
+        Predicate<? super T> current = this.filter;
+        return new Query<>(aggregates, aggregate -> current.test(aggregate) && filter.test(aggregate), parallel);
+    }
+
+    /// Returns a query that runs in parallel.
+    ///
+    /// @return a new query
+    public Query<T> parallel() {
+        return new Query<>(aggregates, filter, true);
+    }
+
+    /// Returns at most `limit` matching aggregates, in no particular order. The scan stops as soon as `limit` matches
+    /// have been found.
+    ///
+    /// @param limit the maximum number of aggregates to return
+    /// @return an unmodifiable list of aggregates
+    public List<T> list(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        if (limit == 0) {
+            return List.of();
+        }
+        var matches = new ConcurrentLinkedQueue<T>();
+        var reserved = new AtomicInteger();
+        var added = new AtomicInteger();
+        aggregates.search(parallel, aggregate -> {
+            if (!filter.test(aggregate) || reserved.incrementAndGet() > limit) {
+                return null;
+            }
+            matches.add(aggregate);
+            // The search returns as soon as one thread returns non-null, so only stop once every reserved match has
+            // actually been added
+            return added.incrementAndGet() == limit ? Boolean.TRUE : null;
+        });
+        return List.copyOf(matches);
+    }
+
+    /// Returns any matching aggregate. The scan stops at the first match.
+    ///
+    /// @return the aggregate, or an empty `Optional` if no aggregate matches
+    public Optional<T> findAny() {
+        return Optional.ofNullable(aggregates.search(parallel, aggregate -> filter.test(aggregate) ? aggregate : null));
+    }
+
+    /// Returns the first `k` matching aggregates in the order given by the comparator. Only `k` aggregates are kept
+    /// in memory at any time per thread, and the matches are never fully sorted.
+    ///
+    /// @param k          the maximum number of aggregates to return
+    /// @param comparator the comparator that determines the order
+    /// @return an unmodifiable list of aggregates, sorted by the comparator
+    public List<T> top(int k, Comparator<? super T> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("K must not be negative");
+        }
+        if (k == 0) {
+            return List.of();
+        }
+        return stream().filter(filter).collect(topK(k, comparator));
+    }
+
+    /// Returns the number of matching aggregates.
+    ///
+    /// @return the number of aggregates
+    public long count() {
+        return stream().filter(filter).count();
+    }
+
+    private Stream<T> stream() {
+        return parallel ? aggregates.parallelStream() : aggregates.stream();
+    }
+
+    /// Returns a collector that collects the first `k` elements in the order given by the comparator, using a bounded
+    /// heap per thread.
+    ///
+    /// @param k          the maximum number of elements to collect
+    /// @param comparator the comparator that determines the order
+    /// @return an unmodifiable list of elements, sorted by the comparator
+    static <T> Collector<T, ?, List<T>> topK(int k, Comparator<? super T> comparator) {
+        return Collector.of(
+                () -> new BoundedHeap<T>(k, comparator),
+                BoundedHeap::offer,
+                BoundedHeap::merge,
+                BoundedHeap::toSortedList
+        );
+    }
+
+    private static final class BoundedHeap<T> {
+
+        private final int capacity;
+        private final Comparator<? super T> comparator;
+        // The worst of the kept elements is at the head
+        private final PriorityQueue<T> heap;
+
+        BoundedHeap(int capacity, Comparator<? super T> comparator) {
+            this.capacity = capacity;
+            this.comparator = comparator;
+            this.heap = new PriorityQueue<>(Math.min(capacity, 1024) + 1, comparator.reversed());
+        }
+
+        void offer(T element) {
+            if (heap.size() < capacity) {
+                heap.add(element);
+            } else if (comparator.compare(element, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(element);
+            }
+        }
+
+        BoundedHeap<T> merge(BoundedHeap<T> other) {
+            other.heap.forEach(this::offer);
+            return this;
+        }
+
+        List<T> toSortedList() {
+            var list = new ArrayList<T>(heap);
+            list.sort(comparator);
+            return List.copyOf(list);
+        }
+    }
+}
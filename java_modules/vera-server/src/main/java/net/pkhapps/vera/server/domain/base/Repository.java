@@ -17,18 +17,25 @@
 package net.pkhapps.vera.server.domain.base;
 
 import net.pkhapps.vera.server.util.Registration;
+import net.pkhapps.vera.server.util.wal.CompositeWalEvent;
 import net.pkhapps.vera.server.util.wal.Durability;
 import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -37,7 +44,16 @@ import java.util.stream.Stream;
 ///
 /// The aggregates are stored in the WAL and loaded into memory at application startup. This makes lookups very fast,
 /// but require the VM to have enough RAM at its disposal. Because of this, you can impose an upper limit on how
-/// many aggregates a repository can contain at any given time.
+/// many aggregates a repository can contain at any given time. As the size of aggregates varies, you can also (or
+/// instead) limit the estimated memory use of the repository with a [MemoryBudget] (see
+/// [#setMemoryBudget(MemoryBudget)]).
+///
+/// Repositories of high-volume aggregates can instead be created with [ColdStorage]. Such repositories keep their
+/// aggregates as serialized states outside the heap and only materialize the aggregates that are actually in use.
+///
+/// Repositories can have secondary indexes (see [RepositoryIndex]), which are registered through
+/// [#registerIndex(RepositoryIndex)] and kept in sync with the aggregates automatically. Read models that are expensive
+/// to maintain can be registered the same way as [Projection]s, which are updated asynchronously.
 ///
 /// Implementations of this class should define a public factory method for creating a new aggregat in a valid state.
 /// This factory method should then call the [#insert(Aggregate)] method to add the aggregate to the repository and write
@@ -49,7 +65,12 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     private final Supplier<Integer> capacity;
     private final WriteAheadLog wal;
     private final Class<T> aggregateType;
-    private final ConcurrentMap<ID, T> aggregates = new ConcurrentHashMap<>();
+    private final AggregateStore<T, ID, S> aggregates;
+    private final Consumer<Aggregate<ID, S, E>> changeListener = this::onAggregateChanged;
+    private final List<RepositoryIndex<T, ID>> indexes = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<ID, Boolean> idsInFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingInserts = new AtomicInteger();
+    private volatile @Nullable MemoryEstimator<S> memoryEstimator;
     private final Registration walRegistration;
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
@@ -67,11 +88,34 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     /// @param aggregateType the type of aggregates stored in this repository
     /// @param capacity      a function that returns the maximum number of aggregates you can store in the repository
     protected Repository(WriteAheadLog wal, Class<T> aggregateType, Supplier<Integer> capacity) {
+        this(wal, aggregateType, capacity, new HeapAggregateStore<>());
+    }
+
+    /// Creates a new repository that keeps its aggregates in cold storage. The `capacity` is a function which makes it
+    /// possible to fine-tune it during runtime.
+    ///
+    /// @param wal           the WAL to store aggregate in
+    /// @param aggregateType the type of aggregates stored in this repository
+    /// @param capacity      a function that returns the maximum number of aggregates you can store in the repository
+    /// @param coldStorage   the cold storage configuration
+    protected Repository(WriteAheadLog wal, Class<T> aggregateType, Supplier<Integer> capacity, ColdStorage<S> coldStorage) {
+        this.wal = wal;
+        this.aggregateType = aggregateType;
+        this.capacity = capacity;
+        this.aggregates = new ColdAggregateStore<>(coldStorage, this::materialize);
+        walRegistration = registerWithWal(wal);
+    }
+
+    private Repository(WriteAheadLog wal, Class<T> aggregateType, Supplier<Integer> capacity, AggregateStore<T, ID, S> aggregates) {
         this.wal = wal;
         this.aggregateType = aggregateType;
         this.capacity = capacity;
+        this.aggregates = aggregates;
+        walRegistration = registerWithWal(wal);
+    }
 
-        walRegistration = Registration.of(
+    private Registration registerWithWal(WriteAheadLog wal) {
+        return Registration.of(
                 wal.registerEventConsumer(RepositoryWalEvent.class, this::supportsEvent, this::applyEvent),
                 wal.registerEventConsumer(AggregateWalEvent.class, this::supportsEvent, this::applyEvent),
                 wal.registerSnapshotConsumer(RepositoryWalSnapshot.class, this::supportsSnapshot, this::applySnapshot),
@@ -79,11 +123,55 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
         );
     }
 
-    /// Unregisters the repository from the WAL and marks it as closed.
+    /// Registers a secondary index with this repository. The index is populated with the aggregates currently in the
+    /// repository, and is kept up-to-date from then on. This method is intended to be called from the field
+    /// initializers or constructor of the subclass:
+    ///
+    /// ```
+    /// private final HashIndex<String, MyAggregate, MyAggregateId> byCode = registerIndex(HashIndex.of(MyAggregate::code));
+    ///```
+    ///
+    /// @param index the index to register
+    /// @return the index, for convenience
+    /// @throws IllegalStateException if the index has already been registered with a repository
+    protected synchronized final <I extends RepositoryIndex<T, ID>> I registerIndex(I index) {
+        index.attach(aggregates::get);
+        aggregates.stream().forEach(index::add);
+        indexes.add(index);
+        return index;
+    }
+
+    /// Limits the estimated memory use of this repository. Inserts that would push the estimate past the budget are
+    /// rejected with a [MemoryBudgetExceededException], and a warning is logged when the estimate crosses the warning
+    /// threshold of the budget. Like [#registerIndex(RepositoryIndex)], this method is intended to be called from the
+    /// constructor of the subclass, before the WAL is replayed.
+    ///
+    /// The budget is only enforced for new aggregates. Aggregates restored from the WAL are always accepted, but
+    /// count towards the estimate.
+    ///
+    /// @param memoryBudget the memory budget
+    /// @see #estimatedMemoryUsage()
+    protected synchronized final void setMemoryBudget(MemoryBudget<S> memoryBudget) {
+        var estimator = new MemoryEstimator<S>(memoryBudget, aggregateType);
+        aggregates.stream().forEach(aggregate -> estimator.sampleOccasionally(aggregate.toState()));
+        memoryEstimator = estimator;
+    }
+
+    /// Returns the estimated memory use of the aggregates in this repository, in bytes.
+    ///
+    /// @return the estimated memory use, or an empty `OptionalLong` if the repository has no [MemoryBudget]
+    /// @see #setMemoryBudget(MemoryBudget)
+    public final OptionalLong estimatedMemoryUsage() {
+        var estimator = memoryEstimator;
+        return estimator == null ? OptionalLong.empty() : OptionalLong.of(estimator.estimate(aggregates.size()));
+    }
+
+    /// Unregisters the repository from the WAL, stops its projections and marks it as closed.
     @Override
     public synchronized final void close() {
         walRegistration.remove();
         closed.set(true);
+        indexes.forEach(RepositoryIndex::detach);
     }
 
     /// Gets the WAL.
@@ -112,7 +200,7 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     /// @param id the id to check
     /// @return true if an aggregate with the given ID exists, false otherwise
     public boolean contains(ID id) {
-        return aggregates.containsKey(id);
+        return aggregates.contains(id);
     }
 
     /// Gets the aggregate with the given ID or throws an exception if it does not exist.
@@ -129,24 +217,143 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     /// Adds the specified aggregate to the repository, storing it in the WAL.
     /// Any additional processing, like maintaining indexes, should be done in the [#afterInsert(Aggregate)] method.
     ///
+    /// If called inside a [UnitOfWork], the aggregate is inserted when the unit of work is committed.
+    ///
+    /// The repository is not locked while the WAL is written. Instead, the ID of the aggregate and a slot of the
+    /// capacity are reserved up front, which means concurrent inserts (and removes) of different aggregates can share
+    /// the same WAL flush. The aggregate becomes visible once the WAL has been flushed.
+    ///
     /// @param aggregate the aggregate to add to the repository
     /// @return the inserted aggregate
-    /// @throws DuplicateIdentifierException  if an aggregate with the same ID already exists in the repository
+    /// @throws DuplicateIdentifierException  if an aggregate with the same ID already exists in the repository, or is
+    ///                                       being inserted or removed by another thread
     /// @throws RepositoryAtCapacityException if the repository is at capacity and cannot accept more aggregates
+    /// @throws MemoryBudgetExceededException if the aggregate would push the repository past its [MemoryBudget]
     /// @see #remove(Identifier)
-    protected synchronized final T insert(T aggregate) {
-        if (aggregates.containsKey(aggregate.id())) {
-            throw new DuplicateIdentifierException(aggregate.id());
+    protected final T insert(T aggregate) {
+        var id = aggregate.id();
+        if (idsInFlight.putIfAbsent(id, Boolean.TRUE) != null) {
+            throw new DuplicateIdentifierException(id);
+        }
+        var enlisted = false;
+        try {
+            if (aggregates.contains(id)) {
+                throw new DuplicateIdentifierException(id);
+            }
+            reserveCapacity(List.of(aggregate));
+            var event = new RepositoryWalEvent.AggregateInserted<>(aggregateType, aggregate);
+            var unitOfWork = UnitOfWork.current();
+            if (unitOfWork != null) {
+                unitOfWork.enlist(wal(), event, Durability.IMMEDIATE, null, () -> {
+                    try {
+                        doInsert(aggregate);
+                    } finally {
+                        pendingInserts.decrementAndGet();
+                        idsInFlight.remove(id);
+                    }
+                }, () -> {
+                    pendingInserts.decrementAndGet();
+                    idsInFlight.remove(id);
+                });
+                enlisted = true;
+                return aggregate;
+            }
+            try {
+                wal().append(event, Durability.IMMEDIATE, () -> doInsert(aggregate));
+            } finally {
+                pendingInserts.decrementAndGet();
+            }
+            return aggregate;
+        } finally {
+            if (!enlisted) {
+                idsInFlight.remove(id);
+            }
+        }
+    }
+
+    /// Adds all the specified aggregates to the repository, storing them in the WAL as a single record. This is
+    /// considerably faster than inserting the aggregates one by one, as the capacity is checked once and the WAL is
+    /// flushed once. Either all aggregates are inserted, or none of them.
+    ///
+    /// If called inside a [UnitOfWork], the aggregates are inserted when the unit of work is committed.
+    ///
+    /// @param newAggregates the aggregates to add to the repository
+    /// @return the inserted aggregates
+    /// @throws DuplicateIdentifierException  if an aggregate with the same ID as one of the aggregates already exists
+    ///                                       in the repository, is being inserted or removed by another thread, or
+    ///                                       occurs more than once in `newAggregates`
+    /// @throws RepositoryAtCapacityException if the repository does not have room for all the aggregates
+    /// @throws MemoryBudgetExceededException if the aggregates would push the repository past its [MemoryBudget]
+    /// @see #insert(Aggregate)
+    protected final List<T> insertAll(List<T> newAggregates) {
+        if (newAggregates.isEmpty()) {
+            return List.of();
+        }
+        var reserved = new ArrayList<ID>(newAggregates.size());
+        var enlisted = false;
+        try {
+            for (var aggregate : newAggregates) {
+                var id = aggregate.id();
+                if (idsInFlight.putIfAbsent(id, Boolean.TRUE) != null) {
+                    throw new DuplicateIdentifierException(id);
+                }
+                reserved.add(id);
+                if (aggregates.contains(id)) {
+                    throw new DuplicateIdentifierException(id);
+                }
+            }
+            int count = newAggregates.size();
+            reserveCapacity(newAggregates);
+            var event = CompositeWalEvent.of(newAggregates.stream()
+                    .map(aggregate -> new RepositoryWalEvent.AggregateInserted<>(aggregateType, aggregate))
+                    .toList());
+            var unitOfWork = UnitOfWork.current();
+            if (unitOfWork != null) {
+                Runnable release = () -> {
+                    pendingInserts.addAndGet(-count);
+                    reserved.forEach(idsInFlight::remove);
+                };
+                unitOfWork.enlist(wal(), event, Durability.IMMEDIATE, null, () -> {
+                    try {
+                        newAggregates.forEach(this::doInsert);
+                    } finally {
+                        release.run();
+                    }
+                }, release);
+                enlisted = true;
+                return List.copyOf(newAggregates);
+            }
+            try {
+                wal().append(event, Durability.IMMEDIATE, () -> newAggregates.forEach(this::doInsert));
+            } finally {
+                pendingInserts.addAndGet(-count);
+            }
+            return List.copyOf(newAggregates);
+        } finally {
+            if (!enlisted) {
+                reserved.forEach(idsInFlight::remove);
+            }
         }
+    }
+
+    private void reserveCapacity(List<T> newAggregates) {
+        int count = newAggregates.size();
         int max = capacity.get();
-        if (max == aggregates.size()) {
+        // Inserts in flight are counted twice for a moment after doInsert, which errs on the safe side
+        int projected = aggregates.size() + pendingInserts.addAndGet(count);
+        if (projected > max) {
+            pendingInserts.addAndGet(-count);
             throw new RepositoryAtCapacityException(max);
         }
-
-        var event = new RepositoryWalEvent.AggregateInserted<>(aggregateType, aggregate);
-        wal().append(event, Durability.IMMEDIATE);
-        doInsert(aggregate);
-        return aggregate;
+        var estimator = memoryEstimator;
+        if (estimator != null) {
+            try {
+                estimator.admit(projected - count, newAggregates.stream().map(Aggregate::toState).toList());
+            } catch (RuntimeException ex) {
+                pendingInserts.addAndGet(-count);
+                throw ex;
+            }
+        }
     }
 
     /// Creates a new aggregate with the given ID and state.
@@ -163,7 +370,8 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     protected abstract T createFromState(ID id, S state);
 
     /// Called after an aggregate has been added to the repository. The default implementation does nothing.
-    /// Implementations can use this method to e.g. update additional in-memory indexes.
+    /// Implementations can use this method to e.g. update additional in-memory indexes. This method may be called by
+    /// several threads at the same time.
     ///
     /// @param aggregate the inserted aggregate
     @SuppressWarnings("unused")
@@ -172,7 +380,8 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     }
 
     /// Called after an aggregate has been removed from the repository. The default implementation does nothing.
-    /// Implementations can use this method to e.g. update additional in-memory indexes.
+    /// Implementations can use this method to e.g. update additional in-memory indexes. This method may be called by
+    /// several threads at the same time.
     ///
     /// @param id the ID of the removed aggregate
     @SuppressWarnings("unused")
@@ -182,18 +391,53 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
 
     /// Removes the aggregate with the given ID from the repository, updating the WAL.
     ///
-    /// If the aggregate does not exist, nothing happens.
+    /// If the aggregate does not exist, or is being inserted or removed by another thread, nothing happens. Like
+    /// [#insert(Aggregate)], this method does not lock the repository while the WAL is written. If called inside a
+    /// [UnitOfWork], the aggregate is removed when the unit of work is committed.
     ///
     /// @param id the ID of the aggregate to remove
     /// @return true if an aggregate was removed, false if it did not exist
-    public synchronized boolean remove(ID id) {
-        if (!aggregates.containsKey(id)) {
+    public boolean remove(ID id) {
+        return remove(id, Durability.IMMEDIATE);
+    }
+
+    /// Removes the aggregate with the given ID from the repository, writing the removal to the WAL with the given
+    /// durability. Use a weaker durability than [Durability#IMMEDIATE] only when losing the removal in a crash is
+    /// harmless, i.e. when the aggregate coming back after a restart does no damage.
+    ///
+    /// @param id         the ID of the aggregate to remove
+    /// @param durability the durability of the write operation
+    /// @return true if an aggregate was removed, false if it did not exist
+    /// @see #remove(Identifier)
+    protected final boolean remove(ID id, Durability durability) {
+        if (idsInFlight.putIfAbsent(id, Boolean.TRUE) != null) {
             return false;
         }
-        var event = new RepositoryWalEvent.AggregateRemoved<>(aggregateType, id);
-        wal().append(event, Durability.IMMEDIATE);
-        doRemove(id);
-        return true;
+        var enlisted = false;
+        try {
+            if (!aggregates.contains(id)) {
+                return false;
+            }
+            var event = new RepositoryWalEvent.AggregateRemoved<>(aggregateType, id);
+            var unitOfWork = UnitOfWork.current();
+            if (unitOfWork != null) {
+                unitOfWork.enlist(wal(), event, durability, null, () -> {
+                    try {
+                        doRemove(id);
+                    } finally {
+                        idsInFlight.remove(id);
+                    }
+                }, () -> idsInFlight.remove(id));
+                enlisted = true;
+                return true;
+            }
+            wal().append(event, durability, () -> doRemove(id));
+            return true;
+        } finally {
+            if (!enlisted) {
+                idsInFlight.remove(id);
+            }
+        }
     }
 
     private void applyEvent(RepositoryWalEvent<T, ID, S> event) {
@@ -210,15 +454,19 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     }
 
     private void doInsert(T aggregate) {
-        if (aggregates.putIfAbsent(aggregate.id(), aggregate) != null) {
+        aggregate.setChangeListener(changeListener);
+        if (aggregates.putIfAbsent(aggregate) != null) {
             // This should never happen unless the WAL is corrupt.
             throw new DuplicateIdentifierException(aggregate.id());
         }
+        indexes.forEach(index -> index.add(aggregate));
+        sampleMemoryUsage(aggregate);
         afterInsert(aggregate);
     }
 
     private void doRemove(ID id) {
         aggregates.remove(id);
+        indexes.forEach(index -> index.remove(id));
         afterRemove(id);
     }
 
@@ -232,7 +480,31 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
         if (aggregate == null) {
             throw new NonExistentAggregateException(aggregateType, id);
         }
-        event.forEach(aggregate::applyEvent);
+        aggregate.applyEvents(event);
+        aggregates.aggregateChanged(aggregate);
+        indexes.forEach(index -> index.update(aggregate));
+        sampleMemoryUsage(aggregate);
+    }
+
+    private T materialize(ID id, S state) {
+        var aggregate = createFromState(id, state);
+        aggregate.setChangeListener(changeListener);
+        return aggregate;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onAggregateChanged(Aggregate<ID, S, E> aggregate) {
+        var changed = (T) aggregate;
+        aggregates.aggregateChanged(changed);
+        indexes.forEach(index -> index.update(changed));
+        sampleMemoryUsage(changed);
+    }
+
+    private void sampleMemoryUsage(T aggregate) {
+        var estimator = memoryEstimator;
+        if (estimator != null) {
+            estimator.sampleOccasionally(aggregate.toState());
+        }
     }
 
     private boolean supportsEvent(RepositoryWalEvent<?, ?, ?> event) {
@@ -241,12 +513,15 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
 
     private void applySnapshot(RepositoryWalSnapshot<T, ID, S> snapshot) {
         aggregates.clear();
+        indexes.forEach(RepositoryIndex::clear);
         snapshot.forEach((id, state) -> {
-            var aggregate = createFromState(id, state);
-            if (aggregates.putIfAbsent(id, aggregate) != null) {
+            var aggregate = materialize(id, state);
+            if (aggregates.putIfAbsent(aggregate) != null) {
                 // This should never happen unless the WAL is corrupt.
                 throw new DuplicateIdentifierException(id);
             }
+            indexes.forEach(index -> index.add(aggregate));
+            sampleMemoryUsage(aggregate);
         });
     }
 
@@ -255,17 +530,17 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     }
 
     private void createSnapshot(WriteAheadLog.SnapshotWriter<RepositoryWalSnapshot<T, ID, S>> snapshotWriter) {
-        snapshotWriter.write(RepositoryWalSnapshot.of(aggregateType, aggregates.values()));
+        snapshotWriter.write(new RepositoryWalSnapshot<>(aggregateType, aggregates.states()));
     }
 
     /// Finds all aggregates that match the given filter.
     ///
     /// @param filter the filter to apply
     /// @return an unmodifiable collection of aggregates
-    /// @deprecated Use [#stream()] directly instead
+    /// @deprecated Use [#query()] or [#stream()] instead
     @Deprecated
     public final Collection<T> find(Predicate<T> filter) {
-        return aggregates.values().stream().filter(filter).toList();
+        return aggregates.stream().filter(filter).toList();
     }
 
     /// Finds all aggregates that match the given filter and sorts them using the given comparaator.
@@ -273,16 +548,26 @@ public abstract class Repository<T extends Aggregate<ID, S, E>, ID extends Ident
     /// @param filter     the filter to apply
     /// @param comparator the comparator to apply
     /// @return an unmodifiable list of aggregates
-    /// @deprecated Use [#stream()] directly instead
+    /// @deprecated Use [Query#top(int, Comparator)] instead
     @Deprecated
     public final List<T> findSorted(Predicate<T> filter, Comparator<T> comparator) {
-        return aggregates.values().stream().filter(filter).sorted(comparator).toList();
+        return aggregates.stream().filter(filter).sorted(comparator).toList();
     }
 
     /// Returns a stream of all aggregates currently in the repository.
     ///
     /// @return a stream of aggregates
+    /// @see #query()
     public final Stream<T> stream() {
-        return aggregates.values().stream();
+        return aggregates.stream();
+    }
+
+    /// Returns a new [Query] over all aggregates currently in the repository. Queries support parallel scans, early
+    /// termination and top-K selection, and should be preferred over [#stream()] when only some of the aggregates are
+    /// needed.
+    ///
+    /// @return a new query that matches all aggregates
+    public final Query<T> query() {
+        return new Query<>(aggregates);
     }
 }
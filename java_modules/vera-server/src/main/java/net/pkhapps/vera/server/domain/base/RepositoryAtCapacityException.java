@@ -23,4 +23,8 @@ public class RepositoryAtCapacityException extends RepositoryException {
     public RepositoryAtCapacityException(int capacity) {
         super("The repository is at its capacity of " + capacity + " aggregates");
     }
+
+    protected RepositoryAtCapacityException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/// Base class for secondary indexes of a [Repository].
+///
+/// Indexes are registered by repository subclasses through [Repository#registerIndex(RepositoryIndex)]. From then
+/// on, the repository keeps the index in sync with the aggregates: when aggregates are inserted, removed, changed by
+/// their own events, and when the WAL is replayed (including snapshots). The index only has to react to these
+/// callbacks.
+///
+/// Indexes should only store aggregate IDs, not the aggregates themselves. Use [#resolve(Collection)] to turn the IDs
+/// back into aggregates when answering queries. This keeps indexes compatible with repositories that use
+/// [ColdStorage].
+///
+/// All callbacks may be invoked concurrently by different threads, so implementations must be thread-safe. The
+/// callbacks must also be fast, as they are invoked during WAL replay and while holding aggregate locks.
+///
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+public abstract class RepositoryIndex<T extends Aggregate<ID, ?, ?>, ID extends Identifier> {
+
+    private volatile @Nullable Function<ID, @Nullable T> resolver;
+
+    /// Called by the [Repository] when the index is registered.
+    ///
+    /// @param resolver a function for looking up aggregates by their IDs
+    /// @throws IllegalStateException if the index has already been registered with a repository
+    final void attach(Function<ID, @Nullable T> resolver) {
+        if (this.resolver != null) {
+            throw new IllegalStateException("Index is already registered with a repository");
+        }
+        this.resolver = resolver;
+    }
+
+    /// Turns the given IDs into a stream of aggregates. IDs of aggregates that no longer exist are skipped.
+    ///
+    /// @param ids the IDs to resolve (the collection should not be modified while the stream is being consumed)
+    /// @return a stream of aggregates
+    /// @throws IllegalStateException if the index has not been registered with a repository
+    protected final Stream<T> resolve(Collection<ID> ids) {
+        var resolver = requireResolver();
+        return ids.stream().map(resolver).filter(Objects::nonNull);
+    }
+
+    /// Turns the given ID into an aggregate.
+    ///
+    /// @param id the ID to resolve
+    /// @return the aggregate, or `null` if it no longer exists
+    /// @throws IllegalStateException if the index has not been registered with a repository
+    protected final @Nullable T resolve(ID id) {
+        return requireResolver().apply(id);
+    }
+
+    private Function<ID, @Nullable T> requireResolver() {
+        var resolver = this.resolver;
+        if (resolver == null) {
+            throw new IllegalStateException("Index is not registered with a repository");
+        }
+        return resolver;
+    }
+
+    /// Adds the given aggregate to the index. Called after the aggregate has been inserted into the repository.
+    ///
+    /// @param aggregate the aggregate to add
+    protected abstract void add(T aggregate);
+
+    /// Updates the index entries of the given aggregate. Called after the aggregate has applied one or more events.
+    /// If the aggregate is not in the index (for instance because it has been removed concurrently), nothing should
+    /// happen.
+    ///
+    /// @param aggregate the changed aggregate
+    protected abstract void update(T aggregate);
+
+    /// Removes the aggregate with the given ID from the index. Called after the aggregate has been removed from the
+    /// repository.
+    ///
+    /// @param id the ID of the removed aggregate
+    protected abstract void remove(ID id);
+
+    /// Removes all entries from the index. Called before a snapshot is replayed.
+    protected abstract void clear();
+
+    /// Called by the [Repository] when it is closed. The default implementation does nothing.
+    void detach() {
+        // NOP
+    }
+}
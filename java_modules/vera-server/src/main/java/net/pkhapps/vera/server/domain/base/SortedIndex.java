@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/// [RepositoryIndex] that keeps its keys sorted. Lookups by key and range queries are `O(log n)`, plus the size of
+/// the result.
+///
+/// Aggregates that share the same key are returned in an unspecified order. If a stable order is required (for
+/// instance for pagination), include a unique value such as the aggregate ID in the key.
+///
+/// @param <K>  the type of the key
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+public final class SortedIndex<K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> extends KeyedIndex<K, T, ID> {
+
+    private final NavigableMap<K, Set<ID>> idsByKey;
+
+    private SortedIndex(Function<? super T, ? extends Collection<? extends K>> keyExtractor, Comparator<? super K> comparator) {
+        super(keyExtractor);
+        this.idsByKey = new TreeMap<>(comparator);
+    }
+
+    /// Creates a new `SortedIndex` of [Comparable] keys, where every aggregate has at most one key. Aggregates whose
+    /// key is `null` are not indexed.
+    ///
+    /// @param keyExtractor a function that extracts the key from an aggregate
+    /// @return a new `SortedIndex`
+    public static <K extends Comparable<? super K>, T extends Aggregate<ID, ?, ?>, ID extends Identifier> SortedIndex<K, T, ID> of(Function<? super T, ? extends @Nullable K> keyExtractor) {
+        return new SortedIndex<>(HashIndex.singleKey(keyExtractor), Comparator.naturalOrder());
+    }
+
+    /// Creates a new `SortedIndex` where every aggregate has at most one key. Aggregates whose key is `null` are not
+    /// indexed.
+    ///
+    /// @param keyExtractor a function that extracts the key from an aggregate
+    /// @param comparator   the comparator to use for sorting the keys
+    /// @return a new `SortedIndex`
+    public static <K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> SortedIndex<K, T, ID> of(Function<? super T, ? extends @Nullable K> keyExtractor, Comparator<? super K> comparator) {
+        return new SortedIndex<>(HashIndex.singleKey(keyExtractor), comparator);
+    }
+
+    /// Creates a new `SortedIndex` where every aggregate can have any number of keys.
+    ///
+    /// @param keyExtractor a function that extracts the keys from an aggregate
+    /// @param comparator   the comparator to use for sorting the keys
+    /// @return a new `SortedIndex`
+    public static <K, T extends Aggregate<ID, ?, ?>, ID extends Identifier> SortedIndex<K, T, ID> ofMany(Function<? super T, ? extends Collection<? extends K>> keyExtractor, Comparator<? super K> comparator) {
+        return new SortedIndex<>(keyExtractor, comparator);
+    }
+
+    @Override
+    Map<K, Set<ID>> idsByKey() {
+        return idsByKey;
+    }
+
+    /// Returns a stream of all aggregates that have the given key.
+    ///
+    /// @param key the key to look up
+    /// @return a stream of aggregates, may be empty
+    public Stream<T> find(K key) {
+        return resolve(findIds(key));
+    }
+
+    /// Returns a stream of all aggregates whose keys are within the given range, in ascending key order.
+    ///
+    /// @param fromInclusive the lowest key to include
+    /// @param toExclusive   the key at which to stop
+    /// @return a stream of aggregates, may be empty
+    public Stream<T> range(K fromInclusive, K toExclusive) {
+        return resolve(collectIds(map -> map.subMap(fromInclusive, true, toExclusive, false), Integer.MAX_VALUE));
+    }
+
+    /// Returns a stream of at most `limit` aggregates, in ascending key order.
+    ///
+    /// @param limit the maximum number of aggregates to return
+    /// @return a stream of aggregates, may be empty
+    public Stream<T> ascending(int limit) {
+        return resolve(collectIds(Function.identity(), limit));
+    }
+
+    /// Returns a stream of at most `limit` aggregates, in descending key order.
+    ///
+    /// @param limit the maximum number of aggregates to return
+    /// @return a stream of aggregates, may be empty
+    public Stream<T> descending(int limit) {
+        return resolve(collectIds(NavigableMap::descendingMap, limit));
+    }
+
+    /// Returns a stream of at most `limit` aggregates whose keys are strictly greater than the given key, in ascending
+    /// key order. This is intended for keyset pagination, where `key` is the key of the last aggregate of the previous
+    /// page.
+    ///
+    /// @param key   the key to start after
+    /// @param limit the maximum number of aggregates to return
+    /// @return a stream of aggregates, may be empty
+    public Stream<T> after(K key, int limit) {
+        return resolve(collectIds(map -> map.tailMap(key, false), limit));
+    }
+
+    /// Returns the lowest key in the index.
+    ///
+    /// @return the lowest key, or an empty `Optional` if the index is empty
+    public Optional<K> firstKey() {
+        return boundaryKey(NavigableMap::firstEntry);
+    }
+
+    /// Returns the highest key in the index.
+    ///
+    /// @return the highest key, or an empty `Optional` if the index is empty
+    public Optional<K> lastKey() {
+        return boundaryKey(NavigableMap::lastEntry);
+    }
+
+    private Optional<K> boundaryKey(Function<NavigableMap<K, Set<ID>>, Map.@Nullable Entry<K, Set<ID>>> boundary) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(boundary.apply(idsByKey)).map(Map.Entry::getKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<ID> collectIds(Function<NavigableMap<K, Set<ID>>, NavigableMap<K, Set<ID>>> view, int limit) {
+        var result = new ArrayList<ID>();
+        lock.readLock().lock();
+        try {
+            for (var ids : view.apply(idsByKey).values()) {
+                for (var id : ids) {
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                    result.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.CompositeWalEvent;
+import net.pkhapps.vera.server.util.wal.Durability;
+import net.pkhapps.vera.server.util.wal.WalEvent;
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/// Unit of work that commits changes to several aggregates and repositories atomically.
+///
+/// While an action runs inside a unit of work, events written by aggregates (through
+/// [Aggregate#appendToWal(Object, Durability)]) and inserts and removes made by repositories are not written to the WAL
+/// right away. Instead, they are collected and written as a single [CompositeWalEvent] when the action returns. This
+/// means the changes cost a single WAL flush, and that they are replayed all-or-nothing.
+///
+/// Example of use:
+///
+/// ```
+/// UnitOfWork.run(Durability.IMMEDIATE, () -> {
+///     resource.dispatchTo(incident);
+///     station.update((_, mutator) -> mutator.setNote("Resource dispatched"));
+/// });
+///```
+///
+/// Things to keep in mind:
+///
+/// - The unit of work is bound to the current thread. Changes made by other threads do not join it.
+/// - Changes are *applied* only after the composite event has been written. Inside the action, aggregates and
+///   repositories still show their state from before the unit of work. Inserted aggregates become visible, and removed
+///   aggregates disappear, on commit.
+/// - If the action throws an exception, all collected changes are discarded and nothing is written to the WAL.
+/// - A unit of work started inside another one joins the outer unit of work.
+/// - All changes must go to the same WAL.
+public final class UnitOfWork {
+
+    private static final ScopedValue<UnitOfWork> CURRENT = ScopedValue.newInstance();
+
+    private final List<Change> changes = new ArrayList<>();
+    private @Nullable WriteAheadLog wal;
+    private Durability durability;
+
+    private UnitOfWork(Durability durability) {
+        this.durability = durability;
+    }
+
+    /// Runs the given `action` inside a unit of work and commits the changes when it returns.
+    ///
+    /// @param durability the minimum durability of the composite WAL event (the strongest durability requested by any
+    ///                   of the changes is used if it is stronger)
+    /// @param action     the action to run
+    public static void run(Durability durability, Runnable action) {
+        call(durability, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /// Runs the given `action` inside a unit of work, commits the changes when it returns, and returns its result.
+    ///
+    /// @param durability the minimum durability of the composite WAL event (the strongest durability requested by any
+    ///                   of the changes is used if it is stronger)
+    /// @param action     the action to run
+    /// @return the result of the action
+    public static <R extends @Nullable Object> R call(Durability durability, Supplier<R> action) {
+        if (CURRENT.isBound()) {
+            return action.get();
+        }
+        var unitOfWork = new UnitOfWork(durability);
+        R result;
+        try {
+            result = ScopedValue.where(CURRENT, unitOfWork).call(action::get);
+        } catch (RuntimeException | Error ex) {
+            unitOfWork.rollback();
+            throw ex;
+        }
+        unitOfWork.commit();
+        return result;
+    }
+
+    /// Returns the unit of work bound to the current thread.
+    ///
+    /// @return the current unit of work, or `null` if there is none
+    static @Nullable UnitOfWork current() {
+        return CURRENT.isBound() ? CURRENT.get() : null;
+    }
+
+    /// Adds a change to this unit of work.
+    ///
+    /// @param wal        the WAL that the change would have been written to
+    /// @param event      the WAL event of the change
+    /// @param durability the durability requested for the change
+    /// @param aggregate  the aggregate to lock while committing, or `null` if the change does not need locking
+    /// @param onCommit   called after the composite event has been written, to apply the change
+    /// @param onRollback called if the unit of work is rolled back, to release any reservations made for the change
+    /// @throws IllegalStateException if the WAL is different from the WAL of earlier changes
+    void enlist(WriteAheadLog wal, WalEvent event, Durability durability, @Nullable Aggregate<?, ?, ?> aggregate,
+                Runnable onCommit, Runnable onRollback) {
+        if (this.wal == null) {
+            this.wal = wal;
+        } else if (this.wal != wal) {
+            throw new IllegalStateException("All changes in a unit of work must be written to the same WAL");
+        }
+        if (durability.compareTo(this.durability) > 0) {
+            this.durability = durability;
+        }
+        changes.add(new Change(event, aggregate, onCommit, onRollback));
+    }
+
+    private record Change(WalEvent event, @Nullable Aggregate<?, ?, ?> aggregate, Runnable onCommit,
+                          Runnable onRollback) {
+    }
+
+    private void commit() {
+        var wal = this.wal;
+        if (wal == null) {
+            return;
+        }
+        // Lock the aggregates in a consistent order to avoid deadlocks with other units of work. This also makes
+        // sure no other thread writes events to the aggregates between the composite event and our own events.
+        var aggregates = changes.stream()
+                .map(Change::aggregate)
+                .<Aggregate<?, ?, ?>>mapMulti((aggregate, downstream) -> {
+                    if (aggregate != null) {
+                        downstream.accept(aggregate);
+                    }
+                })
+                .distinct()
+                .sorted(Comparator.comparing((Aggregate<?, ?, ?> aggregate) -> aggregate.getClass().getName())
+                        .thenComparing(aggregate -> aggregate.id().toString()))
+                .toList();
+        lockAndCommit(wal, aggregates, 0);
+    }
+
+    private void lockAndCommit(WriteAheadLog wal, List<Aggregate<?, ?, ?>> aggregates, int index) {
+        if (index < aggregates.size()) {
+            synchronized (aggregates.get(index)) {
+                lockAndCommit(wal, aggregates, index + 1);
+            }
+            return;
+        }
+        var written = new AtomicBoolean();
+        try {
+            wal.append(CompositeWalEvent.of(changes.stream().map(Change::event).toList()), durability, () -> {
+                written.set(true);
+                changes.forEach(change -> change.onCommit().run());
+            });
+        } catch (RuntimeException | Error ex) {
+            if (!written.get()) {
+                rollback();
+            }
+            throw ex;
+        }
+    }
+
+    private void rollback() {
+        changes.forEach(change -> change.onRollback().run());
+        changes.clear();
+    }
+}
@@ -16,6 +16,8 @@
 
 package net.pkhapps.vera.server.domain.model;
 
+import net.pkhapps.vera.server.domain.model.delivery.PendingDeliveryRepository;
+import net.pkhapps.vera.server.domain.model.delivery.PendingDeliveryWalSerdeRegistrator;
 import net.pkhapps.vera.server.domain.model.station.StationRepository;
 import net.pkhapps.vera.server.domain.model.station.StationWalSerdeRegistrator;
 import net.pkhapps.vera.server.util.wal.WalSerdeRegistrator;
@@ -26,10 +28,16 @@ import java.util.List;
 /// Creates and configures the domain model for this application.
 public final class DomainModel {
 
+    /// The maximum estimated memory use of all stations. A station takes a few hundred bytes, so this leaves room for
+    /// far more stations than there are in the whole country.
+    private static final long STATION_MEMORY_BUDGET_IN_BYTES = 64L * 1024 * 1024;
+
     public final StationRepository stationRepository;
+    public final PendingDeliveryRepository pendingDeliveryRepository;
 
     private DomainModel(WriteAheadLog wal) {
-        stationRepository = new StationRepository(wal);
+        stationRepository = new StationRepository(wal, STATION_MEMORY_BUDGET_IN_BYTES);
+        pendingDeliveryRepository = new PendingDeliveryRepository(wal);
     }
 
     /// Creates a new `DomainModel` that stores data in the given `wal`.
@@ -45,7 +53,8 @@ public final class DomainModel {
     /// @return an unmodifiable list of [WalSerdeRegistrator]s
     public static List<WalSerdeRegistrator> serdeRegistrators() {
         return List.of(
-                StationWalSerdeRegistrator.instance()
+                StationWalSerdeRegistrator.instance(),
+                PendingDeliveryWalSerdeRegistrator.instance()
         );
     }
 }
@@ -17,11 +17,12 @@
 package net.pkhapps.vera.server.domain.model;
 
 /// Class with global serde IDs used by [net.pkhapps.vera.server.util.wal.WalSerde]s. This class exists to make sure
-/// no serdes accidentally use the same IDs.
+/// no serdes accidentally use the same IDs. IDs below `0x000100` are reserved for the WAL itself.
 public final class GlobalSerdeIds {
     private GlobalSerdeIds() {
     }
 
     public static final int STATION_SERDE_GROUP_ID = 0x000100;
+    public static final int PENDING_DELIVERY_SERDE_GROUP_ID = 0x000200;
 
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.device.*;
+import net.pkhapps.vera.server.domain.base.ImmutableStateAggregate;
+import net.pkhapps.vera.server.util.wal.Durability;
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/// Aggregate representing an [OutgoingMessage] that has not yet been delivered to all its recipients.
+///
+/// Completed recipients are recorded with [Durability#BATCHED]. If the server crashes before the batch is flushed, the
+/// message is delivered to those recipients again after the restart.
+///
+/// @see PendingDeliveryRepository
+public final class PendingDelivery extends ImmutableStateAggregate<OutgoingMessageId, PendingDelivery.PendingDeliveryState, PendingDelivery.PendingDeliveryWalEvent> {
+
+    PendingDelivery(WriteAheadLog wal, OutgoingMessage message) {
+        super(wal, message.messageId(), new PendingDeliveryState(message.priority(), message.queuedOn(),
+                message.payload(), message.recipients(), message.recipients()));
+    }
+
+    PendingDelivery(WriteAheadLog wal, OutgoingMessageId messageId, PendingDeliveryState state) {
+        super(wal, messageId, state);
+    }
+
+    /// Returns the pending message.
+    ///
+    /// @return the [OutgoingMessage]
+    public OutgoingMessage message() {
+        var state = state();
+        return new OutgoingMessage(id(), state.recipients(), state.priority(), state.queuedOn(), state.payload());
+    }
+
+    /// Returns the recipients that the message has not yet been delivered to, and that have not been given up on.
+    ///
+    /// @return an unmodifiable set of [DeviceId]s
+    public Set<DeviceId> remainingRecipients() {
+        return state().remainingRecipients();
+    }
+
+    /// Records that the delivery to the given recipient has completed, either successfully or not.
+    ///
+    /// @param recipient the recipient
+    /// @return true if the delivery is now complete for all recipients
+    boolean complete(DeviceId recipient) {
+        if (state().remainingRecipients().contains(recipient)) {
+            appendToWal(new PendingDeliveryWalEvent.RecipientCompleted(recipient), Durability.BATCHED);
+        }
+        return state().remainingRecipients().isEmpty();
+    }
+
+    @Override
+    protected PendingDeliveryState apply(PendingDeliveryState state, PendingDeliveryWalEvent event) {
+        return switch (event) {
+            case PendingDeliveryWalEvent.RecipientCompleted recipientCompleted -> {
+                var remaining = new HashSet<>(state.remainingRecipients());
+                remaining.remove(recipientCompleted.recipient());
+                yield new PendingDeliveryState(state.priority(), state.queuedOn(), state.payload(),
+                        state.recipients(), remaining);
+            }
+        };
+    }
+
+    /// Super interface for WAL events written by the pending delivery aggregate.
+    protected sealed interface PendingDeliveryWalEvent {
+
+        record RecipientCompleted(DeviceId recipient) implements PendingDeliveryWalEvent {
+        }
+    }
+
+    /// Record representing the state of a [PendingDelivery].
+    ///
+    /// @param priority            the priority of the message
+    /// @param queuedOn            the instant at which the message was queued
+    /// @param payload             the payload of the message
+    /// @param recipients          all recipients of the message
+    /// @param remainingRecipients the recipients whose delivery has not completed yet
+    public record PendingDeliveryState(
+            MessagePriority priority,
+            Instant queuedOn,
+            MessagePayload payload,
+            Set<DeviceId> recipients,
+            Set<DeviceId> remainingRecipients
+    ) {
+        public PendingDeliveryState {
+            recipients = Set.copyOf(recipients);
+            remainingRecipients = Set.copyOf(remainingRecipients);
+        }
+    }
+}
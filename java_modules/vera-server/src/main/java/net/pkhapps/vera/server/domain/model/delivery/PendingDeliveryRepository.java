@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.device.DeviceId;
+import net.pkhapps.vera.server.device.OutgoingMessage;
+import net.pkhapps.vera.server.device.OutgoingMessageId;
+import net.pkhapps.vera.server.device.delivery.ForStoringPendingDeliveries;
+import net.pkhapps.vera.server.device.delivery.MessageDeliveryEngine;
+import net.pkhapps.vera.server.domain.base.Repository;
+import net.pkhapps.vera.server.domain.base.RepositoryAtCapacityException;
+import net.pkhapps.vera.server.util.wal.Durability;
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+
+import java.util.Comparator;
+import java.util.List;
+
+/// Repository of [PendingDelivery] aggregates, acting as a durable outbox for [MessageDeliveryEngine].
+///
+/// Messages are added with [Durability#IMMEDIATE], so a message that has been accepted for sending survives a crash.
+/// Completed deliveries are recorded with [Durability#BATCHED], which keeps acknowledgments cheap. After a crash, a
+/// few recently acknowledged messages may therefore be sent again.
+///
+/// The WAL must be created with [PendingDeliveryWalSerdeRegistrator].
+public final class PendingDeliveryRepository extends Repository<PendingDelivery, OutgoingMessageId, PendingDelivery.PendingDeliveryState, PendingDelivery.PendingDeliveryWalEvent>
+        implements ForStoringPendingDeliveries {
+
+    /// Creates a new `PendingDeliveryRepository`.
+    ///
+    /// @param wal the WAL to store pending deliveries in
+    public PendingDeliveryRepository(WriteAheadLog wal) {
+        super(wal, PendingDelivery.class);
+    }
+
+    @Override
+    protected PendingDelivery createFromState(OutgoingMessageId messageId, PendingDelivery.PendingDeliveryState state) {
+        return new PendingDelivery(wal(), messageId, state);
+    }
+
+    /// Adds the given message to the outbox.
+    ///
+    /// @param message the message to add
+    /// @throws RepositoryAtCapacityException if the repository is at capacity and cannot accept more messages
+    @Override
+    public void add(OutgoingMessage message) {
+        insert(new PendingDelivery(wal(), message));
+    }
+
+    /// Records that the delivery of the given message to the given recipient has completed, either successfully or
+    /// not. The message is removed from the outbox once the delivery has completed for all its recipients.
+    ///
+    /// @param messageId the ID of the message
+    /// @param recipient the recipient
+    @Override
+    public void complete(OutgoingMessageId messageId, DeviceId recipient) {
+        get(messageId).ifPresent(pendingDelivery -> {
+            if (pendingDelivery.complete(recipient)) {
+                remove(messageId, Durability.BATCHED);
+            }
+        });
+    }
+
+    @Override
+    public List<PendingMessage> pending() {
+        return stream()
+                .sorted(Comparator.comparing(pendingDelivery -> pendingDelivery.state().queuedOn()))
+                .map(pendingDelivery -> new PendingMessage(pendingDelivery.message(),
+                        pendingDelivery.remainingRecipients()))
+                .toList();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.device.DeviceId;
+import net.pkhapps.vera.server.device.MessagePayloadSerde;
+import net.pkhapps.vera.server.device.MessagePriority;
+import net.pkhapps.vera.server.util.Deferred;
+import net.pkhapps.vera.server.util.serde.Input;
+import net.pkhapps.vera.server.util.serde.Output;
+import net.pkhapps.vera.server.util.serde.Serde;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+/// [Serde] for [net.pkhapps.vera.server.device.delivery.PendingDelivery.PendingDeliveryState].
+final class PendingDeliveryStateSerde implements Serde<PendingDelivery.PendingDeliveryState> {
+
+    private static final Deferred<PendingDeliveryStateSerde> INSTANCE = new Deferred<>(PendingDeliveryStateSerde::new);
+
+    public static PendingDeliveryStateSerde instance() {
+        return INSTANCE.get();
+    }
+
+    private PendingDeliveryStateSerde() {
+    }
+
+    @Override
+    public void writeTo(PendingDelivery.PendingDeliveryState object, Output output) {
+        output.writeByte((byte) object.priority().ordinal());
+        output.writeLong(object.queuedOn().getEpochSecond());
+        output.writeInteger(object.queuedOn().getNano());
+        MessagePayloadSerde.instance().writeTo(object.payload(), output);
+        writeDeviceIds(object.recipients(), output);
+        writeDeviceIds(object.remainingRecipients(), output);
+    }
+
+    @Override
+    public PendingDelivery.PendingDeliveryState readFrom(Input input) {
+        var priority = MessagePriority.values()[input.readByte()];
+        var queuedOn = Instant.ofEpochSecond(input.readLong(), input.readInteger());
+        var payload = MessagePayloadSerde.instance().readFrom(input);
+        var recipients = readDeviceIds(input);
+        var remainingRecipients = readDeviceIds(input);
+        return new PendingDelivery.PendingDeliveryState(priority, queuedOn, payload, recipients, remainingRecipients);
+    }
+
+    private static void writeDeviceIds(Set<DeviceId> deviceIds, Output output) {
+        output.writeInteger(deviceIds.size());
+        for (var deviceId : deviceIds) {
+            PendingDeliveryWalSerdeRegistrator.DEVICE_ID_SERDE.writeTo(deviceId, output);
+        }
+    }
+
+    private static Set<DeviceId> readDeviceIds(Input input) {
+        var size = input.readInteger();
+        var deviceIds = new HashSet<DeviceId>(size);
+        for (int i = 0; i < size; i++) {
+            deviceIds.add(PendingDeliveryWalSerdeRegistrator.DEVICE_ID_SERDE.readFrom(input));
+        }
+        return deviceIds;
+    }
+}
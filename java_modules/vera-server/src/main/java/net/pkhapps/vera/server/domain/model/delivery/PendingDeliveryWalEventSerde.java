@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.util.Deferred;
+import net.pkhapps.vera.server.util.serde.Input;
+import net.pkhapps.vera.server.util.serde.Output;
+import net.pkhapps.vera.server.util.serde.Serde;
+import net.pkhapps.vera.server.util.serde.UnknownInputException;
+
+/// [Serde] for [net.pkhapps.vera.server.device.delivery.PendingDelivery.PendingDeliveryWalEvent].
+final class PendingDeliveryWalEventSerde implements Serde<PendingDelivery.PendingDeliveryWalEvent> {
+
+    private static final short TYPE_ID_RECIPIENT_COMPLETED = 1;
+    private static final Deferred<PendingDeliveryWalEventSerde> INSTANCE = new Deferred<>(PendingDeliveryWalEventSerde::new);
+
+    public static PendingDeliveryWalEventSerde instance() {
+        return INSTANCE.get();
+    }
+
+    private PendingDeliveryWalEventSerde() {
+    }
+
+    @Override
+    public void writeTo(PendingDelivery.PendingDeliveryWalEvent object, Output output) {
+        switch (object) {
+            case PendingDelivery.PendingDeliveryWalEvent.RecipientCompleted recipientCompleted -> {
+                output.writeShort(TYPE_ID_RECIPIENT_COMPLETED);
+                PendingDeliveryWalSerdeRegistrator.DEVICE_ID_SERDE.writeTo(recipientCompleted.recipient(), output);
+            }
+        }
+    }
+
+    @Override
+    public PendingDelivery.PendingDeliveryWalEvent readFrom(Input input) {
+        var typeId = input.readShort();
+        switch (typeId) {
+            case TYPE_ID_RECIPIENT_COMPLETED -> {
+                return new PendingDelivery.PendingDeliveryWalEvent.RecipientCompleted(
+                        PendingDeliveryWalSerdeRegistrator.DEVICE_ID_SERDE.readFrom(input));
+            }
+            default -> throw new UnknownInputException("Unknown typeId: " + typeId);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.device.DeviceId;
+import net.pkhapps.vera.server.device.OutgoingMessageId;
+import net.pkhapps.vera.server.domain.base.AggregateWalSerdeRegistrator;
+import net.pkhapps.vera.server.domain.base.NanoIdentifierSerde;
+import net.pkhapps.vera.server.domain.model.GlobalSerdeIds;
+import net.pkhapps.vera.server.util.Deferred;
+import net.pkhapps.vera.server.util.serde.Serde;
+
+/// [AggregateWalSerdeRegistrator] for [PendingDelivery].
+public final class PendingDeliveryWalSerdeRegistrator extends AggregateWalSerdeRegistrator<PendingDelivery, OutgoingMessageId, PendingDelivery.PendingDeliveryState, PendingDelivery.PendingDeliveryWalEvent> {
+
+    static final Serde<DeviceId> DEVICE_ID_SERDE = NanoIdentifierSerde.of(DeviceId::of);
+    private static final Deferred<PendingDeliveryWalSerdeRegistrator> INSTANCE = new Deferred<>(PendingDeliveryWalSerdeRegistrator::new);
+
+    public static PendingDeliveryWalSerdeRegistrator instance() {
+        return INSTANCE.get();
+    }
+
+    private PendingDeliveryWalSerdeRegistrator() {
+        super(GlobalSerdeIds.PENDING_DELIVERY_SERDE_GROUP_ID, PendingDelivery.class,
+                NanoIdentifierSerde.of(OutgoingMessageId::of), PendingDeliveryStateSerde.instance(),
+                PendingDeliveryWalEventSerde.instance());
+    }
+}
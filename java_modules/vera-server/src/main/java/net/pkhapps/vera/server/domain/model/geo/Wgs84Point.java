@@ -24,6 +24,9 @@ import net.pkhapps.vera.server.domain.base.ValueObject;
 /// @param longitude the longitude coordinate ("X"), must be `[-180, 180]` degrees
 public record Wgs84Point(double latitude, double longitude) implements ValueObject {
 
+    /// The mean radius of the Earth in meters, used for great-circle distance calculations.
+    public static final double EARTH_MEAN_RADIUS_IN_METERS = 6_371_008.8;
+
     public Wgs84Point {
         if (latitude < -90 || latitude > 90) {
             throw new IllegalArgumentException("Latitude must be between -90 and 90");
@@ -32,4 +35,19 @@ public record Wgs84Point(double latitude, double longitude) implements ValueObje
             throw new IllegalArgumentException("Longitude must be between -180 and 180");
         }
     }
+
+    /// Calculates the great-circle distance between this point and the given point, using the haversine formula and
+    /// a spherical Earth. The error compared to the WGS84 ellipsoid is less than 0.5%, which is good enough for
+    /// comparing distances.
+    ///
+    /// @param other the other point
+    /// @return the distance in meters
+    public double distanceTo(Wgs84Point other) {
+        var lat1 = Math.toRadians(latitude);
+        var lat2 = Math.toRadians(other.latitude);
+        var sinHalfDeltaLat = Math.sin((lat2 - lat1) / 2);
+        var sinHalfDeltaLon = Math.sin(Math.toRadians(other.longitude - longitude) / 2);
+        var a = sinHalfDeltaLat * sinHalfDeltaLat + Math.cos(lat1) * Math.cos(lat2) * sinHalfDeltaLon * sinHalfDeltaLon;
+        return 2 * EARTH_MEAN_RADIUS_IN_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
 }
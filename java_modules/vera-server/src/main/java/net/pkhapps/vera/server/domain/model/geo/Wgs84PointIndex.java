@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.geo;
+
+import net.pkhapps.vera.server.domain.base.Aggregate;
+import net.pkhapps.vera.server.domain.base.Identifier;
+import net.pkhapps.vera.server.domain.base.RepositoryIndex;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/// [RepositoryIndex] of aggregates by their location, supporting within-radius and k-nearest queries using
+/// great-circle distance (see [Wgs84Point#distanceTo(Wgs84Point)]).
+///
+/// The index divides the globe into a grid of cells of equal size in degrees. A query only visits the cells that
+/// intersect the bounding box of the search circle, and computes the distance to the points in those cells. With
+/// thousands of points and the default cell size, a typical dispatch query visits a few hundred points at most.
+///
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+public final class Wgs84PointIndex<T extends Aggregate<ID, ?, ?>, ID extends Identifier> extends RepositoryIndex<T, ID> {
+
+    /// The default size of the grid cells, in degrees. This is about 28 km in the north-south direction.
+    public static final double DEFAULT_CELL_SIZE_IN_DEGREES = 0.25;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(Wgs84Point.EARTH_MEAN_RADIUS_IN_METERS);
+    private static final double HALF_CIRCUMFERENCE_IN_METERS = Math.PI * Wgs84Point.EARTH_MEAN_RADIUS_IN_METERS;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Function<? super T, ? extends @Nullable Wgs84Point> locationExtractor;
+    private final double cellSize;
+    private final int latitudeCells;
+    private final int longitudeCells;
+    private final Map<ID, Wgs84Point> locationsById = new HashMap<>();
+    private final Map<Long, Set<ID>> idsByCell = new HashMap<>();
+    private final Set<ID> withoutLocation = new HashSet<>();
+
+    /// Creates a new `Wgs84PointIndex` with the [default cell size][#DEFAULT_CELL_SIZE_IN_DEGREES].
+    ///
+    /// @param locationExtractor a function that extracts the location from an aggregate (aggregates without a location
+    ///                          are not indexed)
+    public Wgs84PointIndex(Function<? super T, ? extends @Nullable Wgs84Point> locationExtractor) {
+        this(locationExtractor, DEFAULT_CELL_SIZE_IN_DEGREES);
+    }
+
+    /// Creates a new `Wgs84PointIndex`.
+    ///
+    /// @param locationExtractor a function that extracts the location from an aggregate (aggregates without a
+    ///                          location are not indexed)
+    /// @param cellSizeInDegrees the size of the grid cells in degrees, must be `(0, 90]`
+    public Wgs84PointIndex(Function<? super T, ? extends @Nullable Wgs84Point> locationExtractor, double cellSizeInDegrees) {
+        if (!(cellSizeInDegrees > 0 && cellSizeInDegrees <= 90)) {
+            throw new IllegalArgumentException("Cell size must be between 0 and 90 degrees");
+        }
+        this.locationExtractor = locationExtractor;
+        this.cellSize = cellSizeInDegrees;
+        this.latitudeCells = (int) Math.ceil(180 / cellSizeInDegrees);
+        this.longitudeCells = (int) Math.ceil(360 / cellSizeInDegrees);
+    }
+
+    /// Result of a spatial query.
+    ///
+    /// @param aggregate        the aggregate
+    /// @param location         the location of the aggregate at the time of the query
+    /// @param distanceInMeters the great-circle distance from the query point to the aggregate
+    public record Neighbor<T>(T aggregate, Wgs84Point location, double distanceInMeters) {
+    }
+
+    @Override
+    protected void add(T aggregate) {
+        var location = locationExtractor.apply(aggregate);
+        lock.writeLock().lock();
+        try {
+            index(aggregate.id(), location);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void update(T aggregate) {
+        var location = locationExtractor.apply(aggregate);
+        lock.writeLock().lock();
+        try {
+            var previous = locationsById.get(aggregate.id());
+            if (previous == null && !withoutLocation.contains(aggregate.id())) {
+                return;
+            }
+            if (!Objects.equals(previous, location)) {
+                index(aggregate.id(), location);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void remove(ID id) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        lock.writeLock().lock();
+        try {
+            locationsById.clear();
+            idsByCell.clear();
+            withoutLocation.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /// Returns the number of aggregates in the index.
+    ///
+    /// @return the number of indexed aggregates
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locationsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /// Finds all aggregates within the given distance of the given point, nearest first.
+    ///
+    /// @param center         the point to search from
+    /// @param radiusInMeters the maximum distance from `center`
+    /// @return an unmodifiable list of neighbors, sorted by distance
+    public List<Neighbor<T>> findWithinRadius(Wgs84Point center, double radiusInMeters) {
+        if (radiusInMeters < 0) {
+            throw new IllegalArgumentException("Radius must not be negative");
+        }
+        return toNeighbors(collect(center, radiusInMeters), Integer.MAX_VALUE);
+    }
+
+    /// Finds the `k` aggregates nearest to the given point, nearest first.
+    ///
+    /// The search starts from the cells closest to `center` and widens the search radius until at least `k`
+    /// aggregates have been found, or the entire globe has been searched.
+    ///
+    /// @param center the point to search from
+    /// @param k      the maximum number of aggregates to return
+    /// @return an unmodifiable list of at most `k` neighbors, sorted by distance
+    public List<Neighbor<T>> findNearest(Wgs84Point center, int k) {
+        if (k < 1) {
+            return List.of();
+        }
+        var radius = cellSize * METERS_PER_DEGREE;
+        while (true) {
+            if (size() <= k) {
+                radius = HALF_CIRCUMFERENCE_IN_METERS;
+            }
+            var candidates = collect(center, radius);
+            if (candidates.size() >= k || radius >= HALF_CIRCUMFERENCE_IN_METERS) {
+                return toNeighbors(candidates, k);
+            }
+            radius = Math.min(radius * 4, HALF_CIRCUMFERENCE_IN_METERS);
+        }
+    }
+
+    private record Candidate<ID>(ID id, Wgs84Point location, double distance) {
+    }
+
+    private List<Candidate<ID>> collect(Wgs84Point center, double radiusInMeters) {
+        var result = new ArrayList<Candidate<ID>>();
+        lock.readLock().lock();
+        try {
+            var deltaLatitude = radiusInMeters / METERS_PER_DEGREE;
+            var minLatitude = center.latitude() - deltaLatitude;
+            var maxLatitude = center.latitude() + deltaLatitude;
+            int longitudeCellCount;
+            int firstLongitudeCell;
+            if (minLatitude <= -90 || maxLatitude >= 90) {
+                // The search circle contains a pole, so it covers all longitudes
+                longitudeCellCount = longitudeCells;
+                firstLongitudeCell = 0;
+            } else {
+                var maxAbsLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+                var deltaLongitude = deltaLatitude / Math.cos(Math.toRadians(maxAbsLatitude));
+                firstLongitudeCell = longitudeCell(center.longitude() - deltaLongitude);
+                longitudeCellCount = Math.min(longitudeCells,
+                        longitudeCell(center.longitude() + deltaLongitude) - firstLongitudeCell + 1);
+            }
+            var firstLatitudeCell = latitudeCell(minLatitude);
+            var latitudeCellCount = latitudeCell(maxLatitude) - firstLatitudeCell + 1;
+
+            if ((long) latitudeCellCount * longitudeCellCount > idsByCell.size()) {
+                // Cheaper to check every point than to visit every cell
+                locationsById.forEach((id, location) -> addIfWithin(result, id, location, center, radiusInMeters));
+            } else {
+                for (int lat = 0; lat < latitudeCellCount; ++lat) {
+                    for (int lon = 0; lon < longitudeCellCount; ++lon) {
+                        var ids = idsByCell.get(cellKey(firstLatitudeCell + lat,
+                                Math.floorMod(firstLongitudeCell + lon, longitudeCells)));
+                        if (ids != null) {
+                            for (var id : ids) {
+                                addIfWithin(result, id, locationsById.get(id), center, radiusInMeters);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private static <ID> void addIfWithin(List<Candidate<ID>> result, ID id, Wgs84Point location, Wgs84Point center,
+                                         double radiusInMeters) {
+        var distance = center.distanceTo(location);
+        if (distance <= radiusInMeters) {
+            result.add(new Candidate<>(id, location, distance));
+        }
+    }
+
+    private List<Neighbor<T>> toNeighbors(List<Candidate<ID>> candidates, int limit) {
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+        var result = new ArrayList<Neighbor<T>>(Math.min(limit, candidates.size()));
+        for (var candidate : candidates) {
+            if (result.size() >= limit) {
+                break;
+            }
+            var aggregate = resolve(candidate.id());
+            if (aggregate != null) {
+                result.add(new Neighbor<>(aggregate, candidate.location(), candidate.distance()));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private int latitudeCell(double latitude) {
+        var cell = (int) Math.floor((latitude + 90) / cellSize);
+        return Math.clamp(cell, 0, latitudeCells - 1);
+    }
+
+    private int longitudeCell(double longitude) {
+        // Not wrapped, so that the cell range of a bounding box crossing the antimeridian stays contiguous
+        return (int) Math.floor((longitude + 180) / cellSize);
+    }
+
+    private static long cellKey(int latitudeCell, int longitudeCell) {
+        return ((long) latitudeCell << 32) | (longitudeCell & 0xFFFFFFFFL);
+    }
+
+    private long cellKey(Wgs84Point location) {
+        return cellKey(latitudeCell(location.latitude()),
+                Math.floorMod(longitudeCell(location.longitude()), longitudeCells));
+    }
+
+    private void index(ID id, @Nullable Wgs84Point location) {
+        unlink(id);
+        if (location == null) {
+            withoutLocation.add(id);
+        } else {
+            locationsById.put(id, location);
+            idsByCell.computeIfAbsent(cellKey(location), _ -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void unlink(ID id) {
+        withoutLocation.remove(id);
+        var previous = locationsById.remove(id);
+        if (previous != null) {
+            var key = cellKey(previous);
+            var ids = idsByCell.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                idsByCell.remove(key);
+            }
+        }
+    }
+}
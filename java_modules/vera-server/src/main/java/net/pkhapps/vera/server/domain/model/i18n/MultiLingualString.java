@@ -17,28 +17,46 @@
 package net.pkhapps.vera.server.domain.model.i18n;
 
 import net.pkhapps.vera.server.domain.base.ValueObject;
+import net.pkhapps.vera.server.util.Locales;
 import org.jspecify.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
 /// Value object representing a string in multiple languages.
+///
+/// Almost all multilingual strings in this application are in Finnish, Swedish and perhaps English. Values in these
+/// locales are stored in a small array with a fixed slot per locale (see [#FIXED_LOCALES]). Values in any other
+/// locale are stored in a map, which is empty (and shared) for most instances.
 public final class MultiLingualString implements ValueObject {
 
-    private final Map<Locale, String> values;
+    /// The locales that have a fixed slot. The index of a locale in this list is its slot, which is also used as its
+    /// code by [MultiLingualStringSerde]. The list must therefore only ever be appended to.
+    static final List<Locale> FIXED_LOCALES = List.of(Locales.FINNISH, Locales.SWEDISH, Locale.ENGLISH);
+
+    private static final int INTERN_CACHE_SIZE = 1024;
+    private static final AtomicReferenceArray<MultiLingualString> INTERN_CACHE = new AtomicReferenceArray<>(INTERN_CACHE_SIZE);
+
+    private final @Nullable String[] fixedValues;
+    private final Map<Locale, String> otherValues;
 
     /// Constructor used by the Serde and by factory methods.
     ///
-    /// **Note:** This constructor does *not* copy the `values` map for performance reasons. Callers must make sure the
-    /// map is effectively immutable.
+    /// **Note:** This constructor does *not* copy the `fixedValues` array or the `otherValues` map for performance
+    /// reasons. Callers must make sure they are effectively immutable, and that `otherValues` contains no locale that
+    /// has a fixed slot.
     ///
-    /// @param values a map containing at least one entry
-    MultiLingualString(Map<Locale, String> values) {
-        if (values.isEmpty()) {
+    /// @param fixedValues an array with the values of the [fixed locales][#FIXED_LOCALES], `null` for missing values
+    /// @param otherValues a map with the values of all other locales
+    /// @throws IllegalArgumentException if there are no values at all
+    MultiLingualString(@Nullable String[] fixedValues, Map<Locale, String> otherValues) {
+        if (otherValues.isEmpty() && Arrays.stream(fixedValues).allMatch(Objects::isNull)) {
             throw new IllegalArgumentException("Map must contain at least one entry");
         }
-        this.values = values;
+        this.fixedValues = fixedValues;
+        this.otherValues = otherValues;
     }
 
     /// Creates a new [MultiLingualString] with a single entry.
@@ -46,7 +64,7 @@ public final class MultiLingualString implements ValueObject {
     /// @param locale the locale
     /// @param value  the value
     public static MultiLingualString of(Locale locale, String value) {
-        return new MultiLingualString(Map.of(locale, value));
+        return of(Map.of(locale, value));
     }
 
     /// Creates a new [MultiLingualString] with two entries.
@@ -56,7 +74,7 @@ public final class MultiLingualString implements ValueObject {
     /// @param locale2 the locale of the second entry
     /// @param value2  the value of the second entry
     public static MultiLingualString of(Locale locale1, String value1, Locale locale2, String value2) {
-        return new MultiLingualString(Map.of(locale1, value1, locale2, value2));
+        return of(Map.of(locale1, value1, locale2, value2));
     }
 
     /// Creates a new [MultiLingualString] from the specified map.
@@ -64,7 +82,48 @@ public final class MultiLingualString implements ValueObject {
     /// @param values a map of values
     /// @throws IllegalArgumentException if the `values` map is empty
     public static MultiLingualString of(Map<Locale, String> values) {
-        return new MultiLingualString(Map.copyOf(values));
+        var fixedValues = new String[FIXED_LOCALES.size()];
+        var otherValues = new HashMap<Locale, String>();
+        values.forEach((locale, value) -> {
+            Objects.requireNonNull(value);
+            var slot = slotOf(locale);
+            if (slot < 0) {
+                otherValues.put(locale, value);
+            } else {
+                fixedValues[slot] = value;
+            }
+        });
+        return new MultiLingualString(fixedValues, otherValues.isEmpty() ? Map.of() : Map.copyOf(otherValues));
+    }
+
+    /// Returns the slot of the given locale.
+    ///
+    /// @param locale the locale
+    /// @return the index of the locale in [#FIXED_LOCALES], or -1 if the locale has no fixed slot
+    static int slotOf(Locale locale) {
+        for (int i = 0; i < FIXED_LOCALES.size(); i++) {
+            if (FIXED_LOCALES.get(i).equals(locale)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /// Returns an instance equal to the given one, reusing a recently interned instance if there is one. This is used
+    /// to avoid keeping lots of copies of the same strings in memory after a WAL replay. The cache is small and lossy,
+    /// so this method never causes memory leaks.
+    ///
+    /// @param value the instance to intern
+    /// @return an equal instance
+    static MultiLingualString intern(MultiLingualString value) {
+        var hash = value.hashCode();
+        var index = (hash ^ (hash >>> 16)) & (INTERN_CACHE_SIZE - 1);
+        var cached = INTERN_CACHE.get(index);
+        if (value.equals(cached)) {
+            return cached;
+        }
+        INTERN_CACHE.set(index, value);
+        return value;
     }
 
     /// Checks whether this multilingual string contains a value for the given `locale`.
@@ -72,7 +131,7 @@ public final class MultiLingualString implements ValueObject {
     /// @param locale the locale to check
     /// @return true if a value exists, false otherwise
     public boolean contains(Locale locale) {
-        return values.containsKey(locale);
+        return getOrNull(locale) != null;
     }
 
     /// Checks whether this multilingual string contains any value that matches the given predicate.
@@ -80,7 +139,12 @@ public final class MultiLingualString implements ValueObject {
     /// @param predicate the predicate to apply to all values
     /// @return true if at least one value matches provided predicate, false otherwise
     public boolean containsValue(Predicate<String> predicate) {
-        return values.values().stream().anyMatch(predicate);
+        for (var value : fixedValues) {
+            if (value != null && predicate.test(value)) {
+                return true;
+            }
+        }
+        return !otherValues.isEmpty() && otherValues.values().stream().anyMatch(predicate);
     }
 
     /// Returns the value of the given `locale`.
@@ -88,7 +152,7 @@ public final class MultiLingualString implements ValueObject {
     /// @param locale the locale to fetch
     /// @return the value, or an empty `Optional` if not found
     public Optional<String> get(Locale locale) {
-        return Optional.ofNullable(values.get(locale));
+        return Optional.ofNullable(getOrNull(locale));
     }
 
     /// Returns the value of the given `locale`, or `defaultValue` if the locale has no value.
@@ -97,21 +161,55 @@ public final class MultiLingualString implements ValueObject {
     /// @param defaultValue the value to return if the locale has no value
     /// @return the value
     public String getOrDefault(Locale locale, String defaultValue) {
-        return values.getOrDefault(locale, defaultValue);
+        var value = getOrNull(locale);
+        return value == null ? defaultValue : value;
+    }
+
+    private @Nullable String getOrNull(Locale locale) {
+        var slot = slotOf(locale);
+        return slot < 0 ? otherValues.get(locale) : fixedValues[slot];
+    }
+
+    /// Returns the value in the given slot. Used by [MultiLingualStringSerde].
+    ///
+    /// @param slot the index of the locale in [#FIXED_LOCALES]
+    /// @return the value, or `null` if the locale has no value
+    @Nullable
+    String fixedValue(int slot) {
+        return fixedValues[slot];
+    }
+
+    /// Returns the values of all locales that have no fixed slot. Used by [MultiLingualStringSerde].
+    ///
+    /// @return an unmodifiable map of values
+    Map<Locale, String> otherValues() {
+        return otherValues;
     }
 
     /// Returns the number of entries in this multilingual string (minimum 1).
     ///
     /// @return the number of entries
     public int size() {
-        return values.size();
+        int size = otherValues.size();
+        for (var value : fixedValues) {
+            if (value != null) {
+                size++;
+            }
+        }
+        return size;
     }
 
     /// Performs the given `action` for each entry in this multilingual string.
     ///
     /// @param action the action to perform for each entry
     public void forEach(BiConsumer<Locale, String> action) {
-        values.forEach(action);
+        for (int i = 0; i < fixedValues.length; i++) {
+            var value = fixedValues[i];
+            if (value != null) {
+                action.accept(FIXED_LOCALES.get(i), value);
+            }
+        }
+        otherValues.forEach(action);
     }
 
     /// Returns a new `MultiLingualString` instance that contains all existing locale/value pairs from this instance,
@@ -124,12 +222,18 @@ public final class MultiLingualString implements ValueObject {
     /// @param value  the value to associate with the given locale
     /// @return a `MultiLingualString` that includes the specified locale/value pair
     public MultiLingualString with(Locale locale, String value) {
-        if (Objects.equals(value, values.get(locale))) {
+        if (Objects.equals(value, getOrNull(locale))) {
             return this;
-        } else {
-            var newValues = new HashMap<>(values);
+        }
+        var slot = slotOf(locale);
+        if (slot < 0) {
+            var newValues = new HashMap<>(otherValues);
             newValues.put(locale, value);
-            return new MultiLingualString(newValues);
+            return new MultiLingualString(fixedValues, Map.copyOf(newValues));
+        } else {
+            var newValues = fixedValues.clone();
+            newValues[slot] = value;
+            return new MultiLingualString(newValues, otherValues);
         }
     }
 
@@ -149,18 +253,20 @@ public final class MultiLingualString implements ValueObject {
 
     @Override
     public String toString() {
-        return values.toString();
+        var joiner = new StringJoiner(", ", "{", "}");
+        forEach((locale, value) -> joiner.add(locale + "=" + value));
+        return joiner.toString();
     }
 
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         MultiLingualString that = (MultiLingualString) o;
-        return Objects.equals(values, that.values);
+        return Arrays.equals(fixedValues, that.fixedValues) && Objects.equals(otherValues, that.otherValues);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(values);
+        return 31 * Arrays.hashCode(fixedValues) + otherValues.hashCode();
     }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.i18n;
+
+import net.pkhapps.vera.server.domain.base.Aggregate;
+import net.pkhapps.vera.server.domain.base.Identifier;
+import net.pkhapps.vera.server.domain.base.RepositoryIndex;
+import org.jspecify.annotations.Nullable;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/// [RepositoryIndex] for type-ahead searching of aggregates by the values of a [MultiLingualString].
+///
+/// All values are normalized (Unicode NFKC, lower-cased using the locale of the value, and with whitespace collapsed)
+/// and split into n-grams of length 1 to {@value #MAX_GRAM_LENGTH}. A search looks up the n-grams of the normalized
+/// search term, picks the aggregate IDs of the rarest one as candidates, and verifies the candidates against the
+/// normalized values. This means the search term is normalized once per search, and the values once per change.
+///
+/// Results are ranked so that exact matches come first, followed by values that start with the search term, values
+/// that contain a word that starts with the search term, and finally values that contain the search term anywhere.
+///
+/// @param <T>  the type of the aggregate
+/// @param <ID> the type of the aggregate ID
+public final class MultiLingualStringIndex<T extends Aggregate<ID, ?, ?>, ID extends Identifier> extends RepositoryIndex<T, ID> {
+
+    static final int MAX_GRAM_LENGTH = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Function<? super T, ? extends @Nullable MultiLingualString> valueExtractor;
+    private final Map<ID, List<String>> valuesById = new HashMap<>();
+    private final Map<String, Set<ID>> idsByGram = new HashMap<>();
+
+    /// Creates a new `MultiLingualStringIndex`.
+    ///
+    /// @param valueExtractor a function that extracts the multilingual string from an aggregate (aggregates without a
+    ///                       value are not indexed)
+    public MultiLingualStringIndex(Function<? super T, ? extends @Nullable MultiLingualString> valueExtractor) {
+        this.valueExtractor = valueExtractor;
+    }
+
+    /// Normalizes the given string for indexing and searching.
+    ///
+    /// @param value  the string to normalize
+    /// @param locale the locale to use for lower-casing
+    /// @return the normalized string
+    static String normalize(String value, Locale locale) {
+        var normalized = Normalizer.normalize(value, Normalizer.Form.NFKC).toLowerCase(locale);
+        var sb = new StringBuilder(normalized.length());
+        var whitespace = false;
+        for (int i = 0; i < normalized.length(); ++i) {
+            var c = normalized.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = !sb.isEmpty();
+            } else {
+                if (whitespace) {
+                    sb.append(' ');
+                    whitespace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    protected void add(T aggregate) {
+        var values = extractValues(aggregate);
+        lock.writeLock().lock();
+        try {
+            index(aggregate.id(), values);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void update(T aggregate) {
+        var values = extractValues(aggregate);
+        lock.writeLock().lock();
+        try {
+            var previous = valuesById.get(aggregate.id());
+            if (previous != null && !previous.equals(values)) {
+                index(aggregate.id(), values);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void remove(ID id) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void clear() {
+        lock.writeLock().lock();
+        try {
+            valuesById.clear();
+            idsByGram.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /// Searches for aggregates that have a value containing the given search term, ignoring case and differences in
+    /// whitespace.
+    ///
+    /// @param searchTerm the search term, must not be blank
+    /// @param limit      the maximum number of aggregates to return
+    /// @return an unmodifiable list of aggregates, best matches first
+    public List<T> search(String searchTerm, int limit) {
+        var term = normalize(searchTerm, Locale.ROOT);
+        if (term.isEmpty()) {
+            throw new IllegalArgumentException("Search term must not be blank");
+        }
+        if (limit < 1) {
+            return List.of();
+        }
+        // Max-heap of the best matches so far, worst match on top
+        var best = new PriorityQueue<Match<ID>>(Comparator.<Match<ID>>naturalOrder().reversed());
+        lock.readLock().lock();
+        try {
+            for (var id : candidates(term)) {
+                var match = match(id, term);
+                if (match != null) {
+                    best.offer(match);
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        var matches = new ArrayList<>(best);
+        Collections.sort(matches);
+        return resolve(matches.stream().map(Match::id).toList()).toList();
+    }
+
+    private record Match<ID>(ID id, int rank, String value) implements Comparable<Match<ID>> {
+
+        @Override
+        public int compareTo(Match<ID> o) {
+            var result = Integer.compare(rank, o.rank);
+            if (result == 0) {
+                result = Integer.compare(value.length(), o.value.length());
+            }
+            if (result == 0) {
+                result = value.compareTo(o.value);
+            }
+            if (result == 0) {
+                result = id.toString().compareTo(o.id.toString());
+            }
+            return result;
+        }
+    }
+
+    private Collection<ID> candidates(String term) {
+        if (term.length() <= MAX_GRAM_LENGTH) {
+            return idsByGram.getOrDefault(term, Set.of());
+        }
+        @Nullable Set<ID> smallest = null;
+        for (int i = 0; i + MAX_GRAM_LENGTH <= term.length(); ++i) {
+            var ids = idsByGram.get(term.substring(i, i + MAX_GRAM_LENGTH));
+            if (ids == null) {
+                return Set.of();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        // The candidates are verified against the values anyway, so there is no need to intersect all the sets.
+        return smallest == null ? Set.of() : smallest;
+    }
+
+    private @Nullable Match<ID> match(ID id, String term) {
+        var values = valuesById.get(id);
+        if (values == null) {
+            return null;
+        }
+        @Nullable Match<ID> best = null;
+        for (var value : values) {
+            var rank = rank(value, term);
+            if (rank >= 0) {
+                var match = new Match<>(id, rank, value);
+                if (best == null || match.compareTo(best) < 0) {
+                    best = match;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int rank(String value, String term) {
+        if (value.equals(term)) {
+            return 0;
+        }
+        if (value.startsWith(term)) {
+            return 1;
+        }
+        var index = value.indexOf(term);
+        if (index < 0) {
+            return -1;
+        }
+        for (; index >= 0; index = value.indexOf(term, index + 1)) {
+            if (!Character.isLetterOrDigit(value.charAt(index - 1))) {
+                return 2;
+            }
+        }
+        return 3;
+    }
+
+    private List<String> extractValues(T aggregate) {
+        var string = valueExtractor.apply(aggregate);
+        if (string == null) {
+            return List.of();
+        }
+        var values = new ArrayList<String>(string.size());
+        string.forEach((locale, value) -> {
+            var normalized = normalize(value, locale);
+            if (!normalized.isEmpty() && !values.contains(normalized)) {
+                values.add(normalized);
+            }
+        });
+        return values;
+    }
+
+    private void index(ID id, List<String> values) {
+        unlink(id);
+        valuesById.put(id, values);
+        for (var gram : grams(values)) {
+            idsByGram.computeIfAbsent(gram, _ -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void unlink(ID id) {
+        var previous = valuesById.remove(id);
+        if (previous != null) {
+            for (var gram : grams(previous)) {
+                var ids = idsByGram.get(gram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    idsByGram.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(List<String> values) {
+        var grams = new HashSet<String>();
+        for (var value : values) {
+            for (int i = 0; i < value.length(); ++i) {
+                for (int n = 1; n <= MAX_GRAM_LENGTH && i + n <= value.length(); ++n) {
+                    grams.add(value.substring(i, i + n));
+                }
+            }
+        }
+        return grams;
+    }
+}
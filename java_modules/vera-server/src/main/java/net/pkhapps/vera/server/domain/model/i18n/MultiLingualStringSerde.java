@@ -20,13 +20,21 @@ import net.pkhapps.vera.server.util.Deferred;
 import net.pkhapps.vera.server.util.serde.Input;
 import net.pkhapps.vera.server.util.serde.Output;
 import net.pkhapps.vera.server.util.serde.Serde;
+import net.pkhapps.vera.server.util.serde.SerdeException;
+import org.jspecify.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /// [Serde] for [MultiLingualString].
+///
+/// Each entry starts with a one-byte locale code. The codes of the [fixed locales][MultiLingualString#FIXED_LOCALES]
+/// are their slots, so they need no language tag. Other locales are written with [#OTHER_LOCALE] followed by the
+/// language tag. Deserialized instances are [interned][MultiLingualString#intern(MultiLingualString)].
 public final class MultiLingualStringSerde implements Serde<MultiLingualString> {
 
+    private static final byte OTHER_LOCALE = -1;
     private static final Deferred<MultiLingualStringSerde> INSTANCE = new Deferred<>(MultiLingualStringSerde::new);
 
     public static MultiLingualStringSerde instance() {
@@ -39,7 +47,15 @@ public final class MultiLingualStringSerde implements Serde<MultiLingualString>
     @Override
     public void writeTo(MultiLingualString object, Output output) {
         output.writeInteger(object.size());
-        object.forEach((locale, value) -> {
+        for (int slot = 0; slot < MultiLingualString.FIXED_LOCALES.size(); slot++) {
+            var value = object.fixedValue(slot);
+            if (value != null) {
+                output.writeByte((byte) slot);
+                output.writeString(value);
+            }
+        }
+        object.otherValues().forEach((locale, value) -> {
+            output.writeByte(OTHER_LOCALE);
             output.writeString(locale.toLanguageTag());
             output.writeString(value);
         });
@@ -48,10 +64,22 @@ public final class MultiLingualStringSerde implements Serde<MultiLingualString>
     @Override
     public MultiLingualString readFrom(Input input) {
         var size = input.readInteger();
-        var entries = new HashMap<Locale, String>(size);
+        var fixedValues = new String[MultiLingualString.FIXED_LOCALES.size()];
+        @Nullable Map<Locale, String> otherValues = null;
         for (int i = 0; i < size; ++i) {
-            entries.put(Locale.forLanguageTag(input.readString()), input.readString());
+            var code = input.readByte();
+            if (code == OTHER_LOCALE) {
+                if (otherValues == null) {
+                    otherValues = new HashMap<>();
+                }
+                otherValues.put(Locale.forLanguageTag(input.readString()), input.readString());
+            } else if (code >= 0 && code < fixedValues.length) {
+                fixedValues[code] = input.readString();
+            } else {
+                throw new SerdeException("Unknown locale code: " + code);
+            }
         }
-        return new MultiLingualString(entries);
+        return MultiLingualString.intern(new MultiLingualString(fixedValues,
+                otherValues == null ? Map.of() : Map.copyOf(otherValues)));
     }
 }
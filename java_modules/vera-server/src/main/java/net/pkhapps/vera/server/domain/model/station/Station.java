@@ -16,8 +16,8 @@
 
 package net.pkhapps.vera.server.domain.model.station;
 
-import net.pkhapps.vera.server.domain.base.Aggregate;
 import net.pkhapps.vera.server.domain.base.AggregateDeltaBuilder;
+import net.pkhapps.vera.server.domain.base.ImmutableStateAggregate;
 import net.pkhapps.vera.server.domain.model.geo.Wgs84Point;
 import net.pkhapps.vera.server.domain.model.i18n.MultiLingualString;
 import net.pkhapps.vera.server.util.wal.Durability;
@@ -27,51 +27,39 @@ import java.util.function.BiConsumer;
 
 /// Aggregate representing a station.
 ///
+/// The accessors of this class each read the current state separately. Use [#state()] to read several fields
+/// consistently.
+///
 /// @see StationRepository
-public final class Station extends Aggregate<StationId, Station.StationState, Station.StationWalEvent> {
-
-    private volatile MultiLingualString name;
-    private volatile Wgs84Point location;
-    private volatile String note;
+public final class Station extends ImmutableStateAggregate<StationId, Station.StationState, Station.StationWalEvent> {
 
     Station(WriteAheadLog wal, StationId stationId, MultiLingualString name, Wgs84Point location) {
-        super(wal, stationId);
-        this.name = name;
-        this.location = location;
-        this.note = "";
+        super(wal, stationId, new StationState(name, location, ""));
     }
 
     Station(WriteAheadLog wal, StationId stationId, StationState state) {
-        super(wal, stationId);
-        this.name = state.name();
-        this.location = state.location();
-        this.note = state.note();
+        super(wal, stationId, state);
     }
 
     public MultiLingualString name() {
-        return name;
+        return state().name();
     }
 
     public Wgs84Point location() {
-        return location;
+        return state().location();
     }
 
     public String note() {
-        return note;
-    }
-
-    @Override
-    protected StationState toState() {
-        return new StationState(name, location, note);
+        return state().note();
     }
 
     @Override
-    protected void applyEvent(StationWalEvent event) {
-        switch (event) {
-            case StationWalEvent.SetName setName -> this.name = setName.name();
-            case StationWalEvent.SetLocation setLocation -> this.location = setLocation.location();
-            case StationWalEvent.SetNote setNote -> this.note = setNote.note();
-        }
+    protected StationState apply(StationState state, StationWalEvent event) {
+        return switch (event) {
+            case StationWalEvent.SetName setName -> new StationState(setName.name(), state.location(), state.note());
+            case StationWalEvent.SetLocation setLocation -> new StationState(state.name(), setLocation.location(), state.note());
+            case StationWalEvent.SetNote setNote -> new StationState(state.name(), state.location(), setNote.note());
+        };
     }
 
     public interface Mutator {
@@ -83,23 +71,24 @@ public final class Station extends Aggregate<StationId, Station.StationState, St
     }
 
     public boolean update(BiConsumer<Station, Mutator> action) {
+        var current = state();
         var deltaBuilder = new AggregateDeltaBuilder<StationWalEvent>();
         action.accept(this, new Mutator() {
             @Override
             public Mutator setName(MultiLingualString name) {
-                deltaBuilder.update(name, Station.this.name, StationWalEvent.SetName::new);
+                deltaBuilder.update(name, current.name(), StationWalEvent.SetName::new);
                 return this;
             }
 
             @Override
             public Mutator setLocation(Wgs84Point location) {
-                deltaBuilder.update(location, Station.this.location, StationWalEvent.SetLocation::new);
+                deltaBuilder.update(location, current.location(), StationWalEvent.SetLocation::new);
                 return this;
             }
 
             @Override
             public Mutator setNote(String note) {
-                deltaBuilder.update(note, Station.this.note, StationWalEvent.SetNote::new);
+                deltaBuilder.update(note, current.note(), StationWalEvent.SetNote::new);
                 return this;
             }
         });
@@ -124,7 +113,11 @@ public final class Station extends Aggregate<StationId, Station.StationState, St
     }
 
     /// Record representing the state of a [Station].
-    protected record StationState(
+    ///
+    /// @param name     the name of the station
+    /// @param location the location of the station
+    /// @param note     a free-form note about the station
+    public record StationState(
             MultiLingualString name,
             Wgs84Point location,
             String note
@@ -25,6 +25,10 @@ public final class StationId extends NanoIdentifier {
         super(id);
     }
 
+    private StationId(long high, long low) {
+        super(high, low);
+    }
+
     private StationId() {
     }
 
@@ -37,6 +41,18 @@ public final class StationId extends NanoIdentifier {
         return new StationId(id);
     }
 
+    /// Creates a new `StationId` from the binary representation of a Nano ID.
+    ///
+    /// @param high the high bits of the Nano ID
+    /// @param low  the low bits of the Nano ID
+    /// @return a new `StationId`
+    /// @throws IllegalArgumentException if the bits are not a valid Nano ID
+    /// @see #high()
+    /// @see #low()
+    public static StationId of(long high, long low) {
+        return new StationId(high, low);
+    }
+
     /// Creates a new `StationId` from a random Nano ID.
     ///
     /// @return a new `StationId`
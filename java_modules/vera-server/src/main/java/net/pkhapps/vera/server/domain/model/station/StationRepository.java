@@ -17,16 +17,37 @@
 package net.pkhapps.vera.server.domain.model.station;
 
 import net.pkhapps.vera.server.domain.base.DuplicateIdentifierException;
+import net.pkhapps.vera.server.domain.base.MemoryBudget;
+import net.pkhapps.vera.server.domain.base.NanoIdentifier;
 import net.pkhapps.vera.server.domain.base.Repository;
 import net.pkhapps.vera.server.domain.base.RepositoryAtCapacityException;
+import net.pkhapps.vera.server.domain.base.SortedIndex;
 import net.pkhapps.vera.server.domain.model.geo.Wgs84Point;
+import net.pkhapps.vera.server.domain.model.geo.Wgs84PointIndex;
 import net.pkhapps.vera.server.domain.model.i18n.MultiLingualString;
+import net.pkhapps.vera.server.domain.model.i18n.MultiLingualStringIndex;
+import net.pkhapps.vera.server.util.Locales;
 import net.pkhapps.vera.server.util.UnexpectedException;
 import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+import org.jspecify.annotations.Nullable;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /// Repository of [Station] aggregates.
 public final class StationRepository extends Repository<Station, StationId, Station.StationState, Station.StationWalEvent> {
 
+    private final Wgs84PointIndex<Station, StationId> locationIndex = registerIndex(new Wgs84PointIndex<>(Station::location));
+    private final MultiLingualStringIndex<Station, StationId> nameIndex = registerIndex(new MultiLingualStringIndex<>(Station::name));
+    private final Map<Locale, NameOrder> nameOrders = Map.of(
+            Locales.FINNISH, new NameOrder(Locales.FINNISH),
+            Locales.SWEDISH, new NameOrder(Locales.SWEDISH)
+    );
+
     /// Creates a new `StationRepository`.
     ///
     /// @param wal the WAL to store stations in
@@ -35,6 +56,16 @@ public final class StationRepository extends Repository<Station, StationId, Stat
         super(wal, Station.class);
     }
 
+    /// Creates a new `StationRepository` with a memory budget.
+    ///
+    /// @param wal                 the WAL to store stations in
+    /// @param memoryBudgetInBytes the maximum estimated memory use of the stations, in bytes
+    /// @see #estimatedMemoryUsage()
+    public StationRepository(WriteAheadLog wal, long memoryBudgetInBytes) {
+        super(wal, Station.class);
+        setMemoryBudget(new MemoryBudget<>(StationStateSerde.instance(), () -> memoryBudgetInBytes));
+    }
+
     @Override
     protected Station createFromState(StationId stationId, Station.StationState state) {
         return new Station(wal(), stationId, state);
@@ -60,4 +91,115 @@ public final class StationRepository extends Repository<Station, StationId, Stat
         }
         throw new UnexpectedException("Failed to generate a unique StationId after multiple attempts. Last attempted: " + id);
     }
+
+    /// Data needed to create a new [Station].
+    ///
+    /// @param name     the name of the station
+    /// @param location the location of the station
+    public record NewStation(MultiLingualString name, Wgs84Point location) {
+    }
+
+    /// Creates new [Station]s and adds them all to the repository in a single WAL write. Either all stations are
+    /// created, or none of them.
+    ///
+    /// @param newStations the stations to create
+    /// @return the created stations, in the same order as `newStations`
+    /// @throws RepositoryAtCapacityException if the repository does not have room for all the stations
+    public List<Station> createAll(List<NewStation> newStations) {
+        int attemptsLeft = 5;
+        while (true) {
+            var stations = newStations.stream()
+                    .map(newStation -> new Station(wal(), StationId.randomStationId(), newStation.name(), newStation.location()))
+                    .toList();
+            try {
+                return insertAll(stations);
+            } catch (DuplicateIdentifierException ex) {
+                if (--attemptsLeft == 0) {
+                    throw new UnexpectedException("Failed to generate unique StationIds after multiple attempts");
+                }
+                log.debug("Duplicate StationId in batch, retrying...");
+            }
+        }
+    }
+
+    /// Finds the `k` stations nearest to the given point, nearest first.
+    ///
+    /// @param point the point to search from (e.g. the location of an incident)
+    /// @param k     the maximum number of stations to return
+    /// @return an unmodifiable list of at most `k` stations and their distances, sorted by distance
+    public List<Wgs84PointIndex.Neighbor<Station>> findNearest(Wgs84Point point, int k) {
+        return locationIndex.findNearest(point, k);
+    }
+
+    /// Finds all stations within the given great-circle distance of the given point, nearest first.
+    ///
+    /// @param point          the point to search from (e.g. the location of an incident)
+    /// @param radiusInMeters the maximum distance from `point`
+    /// @return an unmodifiable list of stations and their distances, sorted by distance
+    public List<Wgs84PointIndex.Neighbor<Station>> findWithinRadius(Wgs84Point point, double radiusInMeters) {
+        return locationIndex.findWithinRadius(point, radiusInMeters);
+    }
+
+    /// Searches for stations whose name contains the given search term in any language, ignoring case. Exact matches
+    /// come first, then prefix matches, and then other matches.
+    ///
+    /// @param searchTerm the search term, must not be blank
+    /// @param limit      the maximum number of stations to return
+    /// @return an unmodifiable list of stations, best matches first
+    public List<Station> searchByName(String searchTerm, int limit) {
+        return nameIndex.search(searchTerm, limit);
+    }
+
+    /// Lists stations sorted by their names in the given locale, and then by their IDs. Stations without a name in the
+    /// given locale come first.
+    ///
+    /// This uses keyset pagination: to get the next page, pass the [StationSortKey] of the last station of the
+    /// previous page as `after`. Every page costs `O(log n + limit)`, regardless of how far into the listing it is.
+    ///
+    /// @param locale the sort locale, either [Locales#FINNISH] or [Locales#SWEDISH]
+    /// @param after  the sort key to start after, or `null` to start from the beginning
+    /// @param limit  the maximum number of stations to return
+    /// @return an unmodifiable list of stations, in sort order
+    /// @throws IllegalArgumentException if the locale is not supported
+    public List<Station> listSortedByName(Locale locale, @Nullable StationSortKey after, int limit) {
+        var nameOrder = nameOrders.get(locale);
+        if (nameOrder == null) {
+            throw new IllegalArgumentException("Unsupported sort locale: " + locale);
+        }
+        return nameOrder.list(after, limit);
+    }
+
+    private final class NameOrder {
+
+        private final Locale locale;
+        private final Collator collator;
+        private final SortedIndex<NameKey, Station, StationId> index;
+
+        NameOrder(Locale locale) {
+            this.locale = locale;
+            this.collator = Collator.getInstance(locale);
+            this.index = registerIndex(SortedIndex.of(this::keyOf, Comparator
+                    .comparing(NameKey::collationKey)
+                    .thenComparing(NameKey::id, NanoIdentifier.BINARY_ORDER)));
+        }
+
+        NameKey keyOf(Station station) {
+            return toKey(StationSortKey.of(station, locale));
+        }
+
+        NameKey toKey(StationSortKey sortKey) {
+            return new NameKey(collator.getCollationKey(sortKey.name()), sortKey.id());
+        }
+
+        List<Station> list(@Nullable StationSortKey after, int limit) {
+            if (limit < 1) {
+                return List.of();
+            }
+            var stations = after == null ? index.ascending(limit) : index.after(toKey(after), limit);
+            return stations.toList();
+        }
+    }
+
+    private record NameKey(CollationKey collationKey, StationId id) {
+    }
 }
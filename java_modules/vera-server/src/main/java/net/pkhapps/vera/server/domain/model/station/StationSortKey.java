@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.station;
+
+import java.util.Locale;
+
+/// Position of a [Station] in a listing sorted by name, used as a keyset cursor.
+///
+/// @param name the name of the station in the sort locale (an empty string if the station has no name in that locale)
+/// @param id   the ID of the station, used to break ties between stations with the same name
+/// @see StationRepository#listSortedByName(Locale, StationSortKey, int)
+public record StationSortKey(String name, StationId id) {
+
+    /// Creates a sort key for the given station.
+    ///
+    /// @param station the station
+    /// @param locale  the sort locale
+    /// @return a new `StationSortKey`
+    public static StationSortKey of(Station station, Locale locale) {
+        return new StationSortKey(station.name().getOrDefault(locale, ""), station.id());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.port.admin;
+
+import net.pkhapps.vera.server.domain.base.NanoIdentifier;
+import net.pkhapps.vera.server.domain.model.station.StationId;
+import net.pkhapps.vera.server.domain.model.station.StationSortKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/// Encodes and decodes the opaque continuation tokens of station listings.
+///
+/// A token is the URL-safe Base64 encoding of the sort order, the ID and the name of the last station of the previous
+/// page. Clients must not make any assumptions about the format.
+final class ContinuationToken {
+
+    private static final char SEPARATOR = ':';
+
+    private ContinuationToken() {
+    }
+
+    /// Decoded continuation token.
+    ///
+    /// @param sortOrder the sort order the token was created for
+    /// @param after     the sort key of the last station of the previous page
+    record Decoded(StationSortOrder sortOrder, StationSortKey after) {
+    }
+
+    /// Encodes a continuation token.
+    ///
+    /// @param sortOrder the sort order of the listing
+    /// @param after     the sort key of the last station of the current page
+    /// @return the token
+    static String encode(StationSortOrder sortOrder, StationSortKey after) {
+        var plain = sortOrder.name() + SEPARATOR + after.id() + after.name();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /// Decodes a continuation token.
+    ///
+    /// @param token the token to decode
+    /// @return the decoded token
+    /// @throws IllegalArgumentException if the token is invalid
+    static Decoded decode(String token) {
+        try {
+            var plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            var separator = plain.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid continuation token");
+            }
+            var sortOrder = StationSortOrder.valueOf(plain.substring(0, separator));
+            var idEnd = separator + 1 + NanoIdentifier.LENGTH;
+            var id = StationId.of(plain.substring(separator + 1, idEnd));
+            return new Decoded(sortOrder, new StationSortKey(plain.substring(idEnd), id));
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Invalid continuation token", ex);
+        }
+    }
+}
@@ -18,6 +18,8 @@ package net.pkhapps.vera.server.port.admin;
 
 import net.pkhapps.vera.server.domain.model.geo.Wgs84Point;
 
+import java.util.Objects;
+
 /// Data structure containing the minimum data required to create a new station.
 ///
 /// @param nameSv   the name of the station in Swedish
@@ -28,4 +30,10 @@ public record CreateStationSpec(
         String nameFi,
         Wgs84Point location
 ) {
+
+    public CreateStationSpec {
+        Objects.requireNonNull(nameSv, "nameSv must not be null");
+        Objects.requireNonNull(nameFi, "nameFi must not be null");
+        Objects.requireNonNull(location, "location must not be null");
+    }
 }
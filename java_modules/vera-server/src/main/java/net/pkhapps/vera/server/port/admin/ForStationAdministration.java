@@ -20,6 +20,7 @@ import net.pkhapps.vera.server.domain.model.i18n.MultiLingualString;
 import net.pkhapps.vera.server.domain.model.station.Station;
 import net.pkhapps.vera.server.domain.model.station.StationId;
 import net.pkhapps.vera.server.domain.model.station.StationRepository;
+import net.pkhapps.vera.server.domain.model.station.StationSortKey;
 import net.pkhapps.vera.server.security.AccessControl;
 import net.pkhapps.vera.server.security.AuditLogger;
 import net.pkhapps.vera.server.security.Permission;
@@ -28,7 +29,6 @@ import org.jspecify.annotations.Nullable;
 
 import java.security.Principal;
 import java.util.List;
-import java.util.function.Predicate;
 
 /// Port for administrating [Station]s. This port is designed to be used by CRUD-like user interfaces.
 public final class ForStationAdministration {
@@ -50,31 +50,54 @@ public final class ForStationAdministration {
         this.auditLogger = new AdminAuditLogger(auditLogger);
     }
 
-    /// Lists all stations matching the given `searchTerm`.
+    /// Searches for stations whose name contains the given `searchTerm` in any language, best matches first.
     ///
-    /// @param searchTerm the search term, or `null` to include all stations
+    /// @param searchTerm the search term, must not be blank
     /// @param limit      the maximum number of stations to return
     /// @param principal  the principal performing the operation
     /// @return a list of [StationDto]s
+    /// @throws IllegalArgumentException                               if the search term is blank
     /// @throws net.pkhapps.vera.server.security.AccessDeniedException if the principal lacks the [Permission#ADMIN_STATIONS] permission
-    public List<StationDto> list(@Nullable String searchTerm, int limit, Principal principal) {
+    public List<StationDto> search(String searchTerm, int limit, Principal principal) {
         accessControl.requirePermission(principal, Permission.ADMIN_STATIONS);
-        return stationRepository.stream()
-                .filter(nameContains(searchTerm)) // TODO Sort
-                .limit(limit)
+        return stationRepository.searchByName(searchTerm, limit).stream()
                 .map(this::toDto)
                 .toList();
     }
 
-    private Predicate<Station> nameContains(@Nullable String searchTerm) {
-        if (searchTerm == null) {
-            return s -> true;
-        } else {
-            return station -> station.name().containsValue(s -> s.toLowerCase().contains(searchTerm.toLowerCase()));
+    /// Lists stations in the given sort order, one page at a time.
+    ///
+    /// @param sortOrder         the sort order
+    /// @param continuationToken the continuation token of the previous page, or `null` to get the first page
+    /// @param limit             the maximum number of stations to return
+    /// @param principal         the principal performing the operation
+    /// @return a [StationPageDto]
+    /// @throws IllegalArgumentException                               if the limit is not positive, or the continuation token is invalid or was created for another sort order
+    /// @throws net.pkhapps.vera.server.security.AccessDeniedException if the principal lacks the [Permission#ADMIN_STATIONS] permission
+    public StationPageDto list(StationSortOrder sortOrder, @Nullable String continuationToken, int limit,
+                               Principal principal) {
+        accessControl.requirePermission(principal, Permission.ADMIN_STATIONS);
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
         }
+        @Nullable StationSortKey after = null;
+        if (continuationToken != null) {
+            var decoded = ContinuationToken.decode(continuationToken);
+            if (decoded.sortOrder() != sortOrder) {
+                throw new IllegalArgumentException("Continuation token was created for another sort order");
+            }
+            after = decoded.after();
+        }
+        // Fetch one extra station to find out whether there is a next page
+        var stations = stationRepository.listSortedByName(sortOrder.locale(), after, limit + 1);
+        if (stations.size() <= limit) {
+            return new StationPageDto(stations.stream().map(this::toDto).toList(), null);
+        }
+        var page = stations.subList(0, limit);
+        var nextToken = ContinuationToken.encode(sortOrder, StationSortKey.of(page.getLast(), sortOrder.locale()));
+        return new StationPageDto(page.stream().map(this::toDto).toList(), nextToken);
     }
 
-
     /// Fetches the station with the given ID, throwing an exception if the station does not exist.
     ///
     /// @param id        the ID of the station to fetch
@@ -106,6 +129,30 @@ public final class ForStationAdministration {
         return toDto(aggregate);
     }
 
+    /// Creates many new stations at once. This is intended for seeding and migrating data, and is considerably faster
+    /// than calling [#create(CreateStationSpec, Principal)] for every station. Either all stations are created, or
+    /// none of them.
+    ///
+    /// @param specs     [CreateStationSpec]s with initial data
+    /// @param principal the principal performing the operation
+    /// @return the created [StationDto]s, in the same order as `specs`
+    /// @throws net.pkhapps.vera.server.domain.base.RepositoryAtCapacityException if there is no room for all the stations
+    /// @throws net.pkhapps.vera.server.security.AccessDeniedException            if the principal lacks the [Permission#ADMIN_STATIONS] permission
+    public List<StationDto> createAll(List<CreateStationSpec> specs, Principal principal) {
+        accessControl.requirePermission(principal, Permission.ADMIN_STATIONS);
+        var stations = stationRepository.createAll(specs.stream()
+                .map(spec -> new StationRepository.NewStation(
+                        MultiLingualString.of(
+                                Locales.SWEDISH, spec.nameSv(),
+                                Locales.FINNISH, spec.nameFi()
+                        ),
+                        spec.location()
+                ))
+                .toList());
+        stations.forEach(station -> auditLogger.create(principal, station));
+        return stations.stream().map(this::toDto).toList();
+    }
+
     /// Updates an existing station, throwing an exception if the station does not exist.
     ///
     /// @param id        the ID of the station to update
@@ -136,12 +183,13 @@ public final class ForStationAdministration {
     }
 
     private StationDto toDto(Station station) {
+        var state = station.state();
         return new StationDto(
                 station.id(),
-                station.name().getOrDefault(Locales.SWEDISH, ""),
-                station.name().getOrDefault(Locales.FINNISH, ""),
-                station.location(),
-                station.note()
+                state.name().getOrDefault(Locales.SWEDISH, ""),
+                state.name().getOrDefault(Locales.FINNISH, ""),
+                state.location(),
+                state.note()
         );
     }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.port.admin;
+
+import net.pkhapps.vera.server.util.Locales;
+
+import java.util.Locale;
+
+/// Sort orders supported when listing stations.
+public enum StationSortOrder {
+    /// Sort by the Swedish name of the station.
+    NAME_SV(Locales.SWEDISH),
+    /// Sort by the Finnish name of the station.
+    NAME_FI(Locales.FINNISH);
+
+    private final Locale locale;
+
+    StationSortOrder(Locale locale) {
+        this.locale = locale;
+    }
+
+    /// Returns the locale of the name to sort by.
+    ///
+    /// @return the sort locale
+    public Locale locale() {
+        return locale;
+    }
+}
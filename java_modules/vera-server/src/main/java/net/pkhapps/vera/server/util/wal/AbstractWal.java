@@ -107,10 +107,15 @@ public abstract class AbstractWal implements WriteAheadLog, WriteAheadLogControl
     }
 
     /// Applies the given `event` to all eligible [net.pkhapps.vera.server.util.wal.WriteAheadLog.EventConsumer]s.
+    /// A [CompositeWalEvent] is unwrapped, and its events are applied one by one.
     ///
     /// @param event the WAL event to apply
     protected final void applyEvent(WalEvent event) {
-        eventConsumers.forEach(eventConsumerEntry -> eventConsumerEntry.tryApply(event));
+        if (event instanceof CompositeWalEvent composite) {
+            composite.forEach(this::applyEvent);
+        } else {
+            eventConsumers.forEach(eventConsumerEntry -> eventConsumerEntry.tryApply(event));
+        }
     }
 
     private record SnapshotProducerEntry<S extends WalSnapshot>(SnapshotProducer<S> producer) {
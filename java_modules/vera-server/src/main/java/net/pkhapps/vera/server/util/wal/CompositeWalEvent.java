@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.util.wal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/// WAL event that bundles several other WAL events into a single WAL record.
+///
+/// Because the bundled events are written as one record with one checksum, they are also replayed all-or-nothing: if
+/// the application crashes while the record is being written, the incomplete record is discarded during recovery and
+/// none of the bundled events are replayed. [AbstractWal] unwraps composite events when replaying, so event consumers
+/// only ever see the bundled events, in the order they were added.
+///
+/// Composite events are serialized by a built-in serde that [FileSystemWal] always registers; there is no need to
+/// register a [WalSerde] for this class.
+public final class CompositeWalEvent implements WalEvent {
+
+    private final List<WalEvent> events;
+
+    private CompositeWalEvent(List<WalEvent> events) {
+        this.events = events;
+    }
+
+    /// Creates a new `CompositeWalEvent`. Nested composite events are flattened.
+    ///
+    /// @param events the events to bundle
+    /// @return a new `CompositeWalEvent`
+    /// @throws IllegalArgumentException if `events` is empty
+    public static CompositeWalEvent of(List<? extends WalEvent> events) {
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("Composite event must contain at least one event");
+        }
+        var flattened = new ArrayList<WalEvent>(events.size());
+        for (var event : events) {
+            if (event instanceof CompositeWalEvent composite) {
+                flattened.addAll(composite.events);
+            } else {
+                flattened.add(event);
+            }
+        }
+        return new CompositeWalEvent(List.copyOf(flattened));
+    }
+
+    /// Performs the given `action` for each bundled event, in order.
+    ///
+    /// @param action the action to perform for each event
+    public void forEach(Consumer<? super WalEvent> action) {
+        events.forEach(action);
+    }
+
+    /// Returns the number of bundled events.
+    ///
+    /// @return the number of events
+    public int size() {
+        return events.size();
+    }
+
+    @Override
+    public String toString() {
+        return "%s[size=%d]".formatted(getClass().getSimpleName(), events.size());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.util.wal;
+
+import net.pkhapps.vera.server.util.serde.Input;
+import net.pkhapps.vera.server.util.serde.Output;
+import net.pkhapps.vera.server.util.serde.SizingOutput;
+
+import java.util.ArrayList;
+
+/// Built-in [WalSerde] for [CompositeWalEvent]s. The bundled events are serialized by their own serdes and written
+/// with a length prefix:
+///
+/// `[header:8][count:4]([length:4][event:length])*`
+///
+/// This class has package visibility because it is registered automatically by [WalSerdeManager].
+final class CompositeWalEventSerde extends WalSerde<CompositeWalEvent> {
+
+    /// The serde ID of this serde. Serde IDs below `0x000100` are reserved for the WAL itself.
+    static final int SERDE_ID = 0x000001;
+
+    private final WalSerdeManager serdeManager;
+
+    CompositeWalEventSerde(WalSerdeManager serdeManager) {
+        super(SERDE_ID);
+        this.serdeManager = serdeManager;
+    }
+
+    @Override
+    public boolean supports(Object object) {
+        return object instanceof CompositeWalEvent;
+    }
+
+    @Override
+    public void writeTo(CompositeWalEvent object, Output output) {
+        writeHeader(output);
+        output.writeInteger(object.size());
+        object.forEach(event -> {
+            var serde = serdeManager.findSerde(event);
+            var sizingOutput = new SizingOutput();
+            serde.writeTo(event, sizingOutput);
+            output.writeInteger(sizingOutput.size());
+            serde.writeTo(event, output);
+        });
+    }
+
+    @Override
+    public CompositeWalEvent readFrom(Input input) {
+        verifyHeader(input);
+        var count = input.readInteger();
+        var events = new ArrayList<WalEvent>(count);
+        for (int i = 0; i < count; ++i) {
+            var bytes = new byte[input.readInteger()];
+            input.readBytes(bytes);
+            events.add(serdeManager.deserialize(bytes, 0, bytes.length));
+        }
+        return CompositeWalEvent.of(events);
+    }
+}
@@ -17,6 +17,7 @@
 package net.pkhapps.vera.server.util.wal;
 
 import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -32,6 +33,11 @@ public class FileSystemWal extends AbstractWal implements AutoCloseable {
     private final WalSerdeManager serdeManager;
     private final FileSystemWalMetadataStore metadataStore;
     private WalFile.WritableWalFile currentWalFile;
+    private final boolean cleanShutdown;
+    private boolean acceptingWrites = true; // Guarded by this
+    private boolean closed; // Guarded by this
+    /// Held shared by appends from before the write until the event has been applied, and exclusively by snapshots.
+    private final ReentrantReadWriteLock snapshotGate = new ReentrantReadWriteLock();
 
     /// Creates a new `FileSystemWal`.
     ///
@@ -47,26 +53,108 @@ public class FileSystemWal extends AbstractWal implements AutoCloseable {
     public FileSystemWal(Path directory, Iterable<WalSerdeRegistrator> walSerdeRegistrators) {
         serdeManager = new WalSerdeManager(walSerdeRegistrators);
         metadataStore = new FileSystemWalMetadataStore(directory);
+        // The marker is cleared before anything is written, so that a crash after this point results in a full replay
+        cleanShutdown = metadataStore.clearCleanShutdown();
         currentWalFile = WalFile.writable(metadataStore.latestWalFile(), metadataStore.firstRecordNumberOfLatestWalFile(), nonRecoverableErrorHandler);
     }
 
+    /// {@inheritDoc}
+    ///
+    /// Records are written while holding the lock of this WAL, but the `fsync` of [Durability#IMMEDIATE] is waited on
+    /// after the lock has been released. Concurrent immediate appends are therefore group-committed: they share a
+    /// single `fsync` instead of queueing up behind each other's.
+    ///
+    /// @throws WalStateException if the WAL is being shut down or has been closed
     @Override
     public <E extends WalEvent> void append(E event, Durability durability) {
+        append(event, durability, () -> {
+        });
+    }
+
+    /// {@inheritDoc}
+    ///
+    /// Snapshots wait until every event that has been written has also been applied, and appends wait for a snapshot
+    /// in progress to finish.
+    ///
+    /// @throws WalStateException if the WAL is being shut down or has been closed
+    @Override
+    public <E extends WalEvent> void append(E event, Durability durability, Runnable apply) {
         var serialized = serdeManager.serialize(event);
-        synchronized (this) {
-            try {
-                currentWalFile.write(serialized.bytes(), serialized.offset(), serialized.length(), durability);
-            } catch (Exception ex) {
-                nonRecoverableErrorHandler.accept(ex);
+        snapshotGate.readLock().lock();
+        try {
+            WalFile.WritableWalFile walFile;
+            long recordNumber;
+            synchronized (this) {
+                if (!acceptingWrites) {
+                    throw new WalStateException("WAL is not accepting writes");
+                }
+                walFile = currentWalFile;
+                try {
+                    recordNumber = walFile.write(serialized.bytes(), serialized.offset(), serialized.length(),
+                            durability == Durability.IMMEDIATE ? Durability.NONE : durability);
+                } catch (Exception ex) {
+                    nonRecoverableErrorHandler.accept(ex);
+                    return;
+                }
             }
+            if (durability == Durability.IMMEDIATE) {
+                try {
+                    walFile.awaitForced(recordNumber);
+                } catch (Exception ex) {
+                    nonRecoverableErrorHandler.accept(ex);
+                    return;
+                }
+            }
+            apply.run();
+        } finally {
+            snapshotGate.readLock().unlock();
         }
     }
 
+    /// Closes the WAL without taking a snapshot. The next replay will replay every event written since the latest
+    /// snapshot.
+    ///
+    /// @see #shutdown()
     @Override
     public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        acceptingWrites = false;
+        closed = true;
         currentWalFile.close();
     }
 
+    /// Shuts down the WAL gracefully. New appends are rejected, appends that are already in progress are waited for
+    /// until their events have been both written and applied, a final snapshot is taken, the WAL is closed, and a
+    /// clean-shutdown marker is stored. The next [#replay()] only loads the snapshot, without replaying any events.
+    public void shutdown() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            log.info("Shutting down WAL");
+            acceptingWrites = false;
+        }
+        // Appends hold the gate from before the write until the apply, so this drains them
+        snapshotGate.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                doTakeSnapshot();
+                close();
+                metadataStore.markCleanShutdown();
+                log.info("WAL shut down cleanly");
+            }
+        } catch (Exception ex) {
+            nonRecoverableErrorHandler.accept(ex);
+        } finally {
+            snapshotGate.writeLock().unlock();
+        }
+    }
+
     @Override
     public synchronized void replay() {
         log.info("Starting replay");
@@ -79,6 +167,11 @@ public class FileSystemWal extends AbstractWal implements AutoCloseable {
                 });
             }
             notifyEventReplayStart();
+            if (cleanShutdown && currentWalFile.getNextRecordNumber() == metadataStore.firstRecordNumberOfLatestWalFile()) {
+                // The shutdown snapshot contains everything, and the WAL file that follows it has not been written to
+                log.info("WAL was shut down cleanly, skipping event replay");
+                return;
+            }
             metadataStore.forEachWalFileSinceLatestSnapshot(walFile -> {
                 try (var wal = WalFile.readOnly(walFile)) {
                     wal.replayAll(walRecord -> {
@@ -92,25 +185,38 @@ public class FileSystemWal extends AbstractWal implements AutoCloseable {
         }
     }
 
+    /// {@inheritDoc}
+    ///
+    /// Waits for appends whose events have been written but not yet applied, and holds off new appends until the
+    /// snapshot has been stored.
     @Override
-    public synchronized void takeSnapshot() {
+    public void takeSnapshot() {
+        snapshotGate.writeLock().lock();
         try {
-            Path tempSnapshotFile = metadataStore.createTemporarySnapshotFile();
-            log.info("Taking new snapshot into {}", tempSnapshotFile);
-            var count = new AtomicInteger(0);
-            try (var file = WalFile.writable(tempSnapshotFile, 1L, nonRecoverableErrorHandler)) {
-                takeSnapshot(snapshot -> {
-                    var serialized = serdeManager.serialize(snapshot);
-                    file.write(serialized.bytes(), serialized.offset(), serialized.length(), Durability.NONE);
-                    count.incrementAndGet();
-                });
+            synchronized (this) {
+                doTakeSnapshot();
             }
-            log.info("Stored {} snapshot entries in {}", count.get(), tempSnapshotFile);
-            metadataStore.storeNewSnapshotFile(tempSnapshotFile, currentWalFile.getNextRecordNumber());
-            currentWalFile.close();
-            currentWalFile = WalFile.writable(metadataStore.latestWalFile(), metadataStore.firstRecordNumberOfLatestWalFile(), nonRecoverableErrorHandler);
         } catch (Exception ex) {
             nonRecoverableErrorHandler.accept(ex);
+        } finally {
+            snapshotGate.writeLock().unlock();
+        }
+    }
+
+    private void doTakeSnapshot() throws Exception {
+        Path tempSnapshotFile = metadataStore.createTemporarySnapshotFile();
+        log.info("Taking new snapshot into {}", tempSnapshotFile);
+        var count = new AtomicInteger(0);
+        try (var file = WalFile.writable(tempSnapshotFile, 1L, nonRecoverableErrorHandler)) {
+            takeSnapshot(snapshot -> {
+                var serialized = serdeManager.serialize(snapshot);
+                file.write(serialized.bytes(), serialized.offset(), serialized.length(), Durability.NONE);
+                count.incrementAndGet();
+            });
         }
+        log.info("Stored {} snapshot entries in {}", count.get(), tempSnapshotFile);
+        metadataStore.storeNewSnapshotFile(tempSnapshotFile, currentWalFile.getNextRecordNumber());
+        currentWalFile.close();
+        currentWalFile = WalFile.writable(metadataStore.latestWalFile(), metadataStore.firstRecordNumberOfLatestWalFile(), nonRecoverableErrorHandler);
     }
 }
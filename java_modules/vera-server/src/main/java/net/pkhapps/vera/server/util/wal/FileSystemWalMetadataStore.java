@@ -146,7 +146,7 @@ final class FileSystemWalMetadataStore {
         try {
             var nextSnapshotFileName = "snapshot-%06d.bin".formatted(extractNumberFromFileName(latestSnapshotFile()) + 1);
             var nextWalFileName = "wal-%06d.log".formatted(extractNumberFromFileName(latestWalFile()) + 1);
-            var nextMetadata = new Metadata(1, nextSnapshotFileName, nextRecordNumber, List.of(nextWalFileName));
+            var nextMetadata = new Metadata(1, nextSnapshotFileName, nextRecordNumber, List.of(nextWalFileName), false);
 
             var temporaryMetadataFile = Files.createTempFile(directory, "metadata", ".json.tmp");
             writeMetadata(temporaryMetadataFile, nextMetadata);
@@ -164,6 +164,41 @@ final class FileSystemWalMetadataStore {
         }
     }
 
+    /// Stores a marker in the metadata saying that the WAL was shut down cleanly, i.e. that the latest snapshot
+    /// contains everything and no events have been written after it.
+    ///
+    /// @throws WriteAheadLogException if the metadata could not be written
+    public synchronized void markCleanShutdown() {
+        replaceMetadata(new Metadata(metadata.version, metadata.latestSnapshot, metadata.firstRecordNumber,
+                metadata.walFiles, true));
+    }
+
+    /// Removes the clean-shutdown marker from the metadata, if present. This must be done before anything is written
+    /// to the WAL.
+    ///
+    /// @return true if the marker was present, false otherwise
+    /// @throws WriteAheadLogException if the metadata could not be written
+    public synchronized boolean clearCleanShutdown() {
+        if (!metadata.cleanShutdown) {
+            return false;
+        }
+        replaceMetadata(new Metadata(metadata.version, metadata.latestSnapshot, metadata.firstRecordNumber,
+                metadata.walFiles, false));
+        return true;
+    }
+
+    private void replaceMetadata(Metadata nextMetadata) {
+        try {
+            var temporaryMetadataFile = Files.createTempFile(directory, "metadata", ".json.tmp");
+            writeMetadata(temporaryMetadataFile, nextMetadata);
+            Files.move(temporaryMetadataFile, metadataFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            this.metadata = nextMetadata;
+        } catch (IOException ex) {
+            log.error("Error replacing metadata file {}", metadataFile, ex);
+            throw new WalIOException("Error replacing metadata file", ex);
+        }
+    }
+
     private int extractNumberFromFileName(Path file) {
         var fileName = file.getFileName().toString();
         var numberPart = fileName.substring(fileName.lastIndexOf('-') + 1, fileName.length() - 4);
@@ -192,7 +227,8 @@ final class FileSystemWalMetadataStore {
             var latestSnapshot = json.getString("latestSnapshot");
             var firstRecordNumber = json.getLong("firstRecordNumber");
             var walFiles = toStringList(json.getJSONArray("walFiles"));
-            return Optional.of(new Metadata(version, latestSnapshot, firstRecordNumber, walFiles));
+            var cleanShutdown = json.optBoolean("cleanShutdown", false);
+            return Optional.of(new Metadata(version, latestSnapshot, firstRecordNumber, walFiles, cleanShutdown));
         } catch (Exception ex) {
             log.error("Could not read metadata from {}", file, ex);
             return Optional.empty();
@@ -212,6 +248,7 @@ final class FileSystemWalMetadataStore {
             json.put("latestSnapshot", metadata.latestSnapshot);
             json.put("firstRecordNumber", metadata.firstRecordNumber);
             json.put("walFiles", metadata.walFiles);
+            json.put("cleanShutdown", metadata.cleanShutdown);
             Files.writeString(file, json.toString(), StandardCharsets.UTF_8, StandardOpenOption.WRITE,
                     StandardOpenOption.CREATE, StandardOpenOption.SYNC);
         } catch (IOException ex) {
@@ -221,14 +258,15 @@ final class FileSystemWalMetadataStore {
     }
 
     private Metadata createDefaultMetadata() {
-        return new Metadata(1, "snapshot-000001.bin", 1L, List.of("wal-000001.log"));
+        return new Metadata(1, "snapshot-000001.bin", 1L, List.of("wal-000001.log"), false);
     }
 
     private record Metadata(
             int version,
             String latestSnapshot,
             long firstRecordNumber,
-            List<String> walFiles
+            List<String> walFiles,
+            boolean cleanShutdown
     ) {
     }
 }
@@ -29,6 +29,7 @@ import java.nio.file.StandardOpenOption;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.zip.CRC32C;
 
@@ -53,8 +54,9 @@ import java.util.zip.CRC32C;
 ///
 /// ### Thread Safety
 ///
-/// **This class does not perform any thread-locking at all.** Callers are expected to make sure the proper locks are in
-/// order when clients are writing to, and reading from the WAL.
+/// **This class does not perform any thread-locking at all**, with the exception of
+/// [WritableWalFile#awaitForced(long)]. Callers are expected to make sure the proper locks are in order when clients
+/// are writing to, and reading from the WAL.
 ///
 /// ### Usage
 ///
@@ -236,6 +238,10 @@ sealed abstract class WalFile implements AutoCloseable {
         private long nextRecordNumber;
         private final ScratchBuffer scratch = new ScratchBuffer();
         private final WalFlusher walFlusher;
+        private final ReentrantLock forceLock = new ReentrantLock();
+        private volatile long lastWrittenRecordNumber;
+        private long lastForcedRecordNumber; // Guarded by forceLock
+        private boolean closed; // Guarded by forceLock
 
         private WritableWalFile(Path file, long defaultNextRecordNumber, Consumer<? super IOException> walFlusherExceptionHandler) {
             super(file);
@@ -248,6 +254,8 @@ sealed abstract class WalFile implements AutoCloseable {
                     nextRecordNumber = lastRecordNumber + 1;
                 }
                 log.debug("Next record number: {}", nextRecordNumber);
+                lastWrittenRecordNumber = nextRecordNumber - 1;
+                lastForcedRecordNumber = lastWrittenRecordNumber;
             } catch (Exception ex) {
                 log.error("Error reading last record number", ex);
                 throw new WalIOException("Error reading last record number", ex);
@@ -324,9 +332,37 @@ sealed abstract class WalFile implements AutoCloseable {
         /// @return the number of the written record
         public long write(byte[] payload, int payloadOffset, int payloadLength, Durability durability) {
             tryWriteRecord(fileChannel, payload, payloadOffset, payloadLength, nextRecordNumber, durability, scratch);
+            lastWrittenRecordNumber = nextRecordNumber;
             return nextRecordNumber++;
         }
 
+        /// Blocks until the record with the given number has been forced to stable storage. Unlike the rest of this
+        /// class, this method is thread-safe and is intended to be called *without* holding the lock that guards the
+        /// writes.
+        ///
+        /// This implements group commit: the first thread to acquire the force lock forces every record written so
+        /// far, and the threads queued up behind it find their records already forced and return without forcing
+        /// again. This way, concurrent writers share a single `fsync` instead of each paying for their own.
+        ///
+        /// @param recordNumber the number of a record returned by [#write(byte\[\], int, int, Durability)]
+        /// @throws WriteAheadLogException if there is an error forcing the file
+        public void awaitForced(long recordNumber) {
+            forceLock.lock();
+            try {
+                if (closed || lastForcedRecordNumber >= recordNumber) {
+                    return; // Closing the file forces it
+                }
+                var target = lastWrittenRecordNumber;
+                fileChannel.force(false);
+                lastForcedRecordNumber = target;
+            } catch (IOException ex) {
+                log.error("Error forcing file", ex);
+                throw new WalIOException("Error forcing file", ex);
+            } finally {
+                forceLock.unlock();
+            }
+        }
+
         /// Visible for testing, would otherwise be private.
         static ByteBuffer writeRecord(byte[] payload, int payloadLength, long recordNumber) {
             return writeRecord(payload, 0, payloadLength, recordNumber, new ScratchBuffer());
@@ -379,14 +415,17 @@ sealed abstract class WalFile implements AutoCloseable {
 
         @Override
         public void close() {
-            walFlusher.close();
+            forceLock.lock();
             try {
+                closed = true;
+                walFlusher.close();
                 fileChannel.close();
             } catch (IOException ex) {
                 log.error("Error closing file", ex);
                 throw new WalIOException("Error closing file", ex);
+            } finally {
+                forceLock.unlock();
             }
-
         }
     }
 
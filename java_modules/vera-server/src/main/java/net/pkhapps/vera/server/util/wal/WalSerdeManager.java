@@ -35,6 +35,7 @@ class WalSerdeManager {
     private final ThreadLocal<ScratchBuffer> scratchBuffer = ThreadLocal.withInitial(ScratchBuffer::new);
 
     WalSerdeManager(Iterable<WalSerdeRegistrator> walSerdeRegistrators) {
+        serdeIdToSerdeMap.put(CompositeWalEventSerde.SERDE_ID, new CompositeWalEventSerde(this));
         walSerdeRegistrators.forEach(walSerdeRegistrator ->
                 walSerdeRegistrator.registerSerdes(serde -> {
                     log.info("Registering serde {} for serdeId {}", serde, serde.serdeId());
@@ -46,7 +47,7 @@ class WalSerdeManager {
     }
 
     @SuppressWarnings("unchecked")
-    private <T> Serde<T> findSerde(T object) {
+    <T> Serde<T> findSerde(T object) {
         Class<?> type = object.getClass();
         WalSerde<?> serde = classToSerdeMap.get(type);
         if (serde == null) {
@@ -38,6 +38,22 @@ public interface WriteAheadLog {
     /// @throws WriteAheadLogException if the event could not be written
     <E extends WalEvent> void append(E event, Durability durability);
 
+    /// Appends the given event to the WAL, and then applies it to the in-memory state by running `apply`.
+    ///
+    /// Implementations that take snapshots while events are being appended must make sure no snapshot is taken between
+    /// writing the event and applying it. Such a snapshot would miss the change, while its position in the log would
+    /// already be past the event, and the change would be lost on replay.
+    ///
+    /// @param event      the event to append
+    /// @param durability the durability mode of the write operation
+    /// @param apply      applies the event to the in-memory state; not run if the event could not be written
+    /// @param <E>        the type of event to append
+    /// @throws WriteAheadLogException if the event could not be written
+    default <E extends WalEvent> void append(E event, Durability durability, Runnable apply) {
+        append(event, durability);
+        apply.run();
+    }
+
     /// Registers the given consumer to be called when the WAL is replayed.
     ///
     /// Only events that are assignable to the specified event type and pass the specified filter are sent to the
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server;
+
+import net.pkhapps.vera.server.domain.model.DomainModel;
+import net.pkhapps.vera.server.port.PrimaryPorts;
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+
+/// Creates [PrimaryPorts] on top of a [TestInMemoryWal], for testing adapters. This lives in the base package because
+/// the adapters themselves are not allowed to access the WAL (see [ArchitectureTest]).
+public final class TestPrimaryPorts {
+
+    private TestPrimaryPorts() {
+    }
+
+    /// Creates new [PrimaryPorts] with an empty domain model.
+    ///
+    /// @return new [PrimaryPorts]
+    public static PrimaryPorts create() {
+        return PrimaryPorts.create(DomainModel.create(new TestInMemoryWal()));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.adapter.rest.admin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.Javalin;
+import net.pkhapps.vera.server.TestPrimaryPorts;
+import net.pkhapps.vera.server.adapter.AdapterFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StationAdminControllerTest {
+
+    private final Javalin app = AdapterFactory.createJavalin(TestPrimaryPorts.create());
+    private final ObjectMapper objectMapper = AdapterFactory.createObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        app.start(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        app.stop();
+    }
+
+    @Test
+    void stations_are_imported_from_ndjson() throws Exception {
+        var response = post("/admin/stations/import", stations(3));
+
+        assertThat(response.statusCode()).isEqualTo(201);
+        assertThat(objectMapper.readTree(response.body()).get("imported").asInt()).isEqualTo(3);
+        assertThat(listStations().get("stations")).hasSize(3);
+    }
+
+    @Test
+    void invalid_lines_report_how_many_stations_were_imported() throws Exception {
+        var response = post("/admin/stations/import", stations(1500) + "{not json\n");
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        var body = objectMapper.readTree(response.body());
+        assertThat(body.get("imported").asInt()).isEqualTo(1000);
+        assertThat(body.get("error").asText()).isNotBlank();
+    }
+
+    @Test
+    void incomplete_stations_report_how_many_stations_were_imported() throws Exception {
+        var response = post("/admin/stations/import",
+                stations(1200) + "{\"nameSv\":\"Incomplete\",\"location\":{\"latitude\":60.0,\"longitude\":22.0}}\n");
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        var body = objectMapper.readTree(response.body());
+        assertThat(body.get("imported").asInt()).isEqualTo(1000);
+        assertThat(body.get("error").asText()).contains("nameFi");
+    }
+
+    private static String stations(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "{\"nameSv\":\"Station %d\",\"nameFi\":\"Asema %d\",\"location\":{\"latitude\":60.0,\"longitude\":22.0}}\n"
+                        .formatted(i, i))
+                .collect(Collectors.joining());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode listStations() throws IOException, InterruptedException {
+        var response = client.send(HttpRequest.newBuilder(uri("/admin/stations?limit=500")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        return objectMapper.readTree(response.body());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + app.port() + path);
+    }
+}
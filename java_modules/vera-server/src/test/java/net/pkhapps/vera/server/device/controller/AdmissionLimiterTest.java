@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.util.TestClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionLimiterTest {
+
+    private final TestClock clock = new TestClock(Instant.parse("2026-01-01T12:00:00Z"));
+
+    @Test
+    void bursts_are_admitted_up_to_the_bucket_size() {
+        var limiter = new AdmissionLimiter(clock, 10, 5, 0, Duration.ZERO, new SplittableRandom(1));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAdmit(false)).isTrue();
+        }
+        assertThat(limiter.tryAdmit(false)).isFalse();
+    }
+
+    @Test
+    void the_bucket_is_refilled_over_time() {
+        var limiter = new AdmissionLimiter(clock, 10, 5, 0, Duration.ZERO, new SplittableRandom(1));
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAdmit(false);
+        }
+
+        clock.advance(Duration.ofMillis(200));
+        assertThat(limiter.tryAdmit(false)).isTrue();
+        assertThat(limiter.tryAdmit(false)).isTrue();
+        assertThat(limiter.tryAdmit(false)).isFalse();
+    }
+
+    @Test
+    void reserved_tokens_are_only_used_by_prioritized_connections() {
+        var limiter = new AdmissionLimiter(clock, 10, 5, 2, Duration.ZERO, new SplittableRandom(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAdmit(false)).isTrue();
+        }
+        assertThat(limiter.tryAdmit(false)).isFalse();
+        assertThat(limiter.tryAdmit(true)).isTrue();
+        assertThat(limiter.tryAdmit(true)).isTrue();
+        assertThat(limiter.tryAdmit(true)).isFalse();
+    }
+
+    @Test
+    void retry_hints_include_the_time_until_a_token_is_available() {
+        var limiter = new AdmissionLimiter(clock, 10, 5, 2, Duration.ZERO, new SplittableRandom(1));
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAdmit(true);
+        }
+
+        assertThat(limiter.retryAfter(true)).isEqualTo(Duration.ofMillis(100));
+        assertThat(limiter.retryAfter(false)).isEqualTo(Duration.ofMillis(300));
+    }
+
+    @Test
+    void retry_hints_are_jittered() {
+        var limiter = new AdmissionLimiter(clock, 10, 5, 0, Duration.ofSeconds(5), new SplittableRandom(1));
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAdmit(true);
+        }
+
+        var hints = new HashSet<Duration>();
+        for (int i = 0; i < 10; i++) {
+            var hint = limiter.retryAfter(true);
+            assertThat(hint).isBetween(Duration.ofMillis(100), Duration.ofMillis(5100));
+            hints.add(hint);
+        }
+        assertThat(hints).hasSizeGreaterThan(1);
+    }
+}
@@ -18,11 +18,15 @@ package net.pkhapps.vera.server.device.controller;
 
 import io.javalin.Javalin;
 import net.pkhapps.vera.server.adapter.AdapterFactory;
-import net.pkhapps.vera.server.device.DeviceId;
-import net.pkhapps.vera.server.device.OutgoingMessageId;
+import net.pkhapps.vera.server.device.*;
 import net.pkhapps.vera.server.device.internal.ForSendingToDevices;
 import net.pkhapps.vera.server.device.internal.MockForAuthenticatingDevices;
 import net.pkhapps.vera.server.device.internal.MockForReceivingFromDevices;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
+import net.pkhapps.vera.server.util.serde.BufferInput;
+import net.pkhapps.vera.server.util.serde.BufferOutput;
+import net.pkhapps.vera.server.util.serde.SizingOutput;
+import org.awaitility.Awaitility;
 import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,8 +35,14 @@ import org.junit.jupiter.api.Test;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class DeviceControllerTest {
 
@@ -116,8 +126,222 @@ class DeviceControllerTest {
         }
     }
 
-    // TODO incoming messages are passed on and acknowledged
-    // TODO outgoing messages are delivered (to multiple recipients if needed)
+    @Test
+    void outgoing_messages_are_delivered_in_order() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            var sent = new ArrayList<OutgoingMessageId>();
+            for (int i = 0; i < 20; i++) {
+                var message = new OutgoingMessage(OutgoingMessageId.random(), Set.of(deviceId), MessagePriority.NORMAL,
+                        clock.instant(), new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg" + i));
+                assertThat(forSendingToDevices.sendToDevice(deviceId, message)).isEqualTo(SendOutcome.QUEUED);
+                sent.add(message.messageId());
+            }
+            var received = ws.awaitBinaryMessages(sent.size()).stream()
+                    .map(bytes -> readEnvelope(bytes).messageId())
+                    .toList();
+            assertThat(received).containsExactlyElementsOf(sent);
+        }
+    }
+
+    @Test
+    void messages_to_disconnected_devices_are_not_sent() {
+        var message = new OutgoingMessage(OutgoingMessageId.random(), Set.of(DeviceId.random()), MessagePriority.HIGH,
+                clock.instant(), new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"));
+        assertThat(forSendingToDevices.sendToDevice(message.recipients().iterator().next(), message))
+                .isEqualTo(SendOutcome.NOT_CONNECTED);
+    }
+
+    @Test
+    void reconnecting_devices_only_receive_the_messages_they_are_missing() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+        var messages = new ArrayList<OutgoingMessage>();
+        long firstSequence;
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            for (int i = 0; i < 3; i++) {
+                var message = new OutgoingMessage(OutgoingMessageId.random(), Set.of(deviceId), MessagePriority.NORMAL,
+                        clock.instant(), new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg" + i));
+                forSendingToDevices.sendToDevice(deviceId, message);
+                messages.add(message);
+            }
+            firstSequence = readEnvelope(ws.awaitBinaryMessages(3).getFirst()).sequence();
+        }
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            ws.sendTextMessage("RESUME " + firstSequence);
+
+            assertThat(ws.awaitTextMessages(1)).containsExactly("RESUMED " + (firstSequence + 1));
+            var resent = ws.awaitBinaryMessages(2).stream().map(bytes -> readEnvelope(bytes).messageId()).toList();
+            assertThat(resent).containsExactly(messages.get(1).messageId(), messages.get(2).messageId());
+            forReceivingFromDevices.assertMessageAckFromDevice(deviceId, messages.getFirst().messageId());
+        }
+    }
+
+    @Test
+    void binary_acknowledgements_are_passed_on() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+        var messages = new ArrayList<OutgoingMessage>();
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            for (int i = 0; i < 4; i++) {
+                var message = new OutgoingMessage(OutgoingMessageId.random(), Set.of(deviceId), MessagePriority.NORMAL,
+                        clock.instant(), new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg" + i));
+                forSendingToDevices.sendToDevice(deviceId, message);
+                messages.add(message);
+            }
+            var sequences = ws.awaitBinaryMessages(4).stream().map(bytes -> readEnvelope(bytes).sequence()).toList();
+
+            // Acknowledge the first two cumulatively and the last one selectively
+            ws.sendBinaryMessage(encode(new AckFrame(sequences.get(1),
+                    List.of(new AckFrame.SequenceRange(sequences.get(3), sequences.get(3))))));
+
+            forReceivingFromDevices.assertMessageAckFromDevice(deviceId, messages.get(0).messageId());
+            forReceivingFromDevices.assertMessageAckFromDevice(deviceId, messages.get(1).messageId());
+            forReceivingFromDevices.assertMessageAckFromDevice(deviceId, messages.get(3).messageId());
+        }
+    }
+
+    @Test
+    void incoming_messages_are_passed_on_and_acknowledged() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            ws.sendTextMessage("START 1");
+            for (int sequence = 1; sequence <= 3; sequence++) {
+                ws.sendBinaryMessage(encode(new IncomingMessageEnvelope(sequence,
+                        new IncomingMessageId("incoming-" + sequence), MessagePriority.NORMAL, clock.instant(),
+                        new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"))));
+            }
+            forReceivingFromDevices.assertMessageFromDevice(deviceId, new IncomingMessageId("incoming-3"));
+
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> {
+                var acks = ws.awaitBinaryMessages(1);
+                return DeviceFrameSerde.instance().readFrom(BufferInput.wrap(acks.getLast())) instanceof AckFrame ack
+                       && ack.cumulative() == 3 && ack.selective().isEmpty();
+            });
+        }
+    }
+
+    @Test
+    void incoming_messages_are_acknowledged_only_after_they_have_been_processed() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+        forReceivingFromDevices.pauseProcessingMessages();
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            ws.sendTextMessage("START 1");
+            ws.sendBinaryMessage(encode(new IncomingMessageEnvelope(1, new IncomingMessageId("slow"),
+                    MessagePriority.NORMAL, clock.instant(),
+                    new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"))));
+            forReceivingFromDevices.assertMessageFromDevice(deviceId, new IncomingMessageId("slow"));
+
+            Awaitility.await().during(Duration.ofMillis(200)).atMost(Duration.ofSeconds(1))
+                    .until(() -> ws.awaitBinaryMessages(0).isEmpty());
+
+            forReceivingFromDevices.resumeProcessingMessages();
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> {
+                var acks = ws.awaitBinaryMessages(1);
+                return DeviceFrameSerde.instance().readFrom(BufferInput.wrap(acks.getLast())) instanceof AckFrame ack
+                       && ack.cumulative() == 1;
+            });
+        } finally {
+            forReceivingFromDevices.resumeProcessingMessages();
+        }
+    }
+
+    @Test
+    void acknowledgments_never_cover_missing_messages() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            ws.sendTextMessage("START 10");
+            for (long sequence : new long[]{10, 12}) {
+                ws.sendBinaryMessage(encode(new IncomingMessageEnvelope(sequence,
+                        new IncomingMessageId("incoming-" + sequence), MessagePriority.NORMAL, clock.instant(),
+                        new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"))));
+            }
+            forReceivingFromDevices.assertMessageFromDevice(deviceId, new IncomingMessageId("incoming-12"));
+
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> {
+                var acks = ws.awaitBinaryMessages(1);
+                return DeviceFrameSerde.instance().readFrom(BufferInput.wrap(acks.getLast())) instanceof AckFrame ack
+                       && ack.cumulative() == 10
+                       && ack.selective().equals(List.of(new AckFrame.SequenceRange(12, 12)));
+            });
+        }
+    }
+
+    @Test
+    void incoming_messages_before_the_start_request_are_dropped() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            ws.sendBinaryMessage(encode(new IncomingMessageEnvelope(1, new IncomingMessageId("too-early"),
+                    MessagePriority.NORMAL, clock.instant(),
+                    new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"))));
+            ws.sendTextMessage("START 1");
+            ws.sendBinaryMessage(encode(new IncomingMessageEnvelope(1, new IncomingMessageId("in-time"),
+                    MessagePriority.NORMAL, clock.instant(),
+                    new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"))));
+
+            forReceivingFromDevices.assertMessageFromDevice(deviceId, new IncomingMessageId("in-time"));
+            assertThat(forReceivingFromDevices.countMessagesFromDevice(deviceId, new IncomingMessageId("too-early")))
+                    .isZero();
+        }
+    }
+
+    @Test
+    void duplicate_incoming_messages_are_acknowledged_but_passed_on_only_once() {
+        var deviceId = DeviceId.random();
+        forAuthenticatingDevices.addDevice(deviceId, "mytoken");
+        var messageId = new IncomingMessageId("incoming-duplicate");
+
+        try (var ws = openWebSocketClient(deviceId, "mytoken")) {
+            forReceivingFromDevices.assertDeviceConnected(deviceId);
+            ws.sendTextMessage("START 1");
+            // The device did not get the acknowledgment of the first copy, and retransmits with a new sequence number
+            for (int sequence = 1; sequence <= 2; sequence++) {
+                ws.sendBinaryMessage(encode(new IncomingMessageEnvelope(sequence, messageId, MessagePriority.NORMAL,
+                        clock.instant(), new MessagePayload.TextMessagePayload(MessageType.fromString("test"), "msg"))));
+            }
+
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> {
+                var acks = ws.awaitBinaryMessages(1);
+                return DeviceFrameSerde.instance().readFrom(BufferInput.wrap(acks.getLast())) instanceof AckFrame ack
+                       && ack.cumulative() == 2;
+            });
+            assertThat(forReceivingFromDevices.countMessagesFromDevice(deviceId, messageId)).isEqualTo(1);
+        }
+    }
+
+    private static OutgoingMessageEnvelope readEnvelope(byte[] bytes) {
+        return (OutgoingMessageEnvelope) DeviceFrameSerde.instance().readFrom(BufferInput.wrap(bytes));
+    }
+
+    private static byte[] encode(DeviceFrame frame) {
+        var sizing = new SizingOutput();
+        DeviceFrameSerde.instance().writeTo(frame, sizing);
+        var buffer = BufferOutput.allocate(sizing.size());
+        DeviceFrameSerde.instance().writeTo(frame, buffer);
+        return buffer.array();
+    }
+
     // TODO errors result in disconnection
 
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static net.pkhapps.vera.server.util.serde.SerdeTestUtils.assertSerializationAndDeserializationProducesEqualObject;
+
+class DeviceFrameSerdeTest {
+
+    @Test
+    void serialize_deserialize_AckFrame() {
+        assertSerializationAndDeserializationProducesEqualObject(
+                DeviceFrameSerde.instance(),
+                new AckFrame(1_000_000_000_000L, List.of(
+                        new AckFrame.SequenceRange(1_000_000_000_002L, 1_000_000_000_004L),
+                        new AckFrame.SequenceRange(1_000_000_000_010L, 1_000_000_000_010L)))
+        );
+    }
+
+    @Test
+    void serialize_deserialize_AckFrame_without_selective_ranges() {
+        assertSerializationAndDeserializationProducesEqualObject(
+                DeviceFrameSerde.instance(),
+                new AckFrame(42, List.of())
+        );
+    }
+}
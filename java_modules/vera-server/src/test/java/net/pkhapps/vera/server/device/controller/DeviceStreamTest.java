@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.device.OutgoingMessageId;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceStreamTest {
+
+    private final DeviceStream stream = new DeviceStream(100, 3);
+
+    private OutgoingMessageId send() {
+        return send(OutgoingMessageId.random());
+    }
+
+    private OutgoingMessageId send(OutgoingMessageId messageId) {
+        synchronized (stream) {
+            stream.sent(messageId, new byte[]{(byte) stream.nextSequence()});
+        }
+        return messageId;
+    }
+
+    private SendOutcome resend(List<Byte> sent, int room) {
+        synchronized (stream) {
+            return stream.resend(frame -> {
+                if (sent.size() >= room) {
+                    return SendOutcome.QUEUE_FULL;
+                }
+                sent.add(frame.get());
+                return SendOutcome.QUEUED;
+            });
+        }
+    }
+
+    private DeviceStream.Resume resume(long lastReceivedSequence) {
+        synchronized (stream) {
+            return stream.resume(lastReceivedSequence);
+        }
+    }
+
+    @Test
+    void only_frames_after_the_last_received_sequence_are_missing() {
+        var first = send();
+        var second = send();
+        var third = send();
+
+        var resume = resume(100);
+
+        assertThat(resume.received()).extracting(DeviceStream.UnacknowledgedFrame::messageId).containsExactly(first);
+        assertThat(resume.missing()).extracting(DeviceStream.UnacknowledgedFrame::messageId)
+                .containsExactly(second, third);
+        assertThat(resume.resumeFrom()).isEqualTo(101);
+    }
+
+    @Test
+    void acknowledged_frames_are_not_resent() {
+        var first = send();
+        send();
+        stream.acknowledged(first);
+
+        var resume = resume(99);
+
+        assertThat(resume.received()).isEmpty();
+        assertThat(resume.missing()).extracting(DeviceStream.UnacknowledgedFrame::sequence).containsExactly(101L);
+    }
+
+    @Test
+    void resuming_skips_frames_that_have_been_forgotten() {
+        for (int i = 0; i < 5; i++) {
+            send();
+        }
+
+        var resume = resume(99);
+
+        assertThat(resume.missing()).extracting(DeviceStream.UnacknowledgedFrame::sequence)
+                .containsExactly(102L, 103L, 104L);
+        assertThat(resume.resumeFrom()).isEqualTo(102);
+    }
+
+    @Test
+    void resuming_an_up_to_date_stream_resumes_from_the_next_sequence() {
+        send();
+        send();
+
+        var resume = resume(101);
+
+        assertThat(resume.missing()).isEmpty();
+        assertThat(resume.resumeFrom()).isEqualTo(102);
+    }
+
+    @Test
+    void missing_frames_that_did_not_fit_are_resent_later() {
+        send();
+        send();
+        send();
+        resume(99);
+        var sent = new ArrayList<Byte>();
+
+        assertThat(resend(sent, 2)).isEqualTo(SendOutcome.QUEUE_FULL);
+        assertThat(sent).containsExactly((byte) 100, (byte) 101);
+        assertThat(resend(sent, 3)).isEqualTo(SendOutcome.QUEUED);
+        assertThat(sent).containsExactly((byte) 100, (byte) 101, (byte) 102);
+        assertThat(resend(sent, 4)).isEqualTo(SendOutcome.QUEUED);
+        assertThat(sent).hasSize(3);
+    }
+
+    @Test
+    void frames_acknowledged_before_they_are_resent_are_skipped() {
+        send();
+        send();
+        resume(99);
+        stream.acknowledged(new AckFrame(100, List.of()));
+        var sent = new ArrayList<Byte>();
+
+        assertThat(resend(sent, 10)).isEqualTo(SendOutcome.QUEUED);
+        assertThat(sent).containsExactly((byte) 101);
+    }
+
+    @Test
+    void acknowledging_a_message_forgets_its_older_frames() {
+        var retried = send();
+        var other = send();
+        send(retried);
+
+        assertThat(stream.acknowledged(new AckFrame(99, List.of(new AckFrame.SequenceRange(102, 102)))))
+                .containsExactly(retried);
+
+        var resume = resume(99);
+        assertThat(resume.missing()).extracting(DeviceStream.UnacknowledgedFrame::messageId).containsExactly(other);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.device.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionPipelineTest {
+
+    private static final Runnable NOTHING = () -> {
+    };
+    private final DeviceId device = DeviceId.random();
+
+    private IncomingMessage message(String id, MessagePriority priority) {
+        return message(device, id, priority);
+    }
+
+    private static IncomingMessage message(DeviceId sender, String id, MessagePriority priority) {
+        return new IncomingMessage(new IncomingMessageId(id), sender, priority, Instant.now(), Instant.now(),
+                new MessagePayload.TextMessagePayload(MessageType.fromString("test"), id));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void messages_are_processed_highest_priority_first() throws InterruptedException {
+        var processed = Collections.synchronizedList(new ArrayList<String>());
+        var blocking = new CountDownLatch(1);
+        var blocker = new CountDownLatch(1);
+        try (var pipeline = new IngestionPipeline(message -> {
+            if (message.messageId().value().equals("blocker")) {
+                blocking.countDown();
+                await(blocker);
+            }
+            processed.add(message.messageId().value());
+        }, 10, 1)) {
+            pipeline.offer(message("blocker", MessagePriority.NORMAL), NOTHING, NOTHING);
+            blocking.await();
+
+            pipeline.offer(message("low", MessagePriority.LOW), NOTHING, NOTHING);
+            pipeline.offer(message("normal", MessagePriority.NORMAL), NOTHING, NOTHING);
+            pipeline.offer(message("high", MessagePriority.HIGH), NOTHING, NOTHING);
+            blocker.countDown();
+        }
+
+        assertThat(processed).containsExactly("blocker", "high", "normal", "low");
+    }
+
+    @Test
+    void full_queues_reject_messages_without_affecting_other_priorities() throws InterruptedException {
+        var blocking = new CountDownLatch(1);
+        var blocker = new CountDownLatch(1);
+        try (var pipeline = new IngestionPipeline(_ -> {
+            blocking.countDown();
+            await(blocker);
+        }, 2, 1)) {
+            pipeline.offer(message("blocker", MessagePriority.LOW), NOTHING, NOTHING);
+            blocking.await();
+
+            assertThat(pipeline.offer(message("low1", MessagePriority.LOW), NOTHING, NOTHING)).isTrue();
+            assertThat(pipeline.offer(message("low2", MessagePriority.LOW), NOTHING, NOTHING)).isTrue();
+            assertThat(pipeline.offer(message("low3", MessagePriority.LOW), NOTHING, NOTHING)).isFalse();
+            assertThat(pipeline.offer(message("high", MessagePriority.HIGH), NOTHING, NOTHING)).isTrue();
+            blocker.countDown();
+        }
+    }
+
+    @Test
+    void messages_from_the_same_device_are_processed_in_order() {
+        var devices = List.of(DeviceId.random(), DeviceId.random(), DeviceId.random(), DeviceId.random());
+        Map<DeviceId, List<String>> processed = new ConcurrentHashMap<>();
+        try (var pipeline = new IngestionPipeline(message -> processed
+                .computeIfAbsent(message.sender(), _ -> Collections.synchronizedList(new ArrayList<>()))
+                .add(message.messageId().value()), 1000, 3)) {
+            for (int i = 0; i < 100; i++) {
+                for (var sender : devices) {
+                    pipeline.offer(message(sender, "msg" + i, MessagePriority.NORMAL), NOTHING, NOTHING);
+                }
+            }
+        }
+
+        var expected = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            expected.add("msg" + i);
+        }
+        for (var sender : devices) {
+            assertThat(processed.get(sender)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void callbacks_are_called_after_processing() {
+        var events = Collections.synchronizedList(new ArrayList<String>());
+        try (var pipeline = new IngestionPipeline(message -> {
+            events.add("processing " + message.messageId().value());
+            if (message.messageId().value().equals("bad")) {
+                throw new IllegalStateException("Bad message");
+            }
+        }, 10, 1)) {
+            pipeline.offer(message("good", MessagePriority.NORMAL), () -> events.add("processed good"),
+                    () -> events.add("failed good"));
+            pipeline.offer(message("bad", MessagePriority.NORMAL), () -> events.add("processed bad"),
+                    () -> events.add("failed bad"));
+        }
+
+        assertThat(events).containsExactly("processing good", "processed good", "processing bad", "failed bad");
+    }
+
+    @Test
+    void closing_processes_queued_messages() {
+        var processed = Collections.synchronizedList(new ArrayList<String>());
+        var pipeline = new IngestionPipeline(message -> processed.add(message.messageId().value()), 100, 2);
+        for (int i = 0; i < 50; i++) {
+            pipeline.offer(message("msg" + i, MessagePriority.NORMAL), NOTHING, NOTHING);
+        }
+        pipeline.close();
+
+        assertThat(processed).hasSize(50);
+        assertThat(pipeline.offer(message("late", MessagePriority.HIGH), NOTHING, NOTHING)).isFalse();
+    }
+}
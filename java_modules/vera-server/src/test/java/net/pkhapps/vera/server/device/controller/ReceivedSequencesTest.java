@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.util.serde.SizingOutput;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReceivedSequencesTest {
+
+    private final ReceivedSequences received = new ReceivedSequences(10);
+
+    @Test
+    void nothing_is_acknowledged_before_the_first_message() {
+        assertThat(received.toAckFrame()).isEqualTo(new AckFrame(9, List.of()));
+    }
+
+    @Test
+    void contiguous_messages_are_acknowledged_cumulatively() {
+        received.received(10);
+        received.received(11);
+        received.received(12);
+
+        assertThat(received.toAckFrame()).isEqualTo(new AckFrame(12, List.of()));
+    }
+
+    @Test
+    void messages_after_a_gap_are_acknowledged_selectively() {
+        received.received(10);
+        received.received(12);
+        received.received(13);
+        received.received(15);
+
+        assertThat(received.toAckFrame()).isEqualTo(new AckFrame(10, List.of(
+                new AckFrame.SequenceRange(12, 13),
+                new AckFrame.SequenceRange(15, 15))));
+    }
+
+    @Test
+    void a_missing_first_message_is_not_acknowledged() {
+        // For example, the first message was rejected by a full ingestion pipeline and the second one was accepted
+        received.received(11);
+
+        var ack = received.toAckFrame();
+        assertThat(ack).isEqualTo(new AckFrame(9, List.of(new AckFrame.SequenceRange(11, 11))));
+        assertThat(ack.acknowledges(10)).isFalse();
+    }
+
+    @Test
+    void filling_a_gap_advances_the_cumulative_acknowledgment() {
+        received.received(10);
+        received.received(12);
+        received.received(11);
+
+        assertThat(received.toAckFrame()).isEqualTo(new AckFrame(12, List.of()));
+    }
+
+    @Test
+    void duplicates_are_detected() {
+        assertThat(received.received(10)).isTrue();
+        assertThat(received.received(12)).isTrue();
+        assertThat(received.received(10)).isFalse();
+        assertThat(received.received(12)).isFalse();
+    }
+
+    @Test
+    void selective_ranges_are_limited() {
+        received.received(10);
+        for (int i = 0; i < AckFrame.MAX_RANGES + 10; i++) {
+            received.received(12 + i * 2L);
+        }
+
+        var ack = received.toAckFrame();
+        assertThat(ack.selective()).hasSize(AckFrame.MAX_RANGES);
+        assertThat(ack.selective().getFirst()).isEqualTo(new AckFrame.SequenceRange(12, 12));
+    }
+
+    @Test
+    void overflowing_messages_are_not_acknowledged_and_the_gap_is_never_skipped() {
+        for (int i = 0; i < ReceivedSequences.MAX_OUT_OF_ORDER; i++) {
+            assertThat(received.received(12 + i)).isTrue();
+        }
+        var overflowing = 12L + ReceivedSequences.MAX_OUT_OF_ORDER;
+
+        assertThat(received.received(overflowing)).isFalse();
+        var ack = received.toAckFrame();
+        assertThat(ack.acknowledges(10)).isFalse();
+        assertThat(ack.acknowledges(11)).isFalse();
+        assertThat(ack.acknowledges(overflowing)).isFalse();
+
+        received.received(10);
+        received.received(11);
+        assertThat(received.toAckFrame()).isEqualTo(new AckFrame(overflowing - 1, List.of()));
+    }
+
+    @Test
+    void messages_too_far_ahead_are_not_recorded() {
+        received.received(10);
+
+        assertThat(received.received(10 + ReceivedSequences.MAX_AHEAD + 1)).isFalse();
+        assertThat(received.received(Long.MAX_VALUE)).isFalse();
+        assertThat(received.received(10 + ReceivedSequences.MAX_AHEAD)).isTrue();
+
+        var ack = received.toAckFrame();
+        assertThat(ack).isEqualTo(new AckFrame(10, List.of(
+                new AckFrame.SequenceRange(10 + ReceivedSequences.MAX_AHEAD, 10 + ReceivedSequences.MAX_AHEAD))));
+        AckFrameSerde.instance().writeTo(ack, new SizingOutput());
+    }
+
+    @Test
+    void the_distance_to_far_ahead_messages_does_not_overflow() {
+        var fromMinimum = new ReceivedSequences(Long.MIN_VALUE + 1);
+
+        assertThat(fromMinimum.received(Long.MAX_VALUE)).isFalse();
+        assertThat(fromMinimum.toAckFrame()).isEqualTo(new AckFrame(Long.MIN_VALUE, List.of()));
+    }
+}
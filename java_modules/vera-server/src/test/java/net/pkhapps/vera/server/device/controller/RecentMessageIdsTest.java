@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import net.pkhapps.vera.server.device.IncomingMessageId;
+import net.pkhapps.vera.server.util.TestClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentMessageIdsTest {
+
+    private static final Duration RETENTION = Duration.ofMinutes(5);
+    private final TestClock clock = new TestClock(Instant.parse("2026-01-01T12:00:00Z"));
+
+    private static boolean isDuplicate(RecentMessageIds recent, String messageId) {
+        return recent.isDuplicate(new IncomingMessageId(messageId), () -> {
+        });
+    }
+
+    @Test
+    void processed_ids_are_recognized() {
+        var recent = new RecentMessageIds(clock, RETENTION, 100);
+        recent.processed(new IncomingMessageId("msg1"));
+
+        assertThat(isDuplicate(recent, "msg1")).isTrue();
+        assertThat(isDuplicate(recent, "msg2")).isFalse();
+    }
+
+    @Test
+    void ids_are_remembered_for_at_least_the_retention_time() {
+        var recent = new RecentMessageIds(clock, RETENTION, 100);
+        clock.advance(RETENTION.minusSeconds(1));
+        recent.processed(new IncomingMessageId("msg1"));
+
+        clock.advance(RETENTION.minusSeconds(1));
+        assertThat(isDuplicate(recent, "msg1")).isTrue();
+    }
+
+    @Test
+    void ids_are_forgotten_after_twice_the_retention_time() {
+        var recent = new RecentMessageIds(clock, RETENTION, 100);
+        recent.processed(new IncomingMessageId("msg1"));
+
+        clock.advance(RETENTION.multipliedBy(2));
+        assertThat(isDuplicate(recent, "msg1")).isFalse();
+    }
+
+    @Test
+    void full_generations_are_rotated() {
+        var recent = new RecentMessageIds(clock, RETENTION, 2);
+        recent.processed(new IncomingMessageId("msg1"));
+        recent.processed(new IncomingMessageId("msg2"));
+        recent.processed(new IncomingMessageId("msg3"));
+        recent.processed(new IncomingMessageId("msg4"));
+        recent.processed(new IncomingMessageId("msg5"));
+
+        assertThat(isDuplicate(recent, "msg1")).isFalse();
+        assertThat(isDuplicate(recent, "msg3")).isTrue();
+        assertThat(isDuplicate(recent, "msg5")).isTrue();
+    }
+
+    @Test
+    void copies_of_messages_in_progress_wait_for_the_original() {
+        var recent = new RecentMessageIds(clock, RETENTION, 100);
+        var acknowledged = new ArrayList<String>();
+        var messageId = new IncomingMessageId("msg1");
+
+        assertThat(recent.startProcessing(messageId, () -> acknowledged.add("original"))).isTrue();
+        assertThat(recent.startProcessing(messageId, () -> acknowledged.add("copy1"))).isFalse();
+        assertThat(recent.isDuplicate(messageId, () -> acknowledged.add("copy2"))).isTrue();
+        assertThat(acknowledged).isEmpty();
+
+        recent.processed(messageId);
+        assertThat(acknowledged).containsExactly("original", "copy1", "copy2");
+
+        assertThat(recent.isDuplicate(messageId, () -> acknowledged.add("copy3"))).isTrue();
+        assertThat(acknowledged).containsExactly("original", "copy1", "copy2", "copy3");
+    }
+
+    @Test
+    void failed_messages_can_be_processed_again() {
+        var recent = new RecentMessageIds(clock, RETENTION, 100);
+        var acknowledged = new ArrayList<String>();
+        var messageId = new IncomingMessageId("msg1");
+
+        recent.startProcessing(messageId, () -> acknowledged.add("original"));
+        recent.isDuplicate(messageId, () -> acknowledged.add("copy"));
+        recent.failed(messageId);
+
+        assertThat(isDuplicate(recent, "msg1")).isFalse();
+        assertThat(recent.startProcessing(messageId, () -> acknowledged.add("resent"))).isTrue();
+        recent.processed(messageId);
+        assertThat(acknowledged).containsExactly("resent");
+    }
+
+    @Test
+    void sets_expire_when_all_ids_have_expired_and_nothing_is_in_progress() {
+        var recent = new RecentMessageIds(clock, RETENTION, 100);
+        assertThat(recent.isExpired()).isTrue();
+
+        recent.processed(new IncomingMessageId("msg1"));
+        recent.startProcessing(new IncomingMessageId("msg2"), () -> {
+        });
+        assertThat(recent.isExpired()).isFalse();
+
+        clock.advance(RETENTION.multipliedBy(2));
+        assertThat(recent.isExpired()).isFalse();
+
+        recent.failed(new IncomingMessageId("msg2"));
+        assertThat(recent.isExpired()).isTrue();
+    }
+}
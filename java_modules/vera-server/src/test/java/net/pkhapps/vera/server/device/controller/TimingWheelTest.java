@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final Duration TICK = Duration.ofMillis(100);
+    private final TimingWheel wheel = new TimingWheel(TICK, 8);
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void timeouts_fire_after_their_delay() {
+        wheel.schedule(TICK.multipliedBy(3), () -> fired.add("first"));
+        wheel.schedule(TICK.multipliedBy(5), () -> fired.add("second"));
+
+        tick(3);
+        assertThat(fired).isEmpty();
+        tick(1);
+        assertThat(fired).containsExactly("first");
+        tick(2);
+        assertThat(fired).containsExactly("first", "second");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void timeouts_longer_than_one_revolution_wait_for_their_round() {
+        wheel.schedule(TICK.multipliedBy(20), () -> fired.add("long"));
+        wheel.schedule(TICK.multipliedBy(4), () -> fired.add("short"));
+
+        tick(5);
+        assertThat(fired).containsExactly("short");
+        tick(15);
+        assertThat(fired).containsExactly("short");
+        tick(1);
+        assertThat(fired).containsExactly("short", "long");
+    }
+
+    @Test
+    void cancelled_timeouts_do_not_fire() {
+        var cancelled = wheel.schedule(TICK, () -> fired.add("cancelled"));
+        wheel.schedule(TICK, () -> fired.add("kept"));
+        cancelled.cancel();
+        cancelled.cancel();
+
+        tick(2);
+        assertThat(fired).containsExactly("kept");
+    }
+
+    @Test
+    void tasks_can_reschedule_themselves() {
+        wheel.schedule(TICK, new Runnable() {
+            @Override
+            public void run() {
+                fired.add("tick");
+                if (fired.size() < 3) {
+                    wheel.schedule(TICK, this);
+                }
+            }
+        });
+
+        tick(10);
+        assertThat(fired).hasSize(3);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void failing_tasks_do_not_stop_the_wheel() {
+        wheel.schedule(TICK, () -> {
+            throw new IllegalStateException("Failure");
+        });
+        wheel.schedule(TICK, () -> fired.add("after failure"));
+
+        tick(2);
+        assertThat(fired).containsExactly("after failure");
+    }
+
+    private void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.tick();
+        }
+    }
+}
@@ -21,7 +21,12 @@ import org.awaitility.Awaitility;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -32,13 +37,40 @@ public class WebSocketTestClient implements AutoCloseable, WebSocket.Listener {
     private final WebSocket webSocket;
     private final AtomicBoolean opened = new AtomicBoolean(false);
     private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final List<byte[]> binaryMessages = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> textMessages = Collections.synchronizedList(new ArrayList<>());
     private final WebSocket.Listener listener = new WebSocket.Listener() {
+        private final ByteArrayOutputStream partialMessage = new ByteArrayOutputStream();
+        private final StringBuilder partialText = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partialText.append(data);
+            if (last) {
+                textMessages.add(partialText.toString());
+                partialText.setLength(0);
+            }
+            return WebSocket.Listener.super.onText(webSocket, data, last);
+        }
+
         @Override
         public void onOpen(WebSocket webSocket) {
             opened.set(true);
             WebSocket.Listener.super.onOpen(webSocket);
         }
 
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            var bytes = new byte[data.remaining()];
+            data.get(bytes);
+            partialMessage.writeBytes(bytes);
+            if (last) {
+                binaryMessages.add(partialMessage.toByteArray());
+                partialMessage.reset();
+            }
+            return WebSocket.Listener.super.onBinary(webSocket, data, last);
+        }
+
         @Override
         public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
             closed.set(true);
@@ -62,6 +94,24 @@ public class WebSocketTestClient implements AutoCloseable, WebSocket.Listener {
         Awaitility.await().atMost(Duration.ofSeconds(5)).untilTrue(opened);
     }
 
+    public List<byte[]> awaitBinaryMessages(int count) {
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> binaryMessages.size() >= count);
+        synchronized (binaryMessages) {
+            return List.copyOf(binaryMessages);
+        }
+    }
+
+    public List<String> awaitTextMessages(int count) {
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> textMessages.size() >= count);
+        synchronized (textMessages) {
+            return List.copyOf(textMessages);
+        }
+    }
+
+    public void sendBinaryMessage(byte[] message) {
+        webSocket.sendBinary(ByteBuffer.wrap(message), true).join();
+    }
+
     public void sendTextMessage(String message) {
         webSocket.sendText(message, true).join();
     }
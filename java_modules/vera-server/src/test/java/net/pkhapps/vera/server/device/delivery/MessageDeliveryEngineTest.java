@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.delivery;
+
+import net.pkhapps.vera.server.device.*;
+import net.pkhapps.vera.server.device.internal.ForReceivingFromDevices;
+import net.pkhapps.vera.server.device.internal.ForSendingToDevices;
+import net.pkhapps.vera.server.device.internal.SendOutcome;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDeliveryEngineTest {
+
+    private static final MessagePayload PAYLOAD = new MessagePayload.TextMessagePayload(
+            MessageType.fromString("test"), "hello");
+
+    private final DeviceId device = DeviceId.random();
+    private final List<OutgoingMessageEvent> events = new CopyOnWriteArrayList<>();
+    private TestTransport transport;
+    private MessageDeliveryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = createEngine(new DeliveryPolicy(Duration.ofSeconds(10), 3, Duration.ofMillis(10),
+                Duration.ofMillis(50), Duration.ofMinutes(1), 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    private MessageDeliveryEngine createEngine(DeliveryPolicy policy) {
+        if (engine != null) {
+            engine.close();
+        }
+        var newEngine = MessageDeliveryEngine.create(receiver -> transport = new TestTransport(receiver), policy,
+                Clock.systemUTC());
+        newEngine.registerOutgoingMessageListener(events::add);
+        return newEngine;
+    }
+
+    @Test
+    void acknowledged_messages_are_reported_as_delivered() {
+        transport.connect(device);
+        var message = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+        assertThat(transport.sent).containsExactly(message.messageId());
+
+        engine.messageAckFromDevice(device, message.messageId());
+
+        assertThat(events).singleElement().isInstanceOfSatisfying(OutgoingMessageEvent.DeliverySucceeded.class,
+                event -> {
+                    assertThat(event.message()).isEqualTo(message);
+                    assertThat(event.recipient()).isEqualTo(device);
+                });
+    }
+
+    @Test
+    void higher_priority_messages_overtake_queued_lower_priority_messages() {
+        transport.connect(device);
+        var low1 = engine.sendMessage(Set.of(device), MessagePriority.LOW, PAYLOAD);
+        var low2 = engine.sendMessage(Set.of(device), MessagePriority.LOW, PAYLOAD);
+        var normal = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+        var high = engine.sendMessage(Set.of(device), MessagePriority.HIGH, PAYLOAD);
+
+        engine.messageAckFromDevice(device, low1.messageId());
+        engine.messageAckFromDevice(device, high.messageId());
+        engine.messageAckFromDevice(device, normal.messageId());
+
+        assertThat(transport.sent).containsExactly(low1.messageId(), high.messageId(), normal.messageId(),
+                low2.messageId());
+    }
+
+    @Test
+    void messages_are_queued_until_the_device_connects() {
+        var message = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+        assertThat(transport.sent).isEmpty();
+
+        transport.connect(device);
+        engine.deviceConnected(device);
+
+        assertThat(transport.sent).containsExactly(message.messageId());
+    }
+
+    @Test
+    void unacknowledged_messages_are_retried_and_then_reported_as_failed() {
+        engine = createEngine(new DeliveryPolicy(Duration.ofMillis(20), 3, Duration.ofMillis(10),
+                Duration.ofMillis(50), Duration.ofMinutes(1), 1));
+        transport.connect(device);
+        var message = engine.sendMessage(Set.of(device), MessagePriority.HIGH, PAYLOAD);
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> !events.isEmpty());
+
+        assertThat(transport.sent).containsExactly(message.messageId(), message.messageId(), message.messageId());
+        assertThat(events).singleElement().isInstanceOf(OutgoingMessageEvent.DeliveryFailed.class);
+    }
+
+    @Test
+    void messages_that_are_not_delivered_in_time_expire() {
+        engine = createEngine(new DeliveryPolicy(Duration.ofSeconds(10), 3, Duration.ofMillis(10),
+                Duration.ofMillis(50), Duration.ofMillis(50), 1));
+        var message = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> !events.isEmpty());
+
+        assertThat(events).singleElement().isInstanceOfSatisfying(OutgoingMessageEvent.DeliveryFailed.class,
+                event -> assertThat(event.message()).isEqualTo(message));
+        transport.connect(device);
+        engine.deviceConnected(device);
+        assertThat(transport.sent).isEmpty();
+    }
+
+    @Test
+    void messages_in_flight_are_not_resent_by_the_engine_after_reconnecting() {
+        transport.connect(device);
+        var message = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+
+        transport.disconnect(device);
+        engine.deviceDisconnected(device);
+        transport.connect(device);
+        engine.deviceConnected(device);
+
+        assertThat(transport.sent).containsExactly(message.messageId());
+    }
+
+    @Test
+    void undelivered_messages_are_resumed_from_the_outbox_after_a_restart() {
+        engine.close();
+        var outbox = new TestOutbox();
+        engine = MessageDeliveryEngine.create(receiver -> transport = new TestTransport(receiver), outbox,
+                DeliveryPolicy.DEFAULT, Clock.systemUTC());
+        transport.connect(device);
+        var acknowledged = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+        engine.messageAckFromDevice(device, acknowledged.messageId());
+        var unacknowledged = engine.sendMessage(Set.of(device), MessagePriority.NORMAL, PAYLOAD);
+        transport.disconnect(device);
+        var queued = engine.sendMessage(Set.of(device), MessagePriority.LOW, PAYLOAD);
+        engine.close();
+        assertThat(outbox.messages).doesNotContainKey(acknowledged.messageId());
+
+        engine = MessageDeliveryEngine.create(receiver -> transport = new TestTransport(receiver), outbox,
+                new DeliveryPolicy(Duration.ofSeconds(10), 3, Duration.ofMillis(10), Duration.ofMillis(50),
+                        Duration.ofMinutes(1), 16),
+                Clock.systemUTC());
+        engine.start();
+        transport.connect(device);
+        engine.deviceConnected(device);
+
+        assertThat(transport.sent).containsExactly(unacknowledged.messageId(), queued.messageId());
+        engine.messageAckFromDevice(device, unacknowledged.messageId());
+        engine.messageAckFromDevice(device, queued.messageId());
+        assertThat(outbox.messages).isEmpty();
+    }
+
+    @Test
+    void pending_messages_that_expired_during_a_restart_are_reported_to_the_listeners() {
+        engine.close();
+        var outbox = new TestOutbox();
+        var expired = new OutgoingMessage(OutgoingMessageId.random(), Set.of(device), MessagePriority.NORMAL,
+                Clock.systemUTC().instant().minus(Duration.ofMinutes(2)), PAYLOAD);
+        outbox.add(expired);
+        engine = MessageDeliveryEngine.create(receiver -> transport = new TestTransport(receiver), outbox,
+                new DeliveryPolicy(Duration.ofSeconds(10), 3, Duration.ofMillis(10), Duration.ofMillis(50),
+                        Duration.ofMinutes(1), 1),
+                Clock.systemUTC());
+        transport.connect(device);
+        engine.registerOutgoingMessageListener(events::add);
+        assertThat(outbox.messages).containsKey(expired.messageId());
+
+        engine.start();
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> !events.isEmpty());
+        assertThat(events).singleElement().isInstanceOfSatisfying(OutgoingMessageEvent.DeliveryFailed.class,
+                event -> assertThat(event.message()).isEqualTo(expired));
+        assertThat(outbox.messages).isEmpty();
+    }
+
+    @Test
+    void incoming_messages_are_passed_on_to_listeners() {
+        var received = new ArrayList<IncomingMessage>();
+        engine.registerIncomingMessageListener(_ -> {
+            throw new IllegalStateException("Listener errors are ignored");
+        });
+        engine.registerIncomingMessageListener(received::add);
+        var message = new IncomingMessage(new IncomingMessageId("incoming-1"), device, MessagePriority.NORMAL,
+                Clock.systemUTC().instant(), Clock.systemUTC().instant(), PAYLOAD);
+
+        engine.messageFromDevice(message);
+
+        assertThat(received).containsExactly(message);
+    }
+
+    static final class TestOutbox implements ForStoringPendingDeliveries {
+
+        final Map<OutgoingMessageId, PendingMessage> messages = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        @Override
+        public void add(OutgoingMessage message) {
+            messages.put(message.messageId(), new PendingMessage(message, message.recipients()));
+        }
+
+        @Override
+        public void complete(OutgoingMessageId messageId, DeviceId recipient) {
+            messages.computeIfPresent(messageId, (_, pending) -> {
+                var remaining = new HashSet<>(pending.remainingRecipients());
+                remaining.remove(recipient);
+                return remaining.isEmpty() ? null : new PendingMessage(pending.message(), remaining);
+            });
+        }
+
+        @Override
+        public List<PendingMessage> pending() {
+            synchronized (messages) {
+                return List.copyOf(messages.values());
+            }
+        }
+    }
+
+    static final class TestTransport implements ForSendingToDevices {
+
+        final ForReceivingFromDevices receiver;
+        final Set<DeviceId> connected = ConcurrentHashMap.newKeySet();
+        final List<OutgoingMessageId> sent = Collections.synchronizedList(new ArrayList<>());
+
+        TestTransport(ForReceivingFromDevices receiver) {
+            this.receiver = receiver;
+        }
+
+        void connect(DeviceId deviceId) {
+            connected.add(deviceId);
+        }
+
+        void disconnect(DeviceId deviceId) {
+            connected.remove(deviceId);
+        }
+
+        @Override
+        public SendOutcome sendToDevice(DeviceId recipient, OutgoingMessage message) {
+            if (!connected.contains(recipient)) {
+                return SendOutcome.NOT_CONNECTED;
+            }
+            sent.add(message.messageId());
+            return SendOutcome.QUEUED;
+        }
+    }
+}
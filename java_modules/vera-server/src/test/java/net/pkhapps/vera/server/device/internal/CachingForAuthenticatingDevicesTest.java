@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.device.internal;
+
+import net.pkhapps.vera.security.AccessDeniedException;
+import net.pkhapps.vera.security.SecurityException;
+import net.pkhapps.vera.server.device.DeviceId;
+import net.pkhapps.vera.server.util.TestClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingForAuthenticatingDevicesTest {
+
+    private static final Duration SUCCESS_TTL = Duration.ofMinutes(10);
+    private static final Duration FAILURE_TTL = Duration.ofSeconds(30);
+    private final MockForAuthenticatingDevices delegate = new MockForAuthenticatingDevices();
+    private final TestClock clock = new TestClock(Instant.parse("2026-01-01T12:00:00Z"));
+    private final CachingForAuthenticatingDevices cache = new CachingForAuthenticatingDevices(delegate, clock,
+            SUCCESS_TTL, FAILURE_TTL, 2);
+
+    @Test
+    void successful_authentications_are_cached_until_they_expire() {
+        var deviceId = DeviceId.random();
+        delegate.addDevice(deviceId, "mytoken");
+
+        assertThat(cache.authenticate(deviceId, "mytoken")).isEqualTo(new DevicePrincipal(deviceId));
+        assertThat(cache.authenticate(deviceId, "mytoken")).isEqualTo(new DevicePrincipal(deviceId));
+        delegate.assertSuccessfulAuthenticationAttempts(deviceId, 1);
+
+        clock.advance(SUCCESS_TTL);
+        cache.authenticate(deviceId, "mytoken");
+        delegate.assertSuccessfulAuthenticationAttempts(deviceId, 2);
+    }
+
+    @Test
+    void failed_authentications_are_cached_until_they_expire() {
+        var deviceId = DeviceId.random();
+        delegate.addDevice(deviceId, "mytoken");
+
+        assertThatThrownBy(() -> cache.authenticate(deviceId, "wrongtoken")).isInstanceOf(SecurityException.class);
+        assertThatThrownBy(() -> cache.authenticate(deviceId, "wrongtoken")).isInstanceOf(SecurityException.class);
+        delegate.assertFailedAuthenticationAttempts(deviceId, 1);
+
+        clock.advance(FAILURE_TTL);
+        assertThatThrownBy(() -> cache.authenticate(deviceId, "wrongtoken")).isInstanceOf(SecurityException.class);
+        delegate.assertFailedAuthenticationAttempts(deviceId, 2);
+    }
+
+    @Test
+    void cached_failures_are_thrown_as_the_same_kind_of_exception() {
+        var deviceId = DeviceId.random();
+        var denying = new CachingForAuthenticatingDevices((_, _) -> {
+            throw new AccessDeniedException("Device is disabled");
+        }, clock, SUCCESS_TTL, FAILURE_TTL, 2);
+        delegate.addDevice(deviceId, "mytoken");
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> denying.authenticate(deviceId, "mytoken"))
+                    .isExactlyInstanceOf(AccessDeniedException.class)
+                    .hasMessage("Device is disabled");
+            assertThatThrownBy(() -> cache.authenticate(deviceId, "wrongtoken"))
+                    .isExactlyInstanceOf(SecurityException.class)
+                    .hasMessage("Wrong authorization token");
+        }
+        delegate.assertFailedAuthenticationAttempts(deviceId, 1);
+    }
+
+    @Test
+    void tokens_are_cached_separately() {
+        var deviceId = DeviceId.random();
+        delegate.addDevice(deviceId, "mytoken");
+
+        assertThatThrownBy(() -> cache.authenticate(deviceId, "wrongtoken")).isInstanceOf(SecurityException.class);
+        assertThat(cache.authenticate(deviceId, "mytoken")).isEqualTo(new DevicePrincipal(deviceId));
+    }
+
+    @Test
+    void revoked_devices_are_verified_again() {
+        var deviceId = DeviceId.random();
+        delegate.addDevice(deviceId, "mytoken");
+        cache.authenticate(deviceId, "mytoken");
+
+        delegate.addDevice(deviceId, "newtoken");
+        cache.revoke(deviceId);
+
+        assertThatThrownBy(() -> cache.authenticate(deviceId, "mytoken")).isInstanceOf(SecurityException.class);
+        assertThat(cache.authenticate(deviceId, "newtoken")).isEqualTo(new DevicePrincipal(deviceId));
+    }
+
+    @Test
+    void least_recently_used_entries_are_evicted() {
+        var first = DeviceId.random();
+        var second = DeviceId.random();
+        var third = DeviceId.random();
+        delegate.addDevice(first, "token1");
+        delegate.addDevice(second, "token2");
+        delegate.addDevice(third, "token3");
+
+        cache.authenticate(first, "token1");
+        cache.authenticate(second, "token2");
+        cache.authenticate(first, "token1");
+        cache.authenticate(third, "token3");
+        cache.authenticate(first, "token1");
+        cache.authenticate(second, "token2");
+
+        delegate.assertSuccessfulAuthenticationAttempts(first, 1);
+        delegate.assertSuccessfulAuthenticationAttempts(second, 2);
+        delegate.assertSuccessfulAuthenticationAttempts(third, 1);
+    }
+}
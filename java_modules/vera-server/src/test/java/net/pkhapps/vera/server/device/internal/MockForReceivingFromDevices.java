@@ -18,6 +18,7 @@ package net.pkhapps.vera.server.device.internal;
 
 import net.pkhapps.vera.server.device.DeviceId;
 import net.pkhapps.vera.server.device.IncomingMessage;
+import net.pkhapps.vera.server.device.IncomingMessageId;
 import net.pkhapps.vera.server.device.OutgoingMessageId;
 import org.awaitility.Awaitility;
 
@@ -25,12 +26,17 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 public class MockForReceivingFromDevices implements ForReceivingFromDevices {
 
     private final ConcurrentMap<DeviceId, List<OutgoingMessageId>> receivedAcks = new ConcurrentHashMap<>();
+    private final Set<DeviceId> connectedDevices = ConcurrentHashMap.newKeySet();
+    private final List<IncomingMessage> receivedMessages = Collections.synchronizedList(new ArrayList<>());
+    private volatile CountDownLatch processingGate = new CountDownLatch(0);
 
     @Override
     public void messageAckFromDevice(DeviceId deviceId, OutgoingMessageId acknowledgedMessageId) {
@@ -40,7 +46,59 @@ public class MockForReceivingFromDevices implements ForReceivingFromDevices {
 
     @Override
     public void messageFromDevice(IncomingMessage message) {
+        receivedMessages.add(message);
+        try {
+            processingGate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void deviceConnected(DeviceId deviceId) {
+        connectedDevices.add(deviceId);
+    }
+
+    @Override
+    public void deviceDisconnected(DeviceId deviceId) {
+        connectedDevices.remove(deviceId);
+    }
+
+    @Override
+    public void deviceWritable(DeviceId deviceId) {
+
+    }
+
+    public void pauseProcessingMessages() {
+        processingGate = new CountDownLatch(1);
+    }
+
+    public void resumeProcessingMessages() {
+        processingGate.countDown();
+    }
+
+    public void assertDeviceConnected(DeviceId deviceId) {
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> connectedDevices.contains(deviceId));
+    }
+
+    public void assertMessageFromDevice(DeviceId deviceId, IncomingMessageId messageId) {
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> {
+                    synchronized (receivedMessages) {
+                        return receivedMessages.stream().anyMatch(message -> message.sender().equals(deviceId)
+                                                                             && message.messageId().equals(messageId));
+                    }
+                });
+    }
 
+    public long countMessagesFromDevice(DeviceId deviceId, IncomingMessageId messageId) {
+        synchronized (receivedMessages) {
+            return receivedMessages.stream().filter(message -> message.sender().equals(deviceId)
+                                                               && message.messageId().equals(messageId)).count();
+        }
     }
 
     public void assertMessageAckFromDevice(DeviceId deviceId, OutgoingMessageId acknowledgedMessageId) {
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColdStorageRepositoryTest {
+
+    @Test
+    void evicted_aggregates_are_materialized_with_their_latest_state() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal, 2)) {
+            var ids = new ArrayList<TestCounter.Id>();
+            for (int i = 0; i < 10; i++) {
+                var counter = repo.create("counter");
+                for (int j = 0; j <= i; j++) {
+                    counter.increment();
+                }
+                ids.add(counter.id());
+            }
+            for (int i = 0; i < 10; i++) {
+                assertThat(repo.require(ids.get(i)).value()).isEqualTo(i + 1);
+            }
+            assertThat(repo.stream()).hasSize(10);
+        }
+    }
+
+    @Test
+    void referenced_aggregates_keep_their_identity_after_eviction() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal, 1)) {
+            var first = repo.create("counter");
+            var others = List.of(repo.create("counter"), repo.create("counter"), repo.create("counter"));
+            first.increment();
+            others.forEach(TestCounter::increment);
+
+            assertThat(repo.get(first.id())).containsSame(first);
+            assertThat(repo.require(first.id()).value()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void removed_aggregates_are_gone() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal, 1)) {
+            var counter = repo.create("counter");
+            repo.create("counter");
+            assertThat(repo.remove(counter.id())).isTrue();
+            assertThat(repo.contains(counter.id())).isFalse();
+            assertThat(repo.get(counter.id())).isEmpty();
+        }
+    }
+
+    @Test
+    void aggregates_are_recreated_from_the_wal_on_replay_of_events_and_snapshot() {
+        var wal = new TestInMemoryWal();
+        TestCounter.Id id1;
+        TestCounter.Id id2;
+        try (var repo = new TestCounterRepository(wal, 1)) {
+            var counter1 = repo.create("counter");
+            counter1.increment();
+            id1 = counter1.id();
+            wal.takeSnapshot();
+
+            var counter2 = repo.create("counter");
+            counter2.increment();
+            counter2.increment();
+            id2 = counter2.id();
+        }
+
+        try (var repo = new TestCounterRepository(wal, 1)) {
+            wal.replay();
+            assertThat(repo.require(id1).value()).isEqualTo(1);
+            assertThat(repo.require(id2).value()).isEqualTo(2);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetTest {
+
+    // "counter" takes 15 bytes serialized
+    private static final long BYTES_PER_COUNTER = 15 * MemoryEstimator.HEAP_FACTOR + MemoryEstimator.OVERHEAD_PER_AGGREGATE;
+
+    @Test
+    void repositories_without_a_budget_do_not_estimate_memory_usage() {
+        try (var repo = new TestCounterRepository(new TestInMemoryWal())) {
+            repo.create("counter");
+            assertThat(repo.estimatedMemoryUsage()).isEmpty();
+        }
+    }
+
+    @Test
+    void memory_usage_follows_inserts_and_removals() {
+        try (var repo = new TestCounterRepository(new TestInMemoryWal())) {
+            repo.setMemoryBudget(new MemoryBudget<>(new TestCounter.StateSerde(), () -> Long.MAX_VALUE));
+            var counter = repo.create("counter");
+            repo.create("counter");
+            assertThat(repo.estimatedMemoryUsage()).hasValue(2 * BYTES_PER_COUNTER);
+
+            repo.remove(counter.id());
+            assertThat(repo.estimatedMemoryUsage()).hasValue(BYTES_PER_COUNTER);
+        }
+    }
+
+    @Test
+    void inserts_beyond_the_budget_are_rejected() {
+        var maxBytes = new AtomicLong(3 * BYTES_PER_COUNTER);
+        try (var repo = new TestCounterRepository(new TestInMemoryWal())) {
+            repo.setMemoryBudget(new MemoryBudget<>(new TestCounter.StateSerde(), maxBytes::get));
+            repo.create("counter");
+            repo.create("counter");
+            repo.create("counter");
+
+            assertThatThrownBy(() -> repo.create("counter")).isInstanceOf(MemoryBudgetExceededException.class);
+            assertThat(repo.stream()).hasSize(3);
+
+            maxBytes.set(4 * BYTES_PER_COUNTER);
+            repo.create("counter");
+            assertThat(repo.stream()).hasSize(4);
+        }
+    }
+
+    @Test
+    void rejected_inserts_do_not_affect_the_estimate() {
+        try (var repo = new TestCounterRepository(new TestInMemoryWal())) {
+            repo.setMemoryBudget(new MemoryBudget<>(new TestCounter.StateSerde(), () -> 3 * BYTES_PER_COUNTER));
+            repo.create("counter");
+            repo.create("counter");
+
+            assertThatThrownBy(() -> repo.create("counter".repeat(100)))
+                    .isInstanceOf(MemoryBudgetExceededException.class);
+            assertThat(repo.estimatedMemoryUsage()).hasValue(2 * BYTES_PER_COUNTER);
+        }
+    }
+}
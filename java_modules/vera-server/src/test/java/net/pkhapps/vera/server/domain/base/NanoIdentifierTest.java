@@ -30,6 +30,10 @@ class NanoIdentifierTest {
             super(id);
         }
 
+        public TestNanoIdentifier(long high, long low) {
+            super(high, low);
+        }
+
         public TestNanoIdentifier() {
         }
     }
@@ -60,6 +64,35 @@ class NanoIdentifierTest {
         assertEquals(valid, id.toString());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "lMP8oURT1u0gQYTpK316h",
+            "___________________-_",
+            "ZZZZZZZZZZZZZZZZZZZZZ",
+            "4-EobIp8tLo6IGfWvnW31"
+    })
+    void binary_and_string_representations_are_interchangeable(String valid) {
+        var id = new TestNanoIdentifier(valid);
+        var fromBinary = new TestNanoIdentifier(id.high(), id.low());
+        assertEquals(id, fromBinary);
+        assertEquals(id.hashCode(), fromBinary.hashCode());
+        assertEquals(valid, fromBinary.toString());
+    }
+
+    @Test
+    void random_ids_survive_a_round_trip_through_strings() {
+        for (int i = 0; i < 1000; i++) {
+            var id = new TestNanoIdentifier();
+            assertEquals(id, new TestNanoIdentifier(id.toString()));
+        }
+    }
+
+    @Test
+    void verifies_high_bits() {
+        assertThrows(IllegalArgumentException.class, () -> new TestNanoIdentifier(-1L, 0L));
+        assertThrows(IllegalArgumentException.class, () -> new TestNanoIdentifier(1L << 62, 0L));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {
             "",
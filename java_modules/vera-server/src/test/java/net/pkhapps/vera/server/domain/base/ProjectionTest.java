@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProjectionTest {
+
+    static class ProjectedCounterRepository extends TestCounterRepository {
+
+        final GroupCountProjection<TestCounter, TestCounter.Id, TestCounter.State, String> countByName =
+                registerIndex(new GroupCountProjection<>(TestCounter.State::name));
+        final GroupCountProjection<TestCounter, TestCounter.Id, TestCounter.State, Boolean> countByParity =
+                registerIndex(new GroupCountProjection<>(state -> state.value() % 2 == 0));
+
+        ProjectedCounterRepository(WriteAheadLog wal) {
+            super(wal);
+        }
+    }
+
+    static class FailingProjectionRepository extends TestCounterRepository {
+
+        final GroupCountProjection<TestCounter, TestCounter.Id, TestCounter.State, String> countByName =
+                registerIndex(new GroupCountProjection<>(state -> {
+                    if (state.name().equals("bad")) {
+                        throw new IllegalArgumentException("Cannot project bad counters");
+                    }
+                    return state.name();
+                }));
+
+        FailingProjectionRepository(WriteAheadLog wal) {
+            super(wal);
+        }
+    }
+
+    @Test
+    void projections_follow_inserts_changes_and_removals() throws InterruptedException {
+        try (var repo = new ProjectedCounterRepository(new TestInMemoryWal())) {
+            var foo = repo.create("foo");
+            repo.create("foo");
+            var bar = repo.create("bar");
+            foo.increment();
+
+            assertThat(repo.countByName.awaitCurrent(Duration.ofSeconds(5))).isTrue();
+            assertThat(repo.countByName.view()).isEqualTo(Map.of("foo", 2L, "bar", 1L));
+            assertThat(repo.countByParity.awaitCurrent(Duration.ofSeconds(5))).isTrue();
+            assertThat(repo.countByParity.view()).isEqualTo(Map.of(true, 2L, false, 1L));
+
+            repo.remove(bar.id());
+            repo.remove(foo.id());
+
+            assertThat(repo.countByName.awaitCurrent(Duration.ofSeconds(5))).isTrue();
+            assertThat(repo.countByName.view()).isEqualTo(Map.of("foo", 1L));
+            assertThat(repo.countByName.position()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void projections_are_rebuilt_on_replay() throws InterruptedException {
+        var wal = new TestInMemoryWal();
+        try (var repo = new ProjectedCounterRepository(wal)) {
+            repo.create("foo");
+            wal.takeSnapshot();
+            repo.create("bar").increment();
+        }
+
+        try (var repo = new ProjectedCounterRepository(wal)) {
+            wal.replay();
+            assertThat(repo.countByParity.awaitCurrent(Duration.ofSeconds(5))).isTrue();
+            assertThat(repo.countByParity.view()).isEqualTo(Map.of(true, 1L, false, 1L));
+        }
+    }
+
+    @Test
+    void failed_projections_stop_queueing_changes_and_report_the_failure() throws InterruptedException {
+        try (var repo = new FailingProjectionRepository(new TestInMemoryWal())) {
+            repo.create("good");
+            assertThat(repo.countByName.awaitCurrent(Duration.ofSeconds(5))).isTrue();
+
+            repo.create("bad");
+            assertThatThrownBy(() -> repo.countByName.awaitCurrent(Duration.ofSeconds(5)))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasRootCauseInstanceOf(IllegalArgumentException.class);
+
+            repo.create("good");
+            assertThatThrownBy(() -> repo.countByName.awaitCurrent(Duration.ofSeconds(5)))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThat(repo.countByName.view()).isEqualTo(Map.of("good", 1L));
+            assertThat(repo.countByName.position()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryTest {
+
+    private static TestCounterRepository createRepository(int size) {
+        var repo = new TestCounterRepository(new TestInMemoryWal());
+        for (int i = 0; i < size; i++) {
+            var counter = repo.create("counter" + i);
+            for (int j = 0; j < i % 100; j++) {
+                counter.increment();
+            }
+        }
+        return repo;
+    }
+
+    @Test
+    void list_stops_at_the_limit() {
+        try (var repo = createRepository(2000)) {
+            var query = repo.query().where(counter -> counter.value() >= 50);
+
+            assertThat(query.list(10)).hasSize(10).allMatch(counter -> counter.value() >= 50);
+            assertThat(query.parallel().list(10)).hasSize(10).doesNotHaveDuplicates().allMatch(counter -> counter.value() >= 50);
+            assertThat(query.parallel().list(2000)).hasSize(1000);
+        }
+    }
+
+    @Test
+    void top_returns_the_first_k_in_order() {
+        try (var repo = createRepository(2000)) {
+            var comparator = Comparator.comparingInt(TestCounter::value).reversed().thenComparing(TestCounter::name);
+            var expected = repo.stream().sorted(comparator).limit(25).toList();
+
+            assertThat(repo.query().top(25, comparator)).containsExactlyElementsOf(expected);
+            assertThat(repo.query().parallel().top(25, comparator)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void filters_are_combined() {
+        try (var repo = createRepository(1000)) {
+            var query = repo.query()
+                    .where(counter -> counter.value() < 10)
+                    .where(counter -> counter.value() % 2 == 0);
+
+            assertThat(query.count()).isEqualTo(50);
+            assertThat(query.parallel().count()).isEqualTo(50);
+            assertThat(query.where(counter -> counter.value() > 100).findAny()).isEmpty();
+            assertThat(query.findAny()).hasValueSatisfying(counter -> assertThat(counter.value()).isIn(IntStream.range(0, 10).boxed().toList()));
+        }
+    }
+
+    @Test
+    void queries_work_on_cold_storage() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal, 10)) {
+            for (int i = 0; i < 100; i++) {
+                repo.create("counter" + i);
+            }
+            assertThat(repo.query().parallel().list(20)).hasSize(20);
+            assertThat(repo.query().top(3, Comparator.comparing(TestCounter::name)))
+                    .extracting(TestCounter::name)
+                    .containsExactly("counter0", "counter1", "counter10");
+        }
+    }
+}
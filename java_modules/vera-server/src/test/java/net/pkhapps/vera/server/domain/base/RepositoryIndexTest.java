@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RepositoryIndexTest {
+
+    static class IndexedCounterRepository extends TestCounterRepository {
+
+        final HashIndex<String, TestCounter, TestCounter.Id> byName = registerIndex(HashIndex.of(TestCounter::name));
+        final SortedIndex<Integer, TestCounter, TestCounter.Id> byValue = registerIndex(SortedIndex.of(TestCounter::value));
+
+        IndexedCounterRepository(WriteAheadLog wal) {
+            super(wal);
+        }
+
+        IndexedCounterRepository(WriteAheadLog wal, int hotCapacity) {
+            super(wal, hotCapacity);
+        }
+    }
+
+    @Test
+    void inserted_aggregates_are_indexed() {
+        try (var repo = new IndexedCounterRepository(new TestInMemoryWal())) {
+            var foo = repo.create("foo");
+            var bar = repo.create("bar");
+
+            assertThat(repo.byName.find("foo")).containsExactly(foo);
+            assertThat(repo.byName.find("bar")).containsExactly(bar);
+            assertThat(repo.byName.find("baz")).isEmpty();
+            assertThat(repo.byValue.count(0)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void changed_aggregates_are_reindexed() {
+        try (var repo = new IndexedCounterRepository(new TestInMemoryWal())) {
+            var counter1 = repo.create("counter1");
+            var counter2 = repo.create("counter2");
+            var counter3 = repo.create("counter3");
+            counter2.increment();
+            counter3.increment();
+            counter3.increment();
+
+            assertThat(repo.byValue.find(0)).containsExactly(counter1);
+            assertThat(repo.byValue.ascending(10)).containsExactly(counter1, counter2, counter3);
+            assertThat(repo.byValue.descending(2)).containsExactly(counter3, counter2);
+            assertThat(repo.byValue.range(1, 3)).containsExactly(counter2, counter3);
+            assertThat(repo.byValue.after(1, 10)).containsExactly(counter3);
+            assertThat(repo.byValue.firstKey()).contains(0);
+            assertThat(repo.byValue.lastKey()).contains(2);
+        }
+    }
+
+    @Test
+    void removed_aggregates_are_removed_from_the_index() {
+        try (var repo = new IndexedCounterRepository(new TestInMemoryWal())) {
+            var counter = repo.create("counter");
+            repo.remove(counter.id());
+
+            assertThat(repo.byName.containsKey("counter")).isFalse();
+            assertThat(repo.byName.keyCount()).isZero();
+            assertThat(repo.byValue.keyCount()).isZero();
+        }
+    }
+
+    @Test
+    void indexes_are_rebuilt_on_replay_of_events_and_snapshot() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new IndexedCounterRepository(wal)) {
+            repo.create("foo").increment();
+            wal.takeSnapshot();
+            var bar = repo.create("bar");
+            bar.increment();
+            bar.increment();
+        }
+
+        try (var repo = new IndexedCounterRepository(wal)) {
+            wal.replay();
+            assertThat(repo.byName.find("foo")).extracting(TestCounter::value).containsExactly(1);
+            assertThat(repo.byValue.find(2)).extracting(TestCounter::name).containsExactly("bar");
+        }
+    }
+
+    @Test
+    void indexes_work_with_cold_storage() {
+        try (var repo = new IndexedCounterRepository(new TestInMemoryWal(), 1)) {
+            for (int i = 0; i < 10; i++) {
+                repo.create("counter" + i);
+            }
+            assertThat(repo.byName.find("counter5")).extracting(TestCounter::name).containsExactly("counter5");
+            assertThat(repo.byValue.find(0)).hasSize(10);
+        }
+    }
+
+    @Test
+    void indexes_cannot_be_registered_twice() {
+        try (var repo1 = new IndexedCounterRepository(new TestInMemoryWal());
+             var repo2 = new IndexedCounterRepository(new TestInMemoryWal())) {
+            assertThatThrownBy(() -> repo2.registerIndex(repo1.byName)).isInstanceOf(IllegalStateException.class);
+        }
+    }
+}
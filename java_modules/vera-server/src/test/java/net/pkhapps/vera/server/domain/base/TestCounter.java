@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.serde.Input;
+import net.pkhapps.vera.server.util.serde.Output;
+import net.pkhapps.vera.server.util.serde.Serde;
+import net.pkhapps.vera.server.util.wal.Durability;
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+
+/// Minimal aggregate used for testing repositories.
+final class TestCounter extends ImmutableStateAggregate<TestCounter.Id, TestCounter.State, TestCounter.Event> {
+
+    TestCounter(WriteAheadLog wal, Id id, State state) {
+        super(wal, id, state);
+    }
+
+    String name() {
+        return state().name();
+    }
+
+    int value() {
+        return state().value();
+    }
+
+    void increment() {
+        appendToWal(new Event(1), Durability.NONE);
+    }
+
+    @Override
+    protected State apply(State state, Event event) {
+        return new State(state.name(), state.value() + event.delta());
+    }
+
+    static final class Id extends NanoIdentifier {
+    }
+
+    record State(String name, int value) {
+    }
+
+    record Event(int delta) {
+    }
+
+    static final class StateSerde implements Serde<State> {
+
+        @Override
+        public void writeTo(State object, Output output) {
+            output.writeString(object.name());
+            output.writeInteger(object.value());
+        }
+
+        @Override
+        public State readFrom(Input input) {
+            return new State(input.readString(), input.readInteger());
+        }
+    }
+}
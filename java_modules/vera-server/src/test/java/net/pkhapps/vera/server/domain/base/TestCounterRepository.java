@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.WriteAheadLog;
+
+/// Repository of [TestCounter]s used for testing.
+class TestCounterRepository extends Repository<TestCounter, TestCounter.Id, TestCounter.State, TestCounter.Event> {
+
+    /// Creates a repository that keeps all counters on the heap.
+    TestCounterRepository(WriteAheadLog wal) {
+        super(wal, TestCounter.class);
+    }
+
+    /// Creates a repository that keeps counters in cold storage.
+    TestCounterRepository(WriteAheadLog wal, int hotCapacity) {
+        super(wal, TestCounter.class, () -> Integer.MAX_VALUE,
+                new ColdStorage<>(new TestCounter.StateSerde(), hotCapacity));
+    }
+
+    TestCounter create(String name) {
+        return insert(new TestCounter(wal(), new TestCounter.Id(), new TestCounter.State(name, 0)));
+    }
+
+    @Override
+    protected TestCounter createFromState(TestCounter.Id id, TestCounter.State state) {
+        return new TestCounter(wal(), id, state);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.base;
+
+import net.pkhapps.vera.server.util.wal.Durability;
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UnitOfWorkTest {
+
+    @Test
+    void changes_are_applied_on_commit() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal)) {
+            var existing = repo.create("existing");
+
+            var created = UnitOfWork.call(Durability.IMMEDIATE, () -> {
+                var counter = repo.create("created");
+                counter.increment();
+                existing.increment();
+                existing.increment();
+
+                assertThat(repo.contains(counter.id())).isFalse();
+                assertThat(existing.value()).isZero();
+                return counter;
+            });
+
+            assertThat(repo.get(created.id())).containsSame(created);
+            assertThat(created.value()).isEqualTo(1);
+            assertThat(existing.value()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void committed_changes_are_replayed() {
+        var wal = new TestInMemoryWal();
+        TestCounter.Id createdId;
+        TestCounter.Id removedId;
+        try (var repo = new TestCounterRepository(wal)) {
+            var removed = repo.create("removed");
+            removedId = removed.id();
+            createdId = UnitOfWork.call(Durability.IMMEDIATE, () -> {
+                var counter = repo.create("created");
+                counter.increment();
+                repo.remove(removed.id());
+                return counter.id();
+            });
+        }
+
+        try (var repo = new TestCounterRepository(wal)) {
+            wal.replay();
+            assertThat(repo.require(createdId).value()).isEqualTo(1);
+            assertThat(repo.contains(removedId)).isFalse();
+        }
+    }
+
+    @Test
+    void changes_are_discarded_on_exception() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal)) {
+            var existing = repo.create("existing");
+            var created = new TestCounter[1];
+
+            assertThatThrownBy(() -> UnitOfWork.run(Durability.IMMEDIATE, () -> {
+                created[0] = repo.create("created");
+                existing.increment();
+                repo.remove(existing.id());
+                throw new IllegalStateException("Oops");
+            })).isInstanceOf(IllegalStateException.class);
+
+            assertThat(repo.contains(created[0].id())).isFalse();
+            assertThat(repo.contains(existing.id())).isTrue();
+            assertThat(existing.value()).isZero();
+            // Reservations have been released
+            assertThat(repo.remove(existing.id())).isTrue();
+        }
+
+        try (var repo = new TestCounterRepository(wal)) {
+            wal.replay();
+            assertThat(repo.stream()).isEmpty();
+        }
+    }
+
+    @Test
+    void nested_units_of_work_join_the_outer_one() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new TestCounterRepository(wal)) {
+            var counter = repo.create("counter");
+            UnitOfWork.run(Durability.IMMEDIATE, () -> {
+                UnitOfWork.run(Durability.NONE, counter::increment);
+                assertThat(counter.value()).isZero();
+            });
+            assertThat(counter.value()).isEqualTo(1);
+        }
+    }
+}
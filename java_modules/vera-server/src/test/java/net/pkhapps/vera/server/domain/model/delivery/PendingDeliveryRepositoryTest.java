@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.device.*;
+import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PendingDeliveryRepositoryTest {
+
+    private static final MessagePayload PAYLOAD = new MessagePayload.TextMessagePayload(
+            MessageType.fromString("test"), "hello");
+
+    @Test
+    void pending_messages_are_recreated_from_the_wal_on_replay() {
+        var wal = new TestInMemoryWal();
+        var device1 = DeviceId.random();
+        var device2 = DeviceId.random();
+        var first = new OutgoingMessage(OutgoingMessageId.random(), Set.of(device1, device2), MessagePriority.NORMAL,
+                Instant.parse("2026-01-01T12:00:00Z"), PAYLOAD);
+        var second = new OutgoingMessage(OutgoingMessageId.random(), Set.of(device1), MessagePriority.HIGH,
+                Instant.parse("2026-01-01T12:00:01Z"), PAYLOAD);
+        var completed = new OutgoingMessage(OutgoingMessageId.random(), Set.of(device2), MessagePriority.LOW,
+                Instant.parse("2026-01-01T12:00:02Z"), PAYLOAD);
+        try (var repo = new PendingDeliveryRepository(wal)) {
+            repo.add(second);
+            repo.add(first);
+            repo.add(completed);
+            repo.complete(first.messageId(), device1);
+            repo.complete(completed.messageId(), device2);
+        }
+
+        try (var repo = new PendingDeliveryRepository(wal)) {
+            wal.replay();
+
+            var pending = repo.pending();
+            assertThat(pending).hasSize(2);
+            assertThat(pending.get(0).message().messageId()).isEqualTo(first.messageId());
+            assertThat(pending.get(0).remainingRecipients()).containsExactly(device2);
+            assertThat(pending.get(1).message().messageId()).isEqualTo(second.messageId());
+            assertThat(pending.get(1).remainingRecipients()).containsExactly(device1);
+            assertThat(repo.contains(completed.messageId())).isFalse();
+        }
+    }
+}
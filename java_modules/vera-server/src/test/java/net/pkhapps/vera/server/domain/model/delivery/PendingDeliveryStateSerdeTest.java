@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.delivery;
+
+import net.pkhapps.vera.server.device.DeviceId;
+import net.pkhapps.vera.server.device.MessagePayload;
+import net.pkhapps.vera.server.device.MessagePriority;
+import net.pkhapps.vera.server.device.MessageType;
+import net.pkhapps.vera.server.util.serde.BufferInput;
+import net.pkhapps.vera.server.util.serde.BufferOutput;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static net.pkhapps.vera.server.util.serde.SerdeTestUtils.assertSerializationAndDeserializationProducesEqualObject;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PendingDeliveryStateSerdeTest {
+
+    @Test
+    void serialize_deserialize() {
+        var first = DeviceId.random();
+        var second = DeviceId.random();
+        var state = new PendingDelivery.PendingDeliveryState(
+                MessagePriority.HIGH,
+                Instant.parse("2026-01-02T10:15:30.123456789Z"),
+                new MessagePayload.TextMessagePayload(MessageType.fromString("alert"), "Fire!"),
+                Set.of(first, second),
+                Set.of(second));
+        var output = BufferOutput.allocate(1024);
+        PendingDeliveryStateSerde.instance().writeTo(state, output);
+        var copy = PendingDeliveryStateSerde.instance().readFrom(BufferInput.wrap(output.buffer().array()));
+
+        // Message types are not comparable with equals(), so the payload is compared separately
+        assertThat(copy.priority()).isEqualTo(state.priority());
+        assertThat(copy.queuedOn()).isEqualTo(state.queuedOn());
+        assertThat(copy.recipients()).isEqualTo(state.recipients());
+        assertThat(copy.remainingRecipients()).isEqualTo(state.remainingRecipients());
+        assertThat(copy.payload()).isInstanceOfSatisfying(MessagePayload.TextMessagePayload.class, payload -> {
+            assertThat(payload.type().name()).isEqualTo("alert");
+            assertThat(payload.content()).isEqualTo("Fire!");
+        });
+    }
+
+    @Test
+    void serialize_deserialize_RecipientCompleted() {
+        assertSerializationAndDeserializationProducesEqualObject(
+                PendingDeliveryWalEventSerde.instance(),
+                new PendingDelivery.PendingDeliveryWalEvent.RecipientCompleted(DeviceId.random())
+        );
+    }
+}
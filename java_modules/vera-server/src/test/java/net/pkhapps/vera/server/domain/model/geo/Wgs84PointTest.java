@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class Wgs84PointTest {
+
+    @Test
+    void distance_to_same_point_is_zero() {
+        var point = new Wgs84Point(60.306738, 22.300907);
+        assertThat(point.distanceTo(point)).isZero();
+    }
+
+    @Test
+    void distance_between_helsinki_and_turku() {
+        var helsinki = new Wgs84Point(60.1699, 24.9384);
+        var turku = new Wgs84Point(60.4518, 22.2666);
+        assertThat(helsinki.distanceTo(turku)).isCloseTo(150_500, within(1_000.0));
+        assertThat(turku.distanceTo(helsinki)).isEqualTo(helsinki.distanceTo(turku));
+    }
+
+    @Test
+    void distance_across_the_antimeridian_is_short() {
+        var east = new Wgs84Point(0, 179.9);
+        var west = new Wgs84Point(0, -179.9);
+        assertThat(east.distanceTo(west)).isCloseTo(22_239, within(10.0));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2026 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.pkhapps.vera.server.domain.model.i18n;
+
+import net.pkhapps.vera.server.util.Locales;
+import net.pkhapps.vera.server.util.serde.BufferInput;
+import net.pkhapps.vera.server.util.serde.BufferOutput;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+
+import static net.pkhapps.vera.server.util.serde.SerdeTestUtils.assertSerializationAndDeserializationProducesEqualObject;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiLingualStringSerdeTest {
+
+    @Test
+    void serialize_deserialize_fixed_locales() {
+        assertSerializationAndDeserializationProducesEqualObject(
+                MultiLingualStringSerde.instance(),
+                MultiLingualString.of(Locales.FINNISH, "Asema 91", Locales.SWEDISH, "Station 91")
+        );
+    }
+
+    @Test
+    void serialize_deserialize_other_locales() {
+        assertSerializationAndDeserializationProducesEqualObject(
+                MultiLingualStringSerde.instance(),
+                MultiLingualString.of(Map.of(Locales.FINNISH, "Asema", Locale.GERMAN, "Station", Locale.FRENCH, "Gare"))
+        );
+    }
+
+    @Test
+    void deserialized_instances_are_interned() {
+        var original = MultiLingualString.of(Locales.SWEDISH, "Pargas brandstation");
+        var buffer = ByteBuffer.allocate(100);
+        MultiLingualStringSerde.instance().writeTo(original, BufferOutput.wrap(buffer));
+
+        var first = MultiLingualStringSerde.instance().readFrom(BufferInput.wrap(buffer.array(), 0, buffer.position()));
+        var second = MultiLingualStringSerde.instance().readFrom(BufferInput.wrap(buffer.array(), 0, buffer.position()));
+        assertThat(second).isEqualTo(original).isSameAs(first);
+    }
+
+    @Test
+    void fixed_and_other_locales_behave_like_a_map() {
+        var string = MultiLingualString.of(Locales.FINNISH, "Asema")
+                .with(Locale.GERMAN, "Station")
+                .with(Locales.FINNISH, "Paloasema");
+
+        assertThat(string.size()).isEqualTo(2);
+        assertThat(string.get(Locales.FINNISH)).hasValue("Paloasema");
+        assertThat(string.get(Locale.GERMAN)).hasValue("Station");
+        assertThat(string.contains(Locales.SWEDISH)).isFalse();
+        assertThat(string).isEqualTo(MultiLingualString.of(Locale.GERMAN, "Station", Locales.FINNISH, "Paloasema"));
+        assertThat(string.with(Locale.GERMAN, "Station")).isSameAs(string);
+    }
+}
@@ -17,11 +17,14 @@
 package net.pkhapps.vera.server.domain.model.station;
 
 import net.pkhapps.vera.server.domain.model.geo.Wgs84Point;
+import net.pkhapps.vera.server.domain.model.geo.Wgs84PointIndex;
 import net.pkhapps.vera.server.domain.model.i18n.MultiLingualString;
 import net.pkhapps.vera.server.util.Locales;
 import net.pkhapps.vera.server.util.wal.TestInMemoryWal;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -127,4 +130,158 @@ class StationAggregateAndRepositoryTest {
             assertThat(repo.get(id3)).isEmpty();
         }
     }
+
+    @Test
+    void updates_replace_the_state_without_touching_earlier_states() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var station = repo.create(MultiLingualString.of(Locales.FINNISH, "test"), POINT0);
+            var before = station.state();
+            station.update((_, mutator) -> mutator
+                    .setName(MultiLingualString.of(Locales.FINNISH, "terve"))
+                    .setLocation(POINT1)
+                    .setNote("A note")
+            );
+            var after = station.state();
+
+            assertThat(before).isEqualTo(new Station.StationState(MultiLingualString.of(Locales.FINNISH, "test"), POINT0, ""));
+            assertThat(after).isEqualTo(new Station.StationState(MultiLingualString.of(Locales.FINNISH, "terve"), POINT1, "A note"));
+            assertThat(station.name()).isSameAs(after.name());
+        }
+    }
+
+    @Test
+    void nearest_stations_are_found_by_great_circle_distance() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var station1 = repo.create(MultiLingualString.of(Locale.ENGLISH, "test1"), POINT1);
+            var station2 = repo.create(MultiLingualString.of(Locale.ENGLISH, "test2"), POINT2);
+            var station3 = repo.create(MultiLingualString.of(Locale.ENGLISH, "test3"), POINT3);
+            repo.create(MultiLingualString.of(Locale.ENGLISH, "far away"), POINT0);
+
+            assertThat(repo.findNearest(POINT2, 2))
+                    .extracting(Wgs84PointIndex.Neighbor::aggregate)
+                    .containsExactly(station2, station1);
+            assertThat(repo.findWithinRadius(POINT1, 3_000))
+                    .extracting(Wgs84PointIndex.Neighbor::aggregate)
+                    .containsExactly(station1, station2, station3);
+            assertThat(repo.findWithinRadius(POINT1, 1_000))
+                    .extracting(Wgs84PointIndex.Neighbor::aggregate)
+                    .containsExactly(station1, station2);
+            assertThat(repo.findNearest(POINT0, 10)).hasSize(4);
+        }
+    }
+
+    @Test
+    void nearest_stations_follow_moves_and_removals() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var station1 = repo.create(MultiLingualString.of(Locale.ENGLISH, "test1"), POINT0);
+            var station2 = repo.create(MultiLingualString.of(Locale.ENGLISH, "test2"), POINT2);
+
+            station1.update((_, mutator) -> mutator.setLocation(POINT1));
+            assertThat(repo.findNearest(POINT1, 1))
+                    .extracting(Wgs84PointIndex.Neighbor::aggregate)
+                    .containsExactly(station1);
+
+            repo.remove(station1.id());
+            assertThat(repo.findNearest(POINT1, 1))
+                    .extracting(Wgs84PointIndex.Neighbor::aggregate)
+                    .containsExactly(station2);
+            assertThat(repo.findWithinRadius(POINT0, 1_000)).isEmpty();
+        }
+    }
+
+    @Test
+    void nearest_stations_are_found_across_the_antimeridian() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var west = repo.create(MultiLingualString.of(Locale.ENGLISH, "west"), new Wgs84Point(-17.0, -179.9));
+            repo.create(MultiLingualString.of(Locale.ENGLISH, "east"), new Wgs84Point(-17.0, 178.0));
+
+            assertThat(repo.findWithinRadius(new Wgs84Point(-17.0, 179.9), 50_000))
+                    .extracting(Wgs84PointIndex.Neighbor::aggregate)
+                    .containsExactly(west);
+        }
+    }
+
+    @Test
+    void stations_are_searched_by_name_in_any_language() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var pargas = repo.create(MultiLingualString.of(Locales.SWEDISH, "Pargas brandstation", Locales.FINNISH, "Paraisten paloasema"), POINT1);
+            var nagu = repo.create(MultiLingualString.of(Locales.SWEDISH, "Nagu brandstation", Locales.FINNISH, "Nauvon paloasema"), POINT2);
+            var abo = repo.create(MultiLingualString.of(Locales.SWEDISH, "Åbo", Locales.FINNISH, "Turku"), POINT3);
+
+            assertThat(repo.searchByName("ÅBO", 10)).containsExactly(abo);
+            assertThat(repo.searchByName("  paloasema ", 10)).containsExactlyInAnyOrder(pargas, nagu);
+            assertThat(repo.searchByName("paloasema", 1)).hasSize(1);
+            assertThat(repo.searchByName("a", 10)).containsExactly(nagu, pargas);
+            assertThat(repo.searchByName("xyz", 10)).isEmpty();
+
+            nagu.update((_, mutator) -> mutator.setName(MultiLingualString.of(Locales.SWEDISH, "Korpo")));
+            assertThat(repo.searchByName("paloasema", 10)).containsExactly(pargas);
+            assertThat(repo.searchByName("korp", 10)).containsExactly(nagu);
+
+            repo.remove(pargas.id());
+            assertThat(repo.searchByName("paloasema", 10)).isEmpty();
+        }
+    }
+
+    @Test
+    void search_ranks_exact_and_prefix_matches_first() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var substring = repo.create(MultiLingualString.of(Locales.FINNISH, "Alakylä"), POINT1);
+            var wordPrefix = repo.create(MultiLingualString.of(Locales.FINNISH, "Vanha kylä"), POINT1);
+            var prefix = repo.create(MultiLingualString.of(Locales.FINNISH, "Kyläpaikka"), POINT1);
+            var exact = repo.create(MultiLingualString.of(Locales.FINNISH, "Kylä"), POINT1);
+
+            assertThat(repo.searchByName("kylä", 10)).containsExactly(exact, prefix, wordPrefix, substring);
+        }
+    }
+
+    @Test
+    void stations_are_listed_by_name_using_keyset_pagination() {
+        var wal = new TestInMemoryWal();
+        try (var repo = new StationRepository(wal)) {
+            var oo = repo.create(MultiLingualString.of(Locales.FINNISH, "Öö"), POINT1);
+            var aa = repo.create(MultiLingualString.of(Locales.FINNISH, "Aa"), POINT1);
+            var zz = repo.create(MultiLingualString.of(Locales.FINNISH, "Zz"), POINT1);
+            var bb = repo.create(MultiLingualString.of(Locales.FINNISH, "Bb"), POINT1);
+            var noName = repo.create(MultiLingualString.of(Locales.SWEDISH, "Bara svenska"), POINT1);
+
+            var firstPage = repo.listSortedByName(Locales.FINNISH, null, 2);
+            assertThat(firstPage).containsExactly(noName, aa);
+
+            var secondPage = repo.listSortedByName(Locales.FINNISH, StationSortKey.of(firstPage.getLast(), Locales.FINNISH), 2);
+            assertThat(secondPage).containsExactly(bb, zz);
+
+            bb.update((_, mutator) -> mutator.setName(MultiLingualString.of(Locales.FINNISH, "Ää")));
+            var lastPage = repo.listSortedByName(Locales.FINNISH, StationSortKey.of(zz, Locales.FINNISH), 2);
+            assertThat(lastPage).containsExactly(bb, oo);
+        }
+    }
+
+    @Test
+    void stations_created_in_bulk_are_recreated_from_the_wal_on_replay() {
+        var wal = new TestInMemoryWal();
+        List<StationId> ids;
+        try (var repo = new StationRepository(wal)) {
+            var newStations = new ArrayList<StationRepository.NewStation>();
+            for (int i = 0; i < 100; i++) {
+                newStations.add(new StationRepository.NewStation(MultiLingualString.of(Locales.FINNISH, "station" + i), POINT1));
+            }
+            var stations = repo.createAll(newStations);
+            assertThat(stations).hasSize(100);
+            assertThat(repo.stream()).hasSize(100);
+            assertThat(repo.searchByName("station42", 10)).containsExactly(stations.get(42));
+            ids = stations.stream().map(Station::id).toList();
+        }
+
+        try (var repo = new StationRepository(wal)) {
+            wal.replay();
+            assertThat(ids).allMatch(repo::contains);
+        }
+    }
 }
@@ -20,9 +20,11 @@ import net.pkhapps.vera.server.domain.base.NanoIdentifierSerde;
 import net.pkhapps.vera.server.domain.model.geo.Wgs84Point;
 import net.pkhapps.vera.server.domain.model.i18n.MultiLingualString;
 import net.pkhapps.vera.server.util.Locales;
+import net.pkhapps.vera.server.util.serde.SizingOutput;
 import org.junit.jupiter.api.Test;
 
 import static net.pkhapps.vera.server.util.serde.SerdeTestUtils.assertSerializationAndDeserializationProducesEqualObject;
+import static org.assertj.core.api.Assertions.assertThat;
 
 class StationStateSerdeTest {
 
@@ -46,4 +48,11 @@ class StationStateSerdeTest {
                 id
         );
     }
+
+    @Test
+    void StationId_is_serialized_into_16_bytes() {
+        var output = new SizingOutput();
+        NanoIdentifierSerde.of(StationId::of).writeTo(StationId.randomStationId(), output);
+        assertThat(output.size()).isEqualTo(16);
+    }
 }
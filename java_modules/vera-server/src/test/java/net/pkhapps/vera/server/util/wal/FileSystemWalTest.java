@@ -24,8 +24,14 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class FileSystemWalTest {
 
@@ -84,4 +90,176 @@ class FileSystemWalTest {
         assertThat(snapshotsReplayed).containsAll(snapshotsToAdd);
         assertThat(eventsReplayed).containsAll(eventsToAddAfterSnapshot);
     }
+
+    @Test
+    void concurrent_immediate_appends_are_all_replayed() throws IOException {
+        var eventsToAdd = new ConcurrentLinkedQueue<WalEvent>();
+        var eventsReplayed = new ArrayList<WalEvent>();
+        try (var wal = new FileSystemWal(Files.createTempDirectory("file-system-wal-test"), List.of(
+                walRegistry -> {
+                    walRegistry.registerWalSerde(new TestEventSerde(100));
+                    walRegistry.registerWalSerde(new TestSnapshotSerde(200));
+                }
+        ))) {
+            wal.registerEventConsumer(TestEvent.class, testEvent -> true, eventsReplayed::add);
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < 200; ++i) {
+                    var event = new TestEvent.MyFirstEvent("Hello World", i);
+                    eventsToAdd.add(event);
+                    executor.submit(() -> wal.append(event, Durability.IMMEDIATE));
+                }
+            }
+            wal.replay();
+        }
+        assertThat(eventsReplayed).containsExactlyInAnyOrderElementsOf(eventsToAdd);
+    }
+
+    @Test
+    void snapshots_wait_for_written_events_to_be_applied() throws Exception {
+        var applied = new CopyOnWriteArrayList<String>();
+        var applying = new CountDownLatch(1);
+        var mayFinishApplying = new CountDownLatch(1);
+        var snapshotsReplayed = new ArrayList<WalSnapshot>();
+        var eventsReplayed = new ArrayList<WalEvent>();
+        var directory = Files.createTempDirectory("file-system-wal-test");
+        List<WalSerdeRegistrator> registrators = List.of(
+                walRegistry -> {
+                    walRegistry.registerWalSerde(new TestEventSerde(100));
+                    walRegistry.registerWalSerde(new TestSnapshotSerde(200));
+                }
+        );
+        try (var wal = new FileSystemWal(directory, registrators);
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            wal.registerSnapshotProducer(writer -> writer.write(new TestSnapshot(List.copyOf(applied))));
+            var append = executor.submit(() -> wal.append(new TestEvent.MyFirstEvent("Hello World", 123),
+                    Durability.IMMEDIATE, () -> {
+                        applying.countDown();
+                        awaitUninterruptibly(mayFinishApplying);
+                        applied.add("applied");
+                    }));
+            applying.await();
+            var snapshot = executor.submit(wal::takeSnapshot);
+            Thread.sleep(100);
+            assertThat(snapshot).isNotDone();
+
+            mayFinishApplying.countDown();
+            append.get(5, TimeUnit.SECONDS);
+            snapshot.get(5, TimeUnit.SECONDS);
+        }
+
+        try (var restartedWal = new FileSystemWal(directory, registrators)) {
+            restartedWal.registerEventConsumer(TestEvent.class, testEvent -> true, eventsReplayed::add);
+            restartedWal.registerSnapshotConsumer(TestSnapshot.class, testSnapshot -> true, snapshotsReplayed::add);
+            restartedWal.replay();
+        }
+        // The event was applied before the snapshot was taken, so it is in the snapshot and not replayed after it
+        assertThat(snapshotsReplayed).containsExactly(new TestSnapshot(List.of("applied")));
+        assertThat(eventsReplayed).isEmpty();
+    }
+
+    @Test
+    void shutdown_waits_for_appends_in_progress() throws Exception {
+        var applied = new CopyOnWriteArrayList<String>();
+        var applying = new CountDownLatch(1);
+        var mayFinishApplying = new CountDownLatch(1);
+        var snapshotsReplayed = new ArrayList<WalSnapshot>();
+        var directory = Files.createTempDirectory("file-system-wal-test");
+        List<WalSerdeRegistrator> registrators = List.of(
+                walRegistry -> {
+                    walRegistry.registerWalSerde(new TestEventSerde(100));
+                    walRegistry.registerWalSerde(new TestSnapshotSerde(200));
+                }
+        );
+        var wal = new FileSystemWal(directory, registrators);
+        wal.registerSnapshotProducer(writer -> writer.write(new TestSnapshot(List.copyOf(applied))));
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var append = executor.submit(() -> wal.append(new TestEvent.MyFirstEvent("Hello World", 123),
+                    Durability.IMMEDIATE, () -> {
+                        applying.countDown();
+                        awaitUninterruptibly(mayFinishApplying);
+                        applied.add("applied");
+                    }));
+            applying.await();
+            var shutdown = executor.submit(wal::shutdown);
+            Thread.sleep(100);
+            assertThat(shutdown).isNotDone();
+
+            mayFinishApplying.countDown();
+            append.get(5, TimeUnit.SECONDS);
+            shutdown.get(5, TimeUnit.SECONDS);
+        }
+
+        try (var restartedWal = new FileSystemWal(directory, registrators)) {
+            restartedWal.registerSnapshotConsumer(TestSnapshot.class, testSnapshot -> true, snapshotsReplayed::add);
+            restartedWal.replay();
+        }
+        assertThat(snapshotsReplayed).containsExactly(new TestSnapshot(List.of("applied")));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void composite_events_are_replayed_as_their_parts() throws IOException {
+        var parts = List.<WalEvent>of(
+                new TestEvent.MyFirstEvent("Hello World", 123),
+                new TestEvent.MySecondEvent(Instant.now(), UUID.randomUUID()),
+                new TestEvent.MyThirdEvent(987L, true)
+        );
+        var eventsReplayed = new ArrayList<WalEvent>();
+        try (var wal = new FileSystemWal(Files.createTempDirectory("file-system-wal-test"), List.of(
+                walRegistry -> {
+                    walRegistry.registerWalSerde(new TestEventSerde(100));
+                    walRegistry.registerWalSerde(new TestSnapshotSerde(200));
+                }
+        ))) {
+            wal.registerEventConsumer(TestEvent.class, testEvent -> true, eventsReplayed::add);
+            wal.append(CompositeWalEvent.of(parts), Durability.IMMEDIATE);
+            wal.replay();
+        }
+        assertThat(eventsReplayed).containsExactlyElementsOf(parts);
+    }
+
+    @Test
+    void shutdown_takes_a_final_snapshot_and_skips_event_replay_on_next_start() throws IOException {
+        var directory = Files.createTempDirectory("file-system-wal-test");
+        List<WalSerdeRegistrator> registrators = List.of(
+                walRegistry -> {
+                    walRegistry.registerWalSerde(new TestEventSerde(100));
+                    walRegistry.registerWalSerde(new TestSnapshotSerde(200));
+                }
+        );
+        var snapshot = new TestSnapshot(List.of("state at shutdown"));
+        var wal = new FileSystemWal(directory, registrators);
+        wal.registerSnapshotProducer(writer -> writer.write(snapshot));
+        wal.append(new TestEvent.MyFirstEvent("Hello World", 123), Durability.IMMEDIATE);
+        wal.shutdown();
+        assertThatThrownBy(() -> wal.append(new TestEvent.MyFirstEvent("Too late", 456), Durability.IMMEDIATE))
+                .isInstanceOf(WalStateException.class);
+
+        var eventsReplayed = new ArrayList<WalEvent>();
+        var snapshotsReplayed = new ArrayList<WalSnapshot>();
+        var eventAfterRestart = new TestEvent.MyFirstEvent("After restart", 789);
+        try (var restartedWal = new FileSystemWal(directory, registrators)) {
+            restartedWal.registerEventConsumer(TestEvent.class, testEvent -> true, eventsReplayed::add);
+            restartedWal.registerSnapshotConsumer(TestSnapshot.class, testSnapshot -> true, snapshotsReplayed::add);
+            restartedWal.replay();
+            assertThat(snapshotsReplayed).containsExactly(snapshot);
+            assertThat(eventsReplayed).isEmpty();
+
+            restartedWal.append(eventAfterRestart, Durability.IMMEDIATE);
+        }
+
+        eventsReplayed.clear();
+        try (var restartedWal = new FileSystemWal(directory, registrators)) {
+            restartedWal.registerEventConsumer(TestEvent.class, testEvent -> true, eventsReplayed::add);
+            restartedWal.replay();
+        }
+        assertThat(eventsReplayed).containsExactly(eventAfterRestart);
+    }
 }